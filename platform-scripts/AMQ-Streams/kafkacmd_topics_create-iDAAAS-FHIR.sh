@@ -1,3 +1,5 @@
+## The connector checks these topics at startup and can create them itself with a per resource
+## layout, see idaas.topicProvisioning and idaas.topics.* in application.properties
 kafkaDir=$HOME'/RedHatTech/kafka_2.12-2.5.0.redhat-00003'
 echo "Directory: "$kafkaDir
 cd $kafkaDir
@@ -0,0 +1,28 @@
+# Compare the servlet and netty ingress modes with wrk (https://github.com/wg/wrk)
+# Start the solution once with idaas.ingressMode=servlet and once with idaas.ingressMode=netty,
+# then run this script against each:
+#   ./ingress-benchmark.sh http://localhost:8080/camel
+#   ./ingress-benchmark.sh http://localhost:9980/camel
+# What idaas.kafkaTransactional costs is measured by transactional-benchmark.sh.
+BASE_URL=${1:-http://localhost:8080/camel}
+THREADS=${THREADS:-8}
+DURATION=${DURATION:-60s}
+SAMPLE=${SAMPLE:-../platform-testdata/samples-fhir/adverseevent-example.json}
+
+cd $(dirname $0)
+SCRIPT=$(mktemp)
+cat > $SCRIPT <<LUA
+wrk.method = "POST"
+wrk.headers["Content-Type"] = "application/fhir+json"
+local f = io.open("$SAMPLE", "r")
+wrk.body = f:read("*a")
+f:close()
+LUA
+
+echo "iDAAS - Connect FHIR ingress benchmark against $BASE_URL/adverseevent"
+for CONNECTIONS in 100 1000 10000 ${MAX_CONNECTIONS:-30000}
+do
+  echo "---- $CONNECTIONS connections"
+  wrk -t$THREADS -c$CONNECTIONS -d$DURATION --latency -s $SCRIPT $BASE_URL/adverseevent
+done
+rm -f $SCRIPT
@@ -0,0 +1,35 @@
+# Shows clinical p99 latency with and without a concurrent financial bulk load, using wrk
+# (https://github.com/wg/wrk). Run it once with idaas.priorityLanes=false and once with
+# idaas.priorityLanes=true and compare the "under bulk load" p99 of the two runs.
+#   ./priority-lanes-loadtest.sh http://localhost:8080/camel
+BASE_URL=${1:-http://localhost:8080/camel}
+DURATION=${DURATION:-60s}
+CLINICAL_CONNECTIONS=${CLINICAL_CONNECTIONS:-20}
+BULK_CONNECTIONS=${BULK_CONNECTIONS:-500}
+
+cd $(dirname $0)
+post_script() {
+  SCRIPT=$(mktemp)
+  cat > $SCRIPT <<LUA
+wrk.method = "POST"
+wrk.headers["Content-Type"] = "application/fhir+json"
+local f = io.open("$1", "r")
+wrk.body = f:read("*a")
+f:close()
+LUA
+  echo $SCRIPT
+}
+CLINICAL=$(post_script ../platform-testdata/samples-fhir/adverseevent-example.json)
+BULK=$(post_script ../platform-testdata/samples-fhir/claim/claim-example-institutional-rich.json)
+
+echo "iDAAS - Connect FHIR priority lanes load test against $BASE_URL"
+echo "---- clinical (adverseevent) alone"
+wrk -t4 -c$CLINICAL_CONNECTIONS -d$DURATION --latency -s $CLINICAL $BASE_URL/adverseevent | grep -E "Latency|99%|Requests/sec"
+
+echo "---- clinical (adverseevent) under bulk load ($BULK_CONNECTIONS connections posting claims)"
+wrk -t8 -c$BULK_CONNECTIONS -d$DURATION -s $BULK $BASE_URL/claim > /dev/null &
+BULK_PID=$!
+sleep 5
+wrk -t4 -c$CLINICAL_CONNECTIONS -d$DURATION --latency -s $CLINICAL $BASE_URL/adverseevent | grep -E "Latency|99%|Requests/sec"
+wait $BULK_PID
+rm -f $CLINICAL $BULK
@@ -9,5 +9,5 @@ echo "Maven Build Completed"
 /usr/local/bin/mvn package
 echo "Maven Release Completed"
 cd target
-cp idaas-connect-*.jar idaas-connect-fhir.jar
+cp $(ls idaas-connect-*.jar | grep -v -- -codec.jar) idaas-connect-fhir.jar
 echo "Copied Release Specific Version to General version"
@@ -0,0 +1,57 @@
+# Measures what idaas.kafkaTransactional costs, using wrk (https://github.com/wg/wrk) against a
+# running Kafka (see AMQ-Streams). Starts the built jar (solution-build.sh) once per setting,
+# loads /camel/adverseevent and prints requests/sec and latency percentiles per setting:
+#   ./transactional-benchmark.sh
+# BATCH_SIZES lists the idaas.transactionBatchSize values to run with transactions on.
+JAR=${JAR:-../target/idaas-connect-fhir.jar}
+PORT=${PORT:-8080}
+THREADS=${THREADS:-8}
+CONNECTIONS=${CONNECTIONS:-200}
+DURATION=${DURATION:-60s}
+BATCH_SIZES=${BATCH_SIZES:-"10 100 500"}
+SAMPLE=${SAMPLE:-../platform-testdata/samples-fhir/adverseevent-example.json}
+
+cd $(dirname $0)
+SCRIPT=$(mktemp)
+cat > $SCRIPT <<LUA
+wrk.method = "POST"
+wrk.headers["Content-Type"] = "application/fhir+json"
+local f = io.open("$SAMPLE", "r")
+wrk.body = f:read("*a")
+f:close()
+LUA
+
+run() {
+  NAME=$1
+  shift
+  java -jar $JAR --server.port=$PORT "$@" > /tmp/idaas-benchmark-$NAME.log 2>&1 &
+  PID=$!
+  until curl -sf http://localhost:$PORT/health > /dev/null
+  do
+    if ! kill -0 $PID 2> /dev/null; then
+      echo "$NAME: failed to start, see /tmp/idaas-benchmark-$NAME.log"
+      return
+    fi
+    sleep 1
+  done
+  # warm up, then measure
+  wrk -t$THREADS -c$CONNECTIONS -d10s -s $SCRIPT http://localhost:$PORT/camel/adverseevent > /dev/null
+  RESULT=$(wrk -t$THREADS -c$CONNECTIONS -d$DURATION --latency -s $SCRIPT http://localhost:$PORT/camel/adverseevent)
+  RPS=$(echo "$RESULT" | awk '/Requests\/sec/ { print $2 }')
+  P50=$(echo "$RESULT" | awk '$1 == "50%" { print $2 }')
+  P99=$(echo "$RESULT" | awk '$1 == "99%" { print $2 }')
+  ERRORS=$(echo "$RESULT" | awk '/Non-2xx/ { print $5 }')
+  printf "%-28s %12s %10s %10s %8s\n" $NAME $RPS $P50 $P99 ${ERRORS:-0}
+  kill $PID
+  wait $PID 2> /dev/null
+}
+
+echo "iDAAS - Connect FHIR transactional publishing benchmark, $CONNECTIONS connections for $DURATION"
+printf "%-28s %12s %10s %10s %8s\n" setting requests/sec p50 p99 non-2xx
+run non-transactional --idaas.kafkaTransactional=false
+for BATCH_SIZE in $BATCH_SIZES
+do
+  run transactional-batch-$BATCH_SIZE --idaas.kafkaTransactional=true \
+    --idaas.kafkaTransactionalId=idaas-connect-fhir-benchmark --idaas.transactionBatchSize=$BATCH_SIZE
+done
+rm -f $SCRIPT
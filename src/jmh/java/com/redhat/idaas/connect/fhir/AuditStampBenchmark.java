@@ -0,0 +1,131 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/*
+ * AuditStampProcessor against the setHeader(...) chain it replaced in direct:auditing, both run
+ * as a route through the same ProducerTemplate so only the stamping differs.
+ *
+ *   mvn -Pjmh test-compile exec:exec
+ *
+ * Benchmark arguments go to -Djmh.args, e.g. -Djmh.args="-t 1 AuditStamp".
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class AuditStampBenchmark {
+
+    private CamelContext context;
+    private ProducerTemplate template;
+
+    @Setup(Level.Trial)
+    public void start() throws Exception {
+        context = new DefaultCamelContext();
+        context.addRoutes(new RouteBuilder() {
+            @Override
+            public void configure() {
+                from("direct:processor")
+                    .process(new AuditStampProcessor());
+                // direct:auditing before AuditStampProcessor
+                from("direct:dsl")
+                    .setHeader("messageprocesseddate").simple("${date:now:yyyy-MM-dd}")
+                    .setHeader("messageprocessedtime").simple("${date:now:HH:mm:ss:SSS}")
+                    .setHeader("processingtype").exchangeProperty("processingtype")
+                    .setHeader("industrystd").exchangeProperty("industrystd")
+                    .setHeader("component").exchangeProperty("componentname")
+                    .setHeader("messagetrigger").exchangeProperty("messagetrigger")
+                    .setHeader("processname").exchangeProperty("processname")
+                    .setHeader("auditdetails").exchangeProperty("auditdetails")
+                    .setHeader("camelID").exchangeProperty("camelID")
+                    .setHeader("exchangeID").exchangeProperty("exchangeID")
+                    .setHeader("internalMsgID").exchangeProperty("internalMsgID")
+                    .setHeader("bodyData").exchangeProperty("bodyData")
+                    .setHeader("contenthash").exchangeProperty(AuditReferenceProcessor.CONTENT_HASH_PROPERTY)
+                    .setHeader("contentlength").exchangeProperty(AuditReferenceProcessor.CONTENT_LENGTH_PROPERTY)
+                    .setHeader("recordtopic").exchangeProperty(AuditReferenceProcessor.TOPIC_PROPERTY)
+                    .setHeader("recordpartition").exchangeProperty(AuditReferenceProcessor.PARTITION_PROPERTY)
+                    .setHeader("recordoffset").exchangeProperty(AuditReferenceProcessor.OFFSET_PROPERTY)
+                    .removeHeader(KafkaConstants.OVERRIDE_TOPIC)
+                    .removeHeader(KafkaConstants.KEY);
+            }
+        });
+        context.start();
+        template = context.createProducerTemplate();
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() throws Exception {
+        template.stop();
+        context.stop();
+    }
+
+    @Benchmark
+    public Exchange processor() {
+        return template.send("direct:processor", exchange());
+    }
+
+    @Benchmark
+    public Exchange dsl() {
+        return template.send("direct:dsl", exchange());
+    }
+
+    // an exchange as FhirResourceProcessor leaves it for the audit wire tap
+    private Exchange exchange() {
+        Exchange exchange = new DefaultExchange(context);
+        FhirResource resource = FhirResource.ADVERSE_EVENT;
+        exchange.setProperty("processingtype", "data");
+        exchange.setProperty("industrystd", "FHIR");
+        exchange.setProperty("componentname", resource.getComponent());
+        exchange.setProperty("messagetrigger", resource.getMessageTrigger());
+        exchange.setProperty("processname", "Input");
+        exchange.setProperty("auditdetails", resource.getAuditDetails());
+        exchange.setProperty("camelID", "benchmark");
+        exchange.setProperty("exchangeID", exchange.getExchangeId());
+        exchange.setProperty("internalMsgID", exchange.getExchangeId());
+        exchange.setProperty("bodyData", "{\"resourceType\":\"AdverseEvent\",\"id\":\"example\"}");
+        exchange.getIn().setHeader(KafkaConstants.OVERRIDE_TOPIC, resource.getTopic());
+        exchange.getIn().setBody("{\"resourceType\":\"AdverseEvent\",\"id\":\"example\"}");
+        return exchange;
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.support.SynchronizationAdapter;
+
+/*
+ * Gradient style adaptive concurrency limit.
+ *
+ * Every finished exchange is a latency sample. A slow moving average of the samples is the
+ * latency the downstream (Kafka, a FHIR server) gives when healthy; while recent samples are
+ * slower than that the limit shrinks by the ratio of the two, and when they are back in line
+ * it grows again by about sqrt(limit) per sample. Failures count as a strong slow down signal.
+ *
+ * acquire() is a processor: it lets an exchange through while fewer than limit are in flight,
+ * otherwise it answers a 503 straight away and stops the route. The slot is released with the
+ * latency sample when the exchange completes, whichever way it leaves the route.
+ *
+ * reserve() takes the slot the same way for a call further down the route, so a full limit
+ * turns the exchange away before the steps in between ran; the latency sample then starts at
+ * start(), right before the call, and the failure signal is the given predicate.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SMOOTHING = 0.2;
+    private static final double LONG_WINDOW = 100;
+
+    private final String name;
+    private final String startProperty;
+    private final int minLimit;
+    private final int maxLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private volatile double limit;
+    private double longRtt;
+    private volatile long lastRtt;
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit) {
+        this.name = name;
+        this.startProperty = "concurrencylimit." + name + ".start";
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+    }
+
+    // true when the caller got a slot and must call release
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                accepted.increment();
+                return true;
+            }
+        }
+    }
+
+    public void release(long rttNanos, boolean failed) {
+        int current = inFlight.getAndDecrement();
+        update(rttNanos, current, failed);
+    }
+
+    private synchronized void update(long rtt, int current, boolean failed) {
+        lastRtt = rtt;
+        double newLimit;
+        if (failed) {
+            newLimit = limit * 0.5;
+        } else {
+            if (longRtt == 0) {
+                longRtt = rtt;
+            } else {
+                longRtt += (rtt - longRtt) / LONG_WINDOW;
+            }
+            if (longRtt / rtt > 2) {
+                // the healthy baseline is stale after a long slow period, let it catch up
+                longRtt *= 0.95;
+            }
+            // a limit that is not used up says nothing about the downstream, don't grow it
+            if (current < limit / 2) {
+                return;
+            }
+            double gradient = Math.max(0.5, Math.min(1.0, longRtt / rtt));
+            newLimit = limit * gradient + Math.sqrt(limit);
+        }
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public Processor acquire() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                if (!tryAcquire()) {
+                    reject(exchange);
+                    return;
+                }
+                final long start = System.nanoTime();
+                exchange.addOnCompletion(new SynchronizationAdapter() {
+                    @Override
+                    public void onDone(Exchange exchange) {
+                        Integer status = exchange.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+                        release(System.nanoTime() - start, exchange.isFailed() || (status != null && status >= 500));
+                    }
+                });
+            }
+        };
+    }
+
+    public Processor reserve(final Predicate failed) {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                if (!tryAcquire()) {
+                    reject(exchange);
+                    return;
+                }
+                exchange.setProperty(startProperty, System.nanoTime());
+                exchange.addOnCompletion(new SynchronizationAdapter() {
+                    @Override
+                    public void onDone(Exchange exchange) {
+                        long start = exchange.getProperty(startProperty, Long.class);
+                        release(System.nanoTime() - start, exchange.isFailed() || failed.matches(exchange));
+                    }
+                });
+            }
+        };
+    }
+
+    // starts the latency sample of a reserved slot
+    public Processor start() {
+        return exchange -> exchange.setProperty(startProperty, System.nanoTime());
+    }
+
+    private void reject(Exchange exchange) {
+        Message in = exchange.getIn();
+        in.setHeader(Exchange.HTTP_RESPONSE_CODE, 503);
+        in.setHeader("Retry-After", "1");
+        in.setHeader(Exchange.CONTENT_TYPE, "text/plain");
+        in.setBody("Too many requests in flight for " + name);
+        exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getAcceptedCount() {
+        return accepted.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getLastLatencyMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(lastRtt);
+    }
+}
@@ -0,0 +1,574 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ReadListener;
+import javax.servlet.ServletException;
+import javax.servlet.ServletInputStream;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.ExchangeTimedOutException;
+import org.apache.camel.Processor;
+import org.apache.camel.component.servlet.CamelHttpTransportServlet;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Camel servlet running every request in Servlet 3 async mode.
+ *
+ * The container thread only starts the AsyncContext and returns; the route, including the Kafka
+ * send and any FHIR server call, runs on a bounded pool (idaas.servletAsyncPoolSize and
+ * idaas.servletAsyncQueueSize) and the response is completed from there. A full pool answers 503
+ * straight away and a request still running after idaas.servletAsyncTimeout ms is answered 503 by
+ * the container, so a slow broker no longer ties up the connector's Tomcat threads.
+ *
+ * A timed out request is cancelled: bindTimeout() hands the route a flag that failIfTimedOut()
+ * checks right before the record is sent, so a request the client already got a 503 for is not
+ * published behind its back. A timeout during the send itself can't be undone; such a record is
+ * published and a client retry duplicates it (at least once).
+ *
+ * The container recycles the request and the response once it completed a timed out request,
+ * while the worker may still be running the route. Both are wrapped: writes after the timeout
+ * go nowhere (GuardedResponse), and the timeout waits for a body read in progress to return
+ * before it completes, after which reads fail with an IOException (GuardedRequest).
+ */
+public class AsyncCamelServlet extends CamelHttpTransportServlet {
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = LoggerFactory.getLogger(AsyncCamelServlet.class);
+
+    public static final String TIMED_OUT_PROPERTY = "ingresstimedout";
+    private static final String TIMED_OUT_ATTRIBUTE = AsyncCamelServlet.class.getName() + ".timedOut";
+
+    private final boolean asyncEnabled;
+    private final long asyncTimeout;
+    private final transient ThreadPoolExecutor executor;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+
+    public AsyncCamelServlet(ConfigProperties config) {
+        this.asyncEnabled = config.isServletAsync();
+        this.asyncTimeout = config.getServletAsyncTimeout();
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getServletAsyncPoolSize(), config.getServletAsyncPoolSize(),
+            60L, TimeUnit.SECONDS, new ArrayBlockingQueue<>(config.getServletAsyncQueueSize()), r -> {
+                Thread thread = new Thread(r, "iDAAS-Servlet-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        if (!asyncEnabled || !request.isAsyncSupported()) {
+            inFlight.incrementAndGet();
+            try {
+                super.service(request, response);
+            } finally {
+                inFlight.decrementAndGet();
+                completed.increment();
+            }
+            return;
+        }
+        final GuardedRequest guardedRequest = new GuardedRequest(request);
+        final GuardedResponse guarded = new GuardedResponse(response, guardedRequest);
+        final AsyncContext context = request.startAsync(guardedRequest, guarded);
+        context.setTimeout(asyncTimeout);
+        context.addListener(guarded);
+        request.setAttribute(TIMED_OUT_ATTRIBUTE, guarded.expired);
+        inFlight.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    doService(guardedRequest, guarded);
+                } catch (Exception e) {
+                    log.warn("Async request {} failed", request.getRequestURI(), e);
+                    guarded.fail(HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                }
+                guarded.complete(context);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            guarded.fail(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            guarded.complete(context);
+        }
+    }
+
+    /*
+     * Copies the request's timeout flag onto the exchange while the request is still valid; the
+     * flag travels with the exchange through lanes, splits and queues
+     */
+    public static Processor bindTimeout() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                HttpServletRequest request = exchange.getIn().getHeader(Exchange.HTTP_SERVLET_REQUEST, HttpServletRequest.class);
+                Object expired = request == null ? null : request.getAttribute(TIMED_OUT_ATTRIBUTE);
+                if (expired != null) {
+                    exchange.setProperty(TIMED_OUT_PROPERTY, expired);
+                }
+            }
+        };
+    }
+
+    /*
+     * Stops the exchange when the client was already answered 503 for it
+     */
+    public static Processor failIfTimedOut() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                AtomicBoolean expired = exchange.getProperty(TIMED_OUT_PROPERTY, AtomicBoolean.class);
+                if (expired != null && expired.get()) {
+                    throw new ExchangeTimedOutException(exchange, 0, "Request timed out before it was published");
+                }
+            }
+        };
+    }
+
+    @Override
+    public void destroy() {
+        super.destroy();
+        executor.shutdown();
+    }
+
+    public boolean isAsyncEnabled() {
+        return asyncEnabled;
+    }
+
+    public long getAsyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getPoolSize() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public long getTimedOutCount() {
+        return timedOut.sum();
+    }
+
+    /*
+     * Once the container timed a request out it recycles the response, so anything the route
+     * still writes afterwards has to go nowhere. Every call that changes the response checks the
+     * state under the same lock the timeout takes.
+     */
+    private final class GuardedResponse extends HttpServletResponseWrapper implements AsyncListener {
+        private final AtomicBoolean expired = new AtomicBoolean();
+        private final GuardedRequest request;
+        private boolean finished;
+        private ServletOutputStream out;
+        private PrintWriter writer;
+
+        GuardedResponse(HttpServletResponse response, GuardedRequest request) {
+            super(response);
+            this.request = request;
+        }
+
+        synchronized void fail(int status) {
+            if (!finished && !isCommitted()) {
+                super.reset();
+                super.setStatus(status);
+            }
+        }
+
+        void complete(AsyncContext context) {
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                if (writer != null) {
+                    writer.flush();
+                }
+                finished = true;
+            }
+            inFlight.decrementAndGet();
+            completed.increment();
+            context.complete();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            // blocks while the worker is inside a body read, the request must not be recycled under it
+            request.close();
+            synchronized (this) {
+                if (finished) {
+                    return;
+                }
+                finished = true;
+                expired.set(true);
+                if (!isCommitted()) {
+                    super.reset();
+                    super.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+                }
+            }
+            inFlight.decrementAndGet();
+            timedOut.increment();
+            event.getAsyncContext().complete();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            log.debug("Async request failed", event.getThrowable());
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        @Override
+        public synchronized void setStatus(int sc) {
+            if (!finished) {
+                super.setStatus(sc);
+            }
+        }
+
+        @Override
+        public synchronized void setHeader(String name, String value) {
+            if (!finished) {
+                super.setHeader(name, value);
+            }
+        }
+
+        @Override
+        public synchronized void addHeader(String name, String value) {
+            if (!finished) {
+                super.addHeader(name, value);
+            }
+        }
+
+        @Override
+        public synchronized void setContentType(String type) {
+            if (!finished) {
+                super.setContentType(type);
+            }
+        }
+
+        @Override
+        @SuppressWarnings("deprecation")
+        public synchronized void setStatus(int sc, String message) {
+            if (!finished) {
+                super.setStatus(sc, message);
+            }
+        }
+
+        @Override
+        public synchronized void setIntHeader(String name, int value) {
+            if (!finished) {
+                super.setIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public synchronized void addIntHeader(String name, int value) {
+            if (!finished) {
+                super.addIntHeader(name, value);
+            }
+        }
+
+        @Override
+        public synchronized void setDateHeader(String name, long date) {
+            if (!finished) {
+                super.setDateHeader(name, date);
+            }
+        }
+
+        @Override
+        public synchronized void addDateHeader(String name, long date) {
+            if (!finished) {
+                super.addDateHeader(name, date);
+            }
+        }
+
+        @Override
+        public synchronized void addCookie(Cookie cookie) {
+            if (!finished) {
+                super.addCookie(cookie);
+            }
+        }
+
+        @Override
+        public synchronized void setContentLength(int len) {
+            if (!finished) {
+                super.setContentLength(len);
+            }
+        }
+
+        @Override
+        public synchronized void setContentLengthLong(long len) {
+            if (!finished) {
+                super.setContentLengthLong(len);
+            }
+        }
+
+        @Override
+        public synchronized void setCharacterEncoding(String charset) {
+            if (!finished) {
+                super.setCharacterEncoding(charset);
+            }
+        }
+
+        @Override
+        public synchronized void setLocale(Locale locale) {
+            if (!finished) {
+                super.setLocale(locale);
+            }
+        }
+
+        @Override
+        public synchronized void setBufferSize(int size) {
+            if (!finished) {
+                super.setBufferSize(size);
+            }
+        }
+
+        @Override
+        public synchronized void sendError(int sc) throws IOException {
+            if (!finished) {
+                super.sendError(sc);
+            }
+        }
+
+        @Override
+        public synchronized void sendError(int sc, String message) throws IOException {
+            if (!finished) {
+                super.sendError(sc, message);
+            }
+        }
+
+        @Override
+        public synchronized void sendRedirect(String location) throws IOException {
+            if (!finished) {
+                super.sendRedirect(location);
+            }
+        }
+
+        @Override
+        public synchronized void reset() {
+            if (!finished) {
+                super.reset();
+            }
+        }
+
+        @Override
+        public synchronized void resetBuffer() {
+            if (!finished) {
+                super.resetBuffer();
+            }
+        }
+
+        @Override
+        public synchronized ServletOutputStream getOutputStream() throws IOException {
+            if (out == null) {
+                final ServletOutputStream target = finished ? null : super.getOutputStream();
+                out = new ServletOutputStream() {
+                    @Override
+                    public void write(int b) throws IOException {
+                        synchronized (GuardedResponse.this) {
+                            if (!finished) {
+                                target.write(b);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) throws IOException {
+                        synchronized (GuardedResponse.this) {
+                            if (!finished) {
+                                target.write(b, off, len);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        synchronized (GuardedResponse.this) {
+                            if (!finished) {
+                                target.flush();
+                            }
+                        }
+                    }
+
+                    @Override
+                    public boolean isReady() {
+                        return target == null || target.isReady();
+                    }
+
+                    @Override
+                    public void setWriteListener(WriteListener listener) {
+                        if (target != null) {
+                            target.setWriteListener(listener);
+                        }
+                    }
+                };
+            }
+            return out;
+        }
+
+        @Override
+        public synchronized PrintWriter getWriter() throws IOException {
+            if (writer == null) {
+                writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+            }
+            return writer;
+        }
+
+        @Override
+        public synchronized void flushBuffer() throws IOException {
+            if (writer != null) {
+                writer.flush();
+            }
+            if (!finished) {
+                super.flushBuffer();
+            }
+        }
+    }
+
+    /*
+     * Body reads hold the request's lock; close() takes it, so the timeout waits for a read in
+     * progress to return, and every read after it fails instead of touching a recycled request.
+     */
+    private static final class GuardedRequest extends HttpServletRequestWrapper {
+        private final Object lock = new Object();
+        private boolean closed;
+        private ServletInputStream in;
+        private BufferedReader reader;
+
+        GuardedRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        void close() {
+            synchronized (lock) {
+                closed = true;
+            }
+        }
+
+        private void checkOpen() throws IOException {
+            if (closed) {
+                throw new IOException("Request timed out, its body can no longer be read");
+            }
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            synchronized (lock) {
+                if (in == null) {
+                    checkOpen();
+                    final ServletInputStream target = super.getInputStream();
+                    in = new ServletInputStream() {
+                        @Override
+                        public int read() throws IOException {
+                            synchronized (lock) {
+                                checkOpen();
+                                return target.read();
+                            }
+                        }
+
+                        @Override
+                        public int read(byte[] b, int off, int len) throws IOException {
+                            synchronized (lock) {
+                                checkOpen();
+                                return target.read(b, off, len);
+                            }
+                        }
+
+                        @Override
+                        public boolean isFinished() {
+                            return target.isFinished();
+                        }
+
+                        @Override
+                        public boolean isReady() {
+                            return target.isReady();
+                        }
+
+                        @Override
+                        public void setReadListener(ReadListener listener) {
+                            target.setReadListener(listener);
+                        }
+                    };
+                }
+                return in;
+            }
+        }
+
+        @Override
+        public BufferedReader getReader() throws IOException {
+            synchronized (lock) {
+                if (reader == null) {
+                    String encoding = getCharacterEncoding();
+                    reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                        encoding == null ? StandardCharsets.ISO_8859_1 : Charset.forName(encoding)));
+                }
+                return reader;
+            }
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.ByteArrayOutputStream;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.apache.camel.processor.aggregate.PreCompletionAwareAggregationStrategy;
+
+/*
+ * Coalesces audit events into batch records for opsmgmt_platformtransactions (idaas.auditBatch).
+ *
+ * With the binary audit format a batch is a binary batch record (AuditEventCodec.decodeBatch).
+ * With the header format every event becomes one JSON line holding its audit headers and a
+ * "body" field, and the batch is NDJSON. The auditformat header tells consumers which it is.
+ *
+ * A batch never grows past maxBytes: an event that would take it over completes the batch
+ * first and starts the next one. Only a single event larger than maxBytes makes a batch of
+ * its own that is bigger.
+ *
+ * The open batch is held in memory only (Camel's MemoryAggregationRepository). A graceful stop
+ * still sends it, a crash or kill loses its events: up to idaas.auditBatchSize audit records
+ * or idaas.auditBatchWindow ms of them.
+ */
+public class AuditBatchAggregator implements PreCompletionAwareAggregationStrategy {
+
+    public static final String FORMAT_HEADER = "auditformat";
+
+    private static final String COUNT_PROPERTY = "auditbatchcount";
+    // the event as it is appended to a batch, encoded once for preComplete and aggregate
+    private static final String ENTRY_PROPERTY = "auditbatchentry";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final boolean binary;
+    private final int maxBytes;
+    private final String[] headerNames = AuditStampProcessor.headerNames();
+
+    public AuditBatchAggregator(boolean binary, int maxBytes) {
+        this.binary = binary;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public boolean preComplete(Exchange oldExchange, Exchange newExchange) {
+        ByteArrayOutputStream batch = oldExchange.getIn().getBody(ByteArrayOutputStream.class);
+        return batch.size() + entry(newExchange).length > maxBytes;
+    }
+
+    @Override
+    public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
+        ByteArrayOutputStream batch;
+        if (oldExchange == null) {
+            batch = new ByteArrayOutputStream(8192);
+            if (binary) {
+                AuditEventCodec.writeBatchHeader(batch);
+            }
+        } else {
+            batch = oldExchange.getIn().getBody(ByteArrayOutputStream.class);
+        }
+        byte[] entry = entry(newExchange);
+        batch.write(entry, 0, entry.length);
+        newExchange.removeProperty(ENTRY_PROPERTY);
+        Exchange result = oldExchange == null ? newExchange : oldExchange;
+        result.getIn().setBody(batch);
+        result.setProperty(COUNT_PROPERTY, result.getProperty(COUNT_PROPERTY, 0, Integer.class) + 1);
+        return result;
+    }
+
+    private byte[] entry(Exchange exchange) {
+        byte[] entry = exchange.getProperty(ENTRY_PROPERTY, byte[].class);
+        if (entry == null) {
+            try {
+                entry = encode(exchange.getIn());
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to add audit event to batch", e);
+            }
+            exchange.setProperty(ENTRY_PROPERTY, entry);
+        }
+        return entry;
+    }
+
+    private byte[] encode(Message event) throws Exception {
+        ByteArrayOutputStream entry = new ByteArrayOutputStream(256);
+        if (binary) {
+            AuditEventCodec.writeBatchEntry(entry, event.getBody(byte[].class));
+            return entry.toByteArray();
+        }
+        ObjectNode line = MAPPER.createObjectNode();
+        for (String name : headerNames) {
+            Object value = event.getHeader(name);
+            if (value != null) {
+                line.put(name, value.toString());
+            }
+        }
+        line.put("body", event.getBody(String.class));
+        MAPPER.writeValue(entry, line);
+        entry.write('\n');
+        return entry.toByteArray();
+    }
+
+    /*
+     * Completes a batch once it holds maxBytes or more
+     */
+    public static Predicate sizeReached(final int maxBytes) {
+        return exchange -> exchange.getIn().getBody(ByteArrayOutputStream.class).size() >= maxBytes;
+    }
+
+    /*
+     * Turns a completed batch into the record value, with only the format header left
+     */
+    public Processor complete() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Message in = exchange.getIn();
+                byte[] batch = in.getBody(ByteArrayOutputStream.class).toByteArray();
+                in.removeHeaders("*");
+                in.setHeader(FORMAT_HEADER, binary ? "binary-batch" : "ndjson-batch");
+                in.setBody(batch);
+            }
+        };
+    }
+}
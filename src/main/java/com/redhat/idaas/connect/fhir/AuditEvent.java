@@ -0,0 +1,196 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+/*
+ * One audit record of opsmgmt_platformtransactions in the binary audit format, as written by
+ * BinaryAuditProcessor and read back by AuditEventCodec.decode. Component, message trigger and
+ * audit details are not stored, they follow from the resource.
+ */
+public class AuditEvent {
+
+    private int version = AuditEventCodec.VERSION;
+    private long processedAt;
+    private int resourceCode;
+    private String processingType;
+    private String industryStd;
+    private String processName;
+    private String camelId;
+    private String exchangeId;
+    private String internalMsgId;
+    private byte[] body;
+    // reference based audit
+    private boolean reference;
+    private byte[] contentHash;
+    private long contentLength;
+    private String recordTopic;
+    private int recordPartition;
+    private long recordOffset;
+
+    public int getVersion() {
+        return version;
+    }
+
+    void setVersion(int version) {
+        this.version = version;
+    }
+
+    // epoch milliseconds
+    public long getProcessedAt() {
+        return processedAt;
+    }
+
+    public void setProcessedAt(long processedAt) {
+        this.processedAt = processedAt;
+    }
+
+    // FhirResource audit code, 0 when the record has no resource
+    public int getResourceCode() {
+        return resourceCode;
+    }
+
+    public void setResourceCode(int resourceCode) {
+        this.resourceCode = resourceCode;
+    }
+
+    // null when there is no resource or it is newer than this decoder
+    public FhirResource getResource() {
+        return resourceCode == 0 ? null : FhirResource.fromAuditCode(resourceCode);
+    }
+
+    public void setResource(FhirResource resource) {
+        this.resourceCode = resource == null ? 0 : resource.getAuditCode();
+    }
+
+    public String getComponent() {
+        return getResource() == null ? null : getResource().getComponent();
+    }
+
+    public String getMessageTrigger() {
+        return getResource() == null ? null : getResource().getMessageTrigger();
+    }
+
+    public String getAuditDetails() {
+        return getResource() == null ? null : getResource().getAuditDetails();
+    }
+
+    public String getProcessingType() {
+        return processingType;
+    }
+
+    public void setProcessingType(String processingType) {
+        this.processingType = processingType;
+    }
+
+    public String getIndustryStd() {
+        return industryStd;
+    }
+
+    public void setIndustryStd(String industryStd) {
+        this.industryStd = industryStd;
+    }
+
+    public String getProcessName() {
+        return processName;
+    }
+
+    public void setProcessName(String processName) {
+        this.processName = processName;
+    }
+
+    public String getCamelId() {
+        return camelId;
+    }
+
+    public void setCamelId(String camelId) {
+        this.camelId = camelId;
+    }
+
+    public String getExchangeId() {
+        return exchangeId;
+    }
+
+    public void setExchangeId(String exchangeId) {
+        this.exchangeId = exchangeId;
+    }
+
+    public String getInternalMsgId() {
+        return internalMsgId;
+    }
+
+    public void setInternalMsgId(String internalMsgId) {
+        this.internalMsgId = internalMsgId;
+    }
+
+    // the audited payload, null for a reference based record
+    public byte[] getBody() {
+        return body;
+    }
+
+    public void setBody(byte[] body) {
+        this.body = body;
+    }
+
+    public boolean isReference() {
+        return reference;
+    }
+
+    public void setReference(boolean reference) {
+        this.reference = reference;
+    }
+
+    // SHA-256 of the data record value
+    public byte[] getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(byte[] contentHash) {
+        this.contentHash = contentHash;
+    }
+
+    public long getContentLength() {
+        return contentLength;
+    }
+
+    public void setContentLength(long contentLength) {
+        this.contentLength = contentLength;
+    }
+
+    public String getRecordTopic() {
+        return recordTopic;
+    }
+
+    public void setRecordTopic(String recordTopic) {
+        this.recordTopic = recordTopic;
+    }
+
+    public int getRecordPartition() {
+        return recordPartition;
+    }
+
+    public void setRecordPartition(int recordPartition) {
+        this.recordPartition = recordPartition;
+    }
+
+    public long getRecordOffset() {
+        return recordOffset;
+    }
+
+    public void setRecordOffset(long recordOffset) {
+        this.recordOffset = recordOffset;
+    }
+}
@@ -0,0 +1,289 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Binary audit format, encoder and decoder for consumers of opsmgmt_platformtransactions.
+ * Consumers depend on the codec classifier of idaas-connect-fhir, which holds only this class,
+ * AuditEvent and FhirResource and needs no other dependency (exclude the transitive ones).
+ *
+ * Version 1 layout, integers are unsigned LEB128 varints:
+ *
+ *   magic 0x1d, version
+ *   flags               bit 0 body present, bit 1 reference present
+ *   processedAt         epoch milliseconds
+ *   resource            FhirResource audit code, 0 for none
+ *   processingType      dictionary string, see below
+ *   industryStd         dictionary string
+ *   processName         dictionary string
+ *   camelId, exchangeId, internalMsgId   strings
+ *   [reference]         contentHash bytes, contentLength, recordTopic (dictionary: the
+ *                       resource's topic), recordPartition, recordOffset
+ *   [body]              bytes
+ *
+ * A string is its UTF-8 length + 1 and the bytes, 0 being null. A dictionary string is the
+ * index + 1 of a known value, or 0 followed by a string. Bytes are a length and the bytes.
+ *
+ * Batch records (idaas.auditBatch) are magic 0x1e, version, then every event as a length and
+ * its version 1 encoding, up to the end of the record; see decodeBatch.
+ *
+ * Compatibility: fields are only ever appended in later versions, FhirResource audit codes are
+ * never changed or reused and the dictionaries are append only, so a decoder reads the prefix it
+ * knows of any later version and ignores the rest; resources and dictionary values it does not
+ * know decode as null.
+ */
+public final class AuditEventCodec {
+
+    public static final int VERSION = 1;
+
+    private static final int MAGIC = 0x1d;
+    private static final int BATCH_MAGIC = 0x1e;
+    private static final int FLAG_BODY = 1;
+    private static final int FLAG_REFERENCE = 2;
+
+    private static final String[] PROCESSING_TYPES = { "data" };
+    private static final String[] INDUSTRY_STDS = { "FHIR" };
+    private static final String[] PROCESS_NAMES = { "Input" };
+    private static final String[] NO_TOPICS = {};
+
+    private AuditEventCodec() {
+    }
+
+    public static byte[] encode(AuditEvent event) {
+        Writer out = new Writer(128 + (event.getBody() == null ? 0 : event.getBody().length));
+        out.writeByte(MAGIC);
+        out.writeByte(VERSION);
+        out.writeVarLong((event.getBody() != null ? FLAG_BODY : 0) | (event.isReference() ? FLAG_REFERENCE : 0));
+        out.writeVarLong(event.getProcessedAt());
+        out.writeVarLong(event.getResourceCode());
+        out.writeDictionary(event.getProcessingType(), PROCESSING_TYPES);
+        out.writeDictionary(event.getIndustryStd(), INDUSTRY_STDS);
+        out.writeDictionary(event.getProcessName(), PROCESS_NAMES);
+        out.writeString(event.getCamelId());
+        out.writeString(event.getExchangeId());
+        out.writeString(event.getInternalMsgId());
+        if (event.isReference()) {
+            out.writeBytes(event.getContentHash() == null ? new byte[0] : event.getContentHash());
+            out.writeVarLong(event.getContentLength());
+            out.writeDictionary(event.getRecordTopic(), topics(event));
+            out.writeVarLong(event.getRecordPartition());
+            out.writeVarLong(event.getRecordOffset());
+        }
+        if (event.getBody() != null) {
+            out.writeBytes(event.getBody());
+        }
+        return out.toByteArray();
+    }
+
+    public static AuditEvent decode(byte[] record) {
+        Reader in = new Reader(record);
+        if (in.readByte() != MAGIC) {
+            throw new IllegalArgumentException("Not a binary audit record");
+        }
+        AuditEvent event = new AuditEvent();
+        int version = in.readByte();
+        if (version < 1) {
+            throw new IllegalArgumentException("Unknown binary audit version " + version);
+        }
+        event.setVersion(version);
+        int flags = (int) in.readVarLong();
+        event.setProcessedAt(in.readVarLong());
+        event.setResourceCode((int) in.readVarLong());
+        event.setProcessingType(in.readDictionary(PROCESSING_TYPES));
+        event.setIndustryStd(in.readDictionary(INDUSTRY_STDS));
+        event.setProcessName(in.readDictionary(PROCESS_NAMES));
+        event.setCamelId(in.readString());
+        event.setExchangeId(in.readString());
+        event.setInternalMsgId(in.readString());
+        if ((flags & FLAG_REFERENCE) != 0) {
+            event.setReference(true);
+            byte[] hash = in.readBytes();
+            event.setContentHash(hash.length == 0 ? null : hash);
+            event.setContentLength(in.readVarLong());
+            event.setRecordTopic(in.readDictionary(topics(event)));
+            event.setRecordPartition((int) in.readVarLong());
+            event.setRecordOffset(in.readVarLong());
+        }
+        if ((flags & FLAG_BODY) != 0) {
+            event.setBody(in.readBytes());
+        }
+        return event;
+    }
+
+    public static List<AuditEvent> decodeBatch(byte[] record) {
+        Reader in = new Reader(record);
+        if (in.readByte() != BATCH_MAGIC) {
+            throw new IllegalArgumentException("Not a binary audit batch record");
+        }
+        in.readByte();
+        List<AuditEvent> events = new ArrayList<>();
+        while (in.position < record.length) {
+            events.add(decode(in.readBytes()));
+        }
+        return events;
+    }
+
+    static void writeBatchHeader(ByteArrayOutputStream batch) {
+        batch.write(BATCH_MAGIC);
+        batch.write(VERSION);
+    }
+
+    static void writeBatchEntry(ByteArrayOutputStream batch, byte[] event) {
+        long length = event.length;
+        while ((length & ~0x7fL) != 0) {
+            batch.write((int) ((length & 0x7f) | 0x80));
+            length >>>= 7;
+        }
+        batch.write((int) length);
+        batch.write(event, 0, event.length);
+    }
+
+    private static String[] topics(AuditEvent event) {
+        FhirResource resource = event.getResource();
+        return resource == null ? NO_TOPICS : new String[] { resource.getTopic() };
+    }
+
+    private static final class Writer {
+        private byte[] buffer;
+        private int size;
+
+        Writer(int capacity) {
+            this.buffer = new byte[capacity];
+        }
+
+        void writeByte(int b) {
+            ensure(1);
+            buffer[size++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            ensure(10);
+            while ((value & ~0x7fL) != 0) {
+                buffer[size++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            buffer[size++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) {
+            writeVarLong(bytes.length);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarLong(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarLong(bytes.length + 1L);
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buffer, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeDictionary(String value, String[] dictionary) {
+            for (int i = 0; i < dictionary.length; i++) {
+                if (dictionary[i].equals(value)) {
+                    writeVarLong(i + 1);
+                    return;
+                }
+            }
+            writeVarLong(0);
+            writeString(value);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > buffer.length) {
+                buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(buffer, size);
+        }
+    }
+
+    private static final class Reader {
+        private final byte[] buffer;
+        private int position;
+
+        Reader(byte[] buffer) {
+            this.buffer = buffer;
+        }
+
+        int readByte() {
+            check(1);
+            return buffer[position++] & 0xff;
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + position);
+        }
+
+        byte[] readBytes() {
+            int length = (int) readVarLong();
+            check(length);
+            byte[] bytes = Arrays.copyOfRange(buffer, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        String readString() {
+            long length = readVarLong();
+            if (length == 0) {
+                return null;
+            }
+            int bytes = (int) (length - 1);
+            check(bytes);
+            String value = new String(buffer, position, bytes, StandardCharsets.UTF_8);
+            position += bytes;
+            return value;
+        }
+
+        String readDictionary(String[] dictionary) {
+            int index = (int) readVarLong();
+            if (index == 0) {
+                return readString();
+            }
+            // a value added to the dictionary after this decoder was built
+            return index > dictionary.length ? null : dictionary[index - 1];
+        }
+
+        private void check(int length) {
+            if (length < 0 || position + length > buffer.length) {
+                throw new IllegalArgumentException("Truncated binary audit record");
+            }
+        }
+    }
+}
@@ -0,0 +1,466 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Dedicated, bounded executor for the direct:auditing wire taps.
+ *
+ * The queue is capped by idaas.auditQueueSize. When it is full the configured
+ * idaas.auditRejectionPolicy decides what happens to the audit exchange:
+ *   block - wait up to idaas.auditBlockTimeout ms for room, then drop
+ *   drop  - drop it and count it
+ *   spill - append it to a file under idaas.auditSpillDirectory
+ * A rejection never throws, so a slow audit topic can not fail the ingest route.
+ *
+ * Spilled records are replayed every idaas.auditSpillReplayInterval seconds once the backlog has
+ * cleared (queue at most half full, nothing rejected since the last pass) through the SpillReplayer,
+ * oldest file first; a file is deleted when all of its records went through. Replay stops at the
+ * first record that fails and resumes there on the next pass. After a restart a partly replayed
+ * file starts over, so those records may be audited twice.
+ */
+@Component
+public class AuditExecutor {
+    private static final Logger log = LoggerFactory.getLogger(AuditExecutor.class);
+
+    public enum RejectionPolicy { BLOCK, DROP, SPILL }
+
+    /*
+     * Sends a spilled audit record, with its String properties and body, on to the audit topic
+     */
+    public interface SpillReplayer {
+        void replay(Map<String, String> properties, byte[] body) throws Exception;
+    }
+
+    private static final String SPILL_PREFIX = "audit-spill-";
+    private static final String REPLAY_SUFFIX = ".replay";
+
+    // wire tap exchange prepared on the submitting thread, needed when spilling a rejected task
+    private static final ThreadLocal<Exchange> PREPARED = new ThreadLocal<>();
+
+    private final ThreadPoolExecutor pool;
+    private final RejectionPolicy rejectionPolicy;
+    private final long blockTimeoutMillis;
+    private final File spillDirectory;
+    private final ScheduledExecutorService spillReplay;
+    private volatile SpillReplayer spillReplayer;
+    // file being replayed and the number of its lines already sent
+    private File replayFile;
+    private long replayLine;
+    private long rejectedAtLastPass;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    @Autowired
+    public AuditExecutor(ConfigProperties config) {
+        this.rejectionPolicy = RejectionPolicy.valueOf(config.getAuditRejectionPolicy().trim().toUpperCase());
+        this.blockTimeoutMillis = config.getAuditBlockTimeout();
+        this.spillDirectory = new File(config.getAuditSpillDirectory());
+        this.pool = new ThreadPoolExecutor(config.getAuditPoolSize(), config.getAuditPoolSize(), 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(config.getAuditQueueSize()), new AuditThreadFactory(),
+                new AuditRejectionHandler()) {
+            @Override
+            public void execute(Runnable command) {
+                submitted.increment();
+                try {
+                    super.execute(new TimedTask(command));
+                } finally {
+                    PREPARED.remove();
+                }
+            }
+
+            @Override
+            protected void afterExecute(Runnable r, Throwable t) {
+                super.afterExecute(r, t);
+                completed.increment();
+            }
+        };
+        if (rejectionPolicy == RejectionPolicy.SPILL) {
+            this.spillReplay = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "iDAAS-Audit-Spill-Replay");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = config.getAuditSpillReplayInterval();
+            spillReplay.scheduleWithFixedDelay(this::replaySpill, interval, interval, TimeUnit.SECONDS);
+        } else {
+            this.spillReplay = null;
+        }
+    }
+
+    /*
+     * The executor handed to the audit wire taps
+     */
+    public ExecutorService getExecutorService() {
+        return pool;
+    }
+
+    /*
+     * onPrepare hook for the wire tap: remembers the tapped exchange for the spill policy and
+     * then runs the delegate, if any.
+     */
+    public Processor onPrepare(final Processor delegate) {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                if (delegate != null) {
+                    delegate.process(exchange);
+                }
+                if (rejectionPolicy == RejectionPolicy.SPILL) {
+                    PREPARED.set(exchange);
+                }
+            }
+        };
+    }
+
+    /*
+     * Where spilled records go once the backlog has cleared; nothing is replayed until it is set
+     */
+    public void setSpillReplayer(SpillReplayer spillReplayer) {
+        this.spillReplayer = spillReplayer;
+    }
+
+    @PreDestroy
+    public void drain() throws InterruptedException {
+        if (spillReplay != null) {
+            spillReplay.shutdownNow();
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("Audit executor did not drain within 10 seconds, {} audit records pending", pool.getQueue().size());
+        }
+    }
+
+    public RejectionPolicy getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    public int getPoolSize() {
+        return pool.getPoolSize();
+    }
+
+    public int getActiveCount() {
+        return pool.getActiveCount();
+    }
+
+    public int getQueueDepth() {
+        return pool.getQueue().size();
+    }
+
+    public int getQueueCapacity() {
+        return pool.getQueue().size() + pool.getQueue().remainingCapacity();
+    }
+
+    public long getSubmittedCount() {
+        return submitted.sum();
+    }
+
+    public long getCompletedCount() {
+        return completed.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+    /*
+     * Spill files not replayed yet, including the one still being written
+     */
+    public int getSpillFileCount() {
+        File[] files = spillDirectory.listFiles((dir, name) -> name.startsWith(SPILL_PREFIX));
+        return files == null ? 0 : files.length;
+    }
+
+    public double getAverageWaitMillis() {
+        long done = completed.sum();
+        return done == 0 ? 0 : waitNanos.sum() / (double) done / 1000000d;
+    }
+
+    public double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1000000d;
+    }
+
+    private void spill(Exchange exchange) {
+        if (exchange == null) {
+            dropped.increment();
+            return;
+        }
+        String day = new SimpleDateFormat("yyyyMMdd").format(new Date());
+        File file = new File(spillDirectory, SPILL_PREFIX + day + ".log");
+        StringBuilder line = new StringBuilder(256);
+        try {
+            for (Map.Entry<String, Object> property : exchange.getProperties().entrySet()) {
+                Object value = property.getValue();
+                if (value instanceof Enum) {
+                    value = ((Enum<?>) value).name();
+                }
+                if (value instanceof String || value instanceof Number || value instanceof Boolean) {
+                    // encoded, so a value can not break the line or its | and = separators
+                    line.append(URLEncoder.encode(property.getKey(), "UTF-8")).append('=')
+                        .append(URLEncoder.encode(value.toString(), "UTF-8")).append('|');
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] body = exchange.getIn().getBody(byte[].class);
+        line.append("body=").append(body == null ? "" : Base64.getEncoder().encodeToString(body)).append('\n');
+        synchronized (this) {
+            if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs()) {
+                log.warn("Unable to create audit spill directory {}, dropping audit record", spillDirectory);
+                dropped.increment();
+                return;
+            }
+            try (OutputStream out = new FileOutputStream(file, true)) {
+                out.write(line.toString().getBytes(StandardCharsets.UTF_8));
+                spilled.increment();
+            } catch (IOException e) {
+                log.warn("Unable to spill audit record to {}, dropping it", file, e);
+                dropped.increment();
+            }
+        }
+    }
+
+    /*
+     * One replay pass, run by the spill replay thread
+     */
+    void replaySpill() {
+        SpillReplayer replayer = spillReplayer;
+        long rejected = dropped.sum() + spilled.sum();
+        boolean rejecting = rejected != rejectedAtLastPass;
+        rejectedAtLastPass = rejected;
+        if (replayer == null || rejecting) {
+            return;
+        }
+        try {
+            for (File file : claimSpillFiles()) {
+                if (!replay(file, replayer)) {
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Audit spill replay failed, retrying in the next pass", e);
+        }
+    }
+
+    private boolean backlogCleared() {
+        return pool.getQueue().size() <= getQueueCapacity() / 2;
+    }
+
+    /*
+     * Moves the spill files aside, so spill() starts a new file, and lists every file waiting
+     * for replay, oldest first
+     */
+    private File[] claimSpillFiles() {
+        synchronized (this) {
+            File[] spilling = spillDirectory.listFiles((dir, name) -> name.startsWith(SPILL_PREFIX) && name.endsWith(".log"));
+            for (File file : spilling == null ? new File[0] : spilling) {
+                File claimed = new File(spillDirectory, file.getName() + "." + System.currentTimeMillis() + REPLAY_SUFFIX);
+                if (!file.renameTo(claimed)) {
+                    log.warn("Unable to move audit spill file {} aside for replay", file);
+                }
+            }
+        }
+        File[] files = spillDirectory.listFiles((dir, name) -> name.startsWith(SPILL_PREFIX) && name.endsWith(REPLAY_SUFFIX));
+        if (files == null) {
+            return new File[0];
+        }
+        Arrays.sort(files);
+        return files;
+    }
+
+    /*
+     * Replays the file from where the last pass stopped, true when it was replayed to the end
+     */
+    private boolean replay(File file, SpillReplayer replayer) throws IOException {
+        if (!file.equals(replayFile)) {
+            replayFile = file;
+            replayLine = 0;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            long number = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (number++ < replayLine) {
+                    continue;
+                }
+                if (!backlogCleared()) {
+                    return false;
+                }
+                Map<String, String> properties = new LinkedHashMap<>();
+                byte[] body;
+                try {
+                    body = parse(line, properties);
+                } catch (IllegalArgumentException e) {
+                    log.warn("Dropping unreadable audit record at line {} of {}", number, file, e);
+                    dropped.increment();
+                    replayLine = number;
+                    continue;
+                }
+                try {
+                    replayer.replay(properties, body);
+                } catch (Exception e) {
+                    log.warn("Audit spill replay stopped at line {} of {}, retrying in the next pass", number, file, e);
+                    return false;
+                }
+                replayed.increment();
+                replayLine = number;
+            }
+        }
+        if (!file.delete()) {
+            log.warn("Unable to delete replayed audit spill file {}", file);
+            return false;
+        }
+        log.info("Replayed audit spill file {}: {} records", file, replayLine);
+        replayFile = null;
+        replayLine = 0;
+        return true;
+    }
+
+    private static byte[] parse(String line, Map<String, String> properties) {
+        byte[] body = null;
+        try {
+            for (String field : line.split("\\|")) {
+                int separator = field.indexOf('=');
+                if (separator < 0) {
+                    throw new IllegalArgumentException("field without a value: " + field);
+                }
+                String key = field.substring(0, separator);
+                if ("body".equals(key)) {
+                    body = Base64.getDecoder().decode(field.substring(separator + 1));
+                } else {
+                    properties.put(URLDecoder.decode(key, "UTF-8"), URLDecoder.decode(field.substring(separator + 1), "UTF-8"));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        if (body == null) {
+            throw new IllegalArgumentException("record without a body");
+        }
+        return body;
+    }
+
+    private class AuditRejectionHandler implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                dropped.increment();
+                return;
+            }
+            switch (rejectionPolicy) {
+                case BLOCK:
+                    try {
+                        if (executor.getQueue().offer(r, blockTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                            return;
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    dropped.increment();
+                    break;
+                case SPILL:
+                    spill(PREPARED.get());
+                    break;
+                default:
+                    dropped.increment();
+            }
+        }
+    }
+
+    private class TimedTask implements Runnable {
+        private final Runnable task;
+        private final long queuedAt = System.nanoTime();
+
+        TimedTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            long waited = System.nanoTime() - queuedAt;
+            waitNanos.add(waited);
+            long max = maxWaitNanos.get();
+            while (waited > max && !maxWaitNanos.compareAndSet(max, waited)) {
+                max = maxWaitNanos.get();
+            }
+            task.run();
+        }
+    }
+
+    private static class AuditThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "iDAAS-Audit-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
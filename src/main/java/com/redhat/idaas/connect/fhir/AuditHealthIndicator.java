@@ -0,0 +1,67 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.stereotype.Component;
+
+/*
+ * Publishes the audit executor state through the actuator health endpoint.
+ * Reports DOWN while audit records are being dropped and DEGRADED while they are being
+ * spilled, i.e. when the count went up since the previous check; a backed up queue alone,
+ * or spill files still waiting for replay, are only shown in the details.
+ */
+@Component
+public class AuditHealthIndicator implements HealthIndicator {
+
+    private static final Status DEGRADED = new Status("DEGRADED", "audit records are being spilled to disk");
+
+    @Autowired
+    private AuditExecutor auditExecutor;
+
+    private final AtomicLong lastDropped = new AtomicLong();
+    private final AtomicLong lastSpilled = new AtomicLong();
+
+    @Override
+    public Health health() {
+        long dropped = auditExecutor.getDroppedCount();
+        long spilled = auditExecutor.getSpilledCount();
+        boolean dropping = lastDropped.getAndSet(dropped) < dropped;
+        boolean spilling = lastSpilled.getAndSet(spilled) < spilled;
+        Health.Builder builder = dropping ? Health.down() : spilling ? Health.status(DEGRADED) : Health.up();
+        return builder
+            .withDetail("rejectionPolicy", auditExecutor.getRejectionPolicy().name().toLowerCase())
+            .withDetail("poolSize", auditExecutor.getPoolSize())
+            .withDetail("activeThreads", auditExecutor.getActiveCount())
+            .withDetail("queueDepth", auditExecutor.getQueueDepth())
+            .withDetail("queueCapacity", auditExecutor.getQueueCapacity())
+            .withDetail("submitted", auditExecutor.getSubmittedCount())
+            .withDetail("completed", auditExecutor.getCompletedCount())
+            .withDetail("dropped", dropped)
+            .withDetail("spilled", spilled)
+            .withDetail("replayed", auditExecutor.getReplayedCount())
+            .withDetail("spillFiles", auditExecutor.getSpillFileCount())
+            .withDetail("averageWaitMillis", auditExecutor.getAverageWaitMillis())
+            .withDetail("maxWaitMillis", auditExecutor.getMaxWaitMillis())
+            .build();
+    }
+}
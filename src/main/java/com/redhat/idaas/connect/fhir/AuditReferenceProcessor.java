@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.List;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.kafka.clients.producer.RecordMetadata;
+
+/*
+ * Prepares the wire tapped copy of an exchange for a reference based audit record.
+ *
+ * Runs after the data record was sent, so the topic, partition and offset the producer
+ * reported are known. Instead of the payload the audit record carries those coordinates
+ * plus a SHA-256 of the body and its length in bytes; the audit body itself is emptied.
+ */
+public class AuditReferenceProcessor implements Processor {
+
+    public static final String CONTENT_HASH_PROPERTY = "contenthash";
+    public static final String CONTENT_LENGTH_PROPERTY = "contentlength";
+    public static final String TOPIC_PROPERTY = "recordtopic";
+    public static final String PARTITION_PROPERTY = "recordpartition";
+    public static final String OFFSET_PROPERTY = "recordoffset";
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        Object value = in.getBody();
+        if (value instanceof SpooledBody) {
+            SpooledBody spooled = (SpooledBody) value;
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(spooled.buffer());
+            exchange.setProperty(CONTENT_HASH_PROPERTY, hex(digest.digest()));
+            exchange.setProperty(CONTENT_LENGTH_PROPERTY, spooled.length());
+        }
+        byte[] body = value instanceof SpooledBody ? null : bodyBytes(value);
+        if (body != null) {
+            exchange.setProperty(CONTENT_HASH_PROPERTY, sha256(body));
+            exchange.setProperty(CONTENT_LENGTH_PROPERTY, body.length);
+        }
+        List<RecordMetadata> metadata = (List<RecordMetadata>) in.removeHeader(KafkaConstants.KAFKA_RECORDMETA);
+        if (metadata != null && !metadata.isEmpty()) {
+            RecordMetadata record = metadata.get(0);
+            exchange.setProperty(TOPIC_PROPERTY, record.topic());
+            exchange.setProperty(PARTITION_PROPERTY, record.partition());
+            exchange.setProperty(OFFSET_PROPERTY, record.offset());
+        }
+        exchange.removeProperty("bodyData");
+        in.setBody("");
+    }
+
+    private static byte[] bodyBytes(Object body) {
+        if (body instanceof byte[]) {
+            return (byte[]) body;
+        }
+        if (body != null) {
+            return body.toString().getBytes(StandardCharsets.UTF_8);
+        }
+        return null;
+    }
+
+    private static String sha256(byte[] body) throws Exception {
+        return hex(MessageDigest.getInstance("SHA-256").digest(body));
+    }
+
+    static String hex(byte[] digest) {
+        char[] hex = new char[digest.length * 2];
+        for (int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0x0f];
+            hex[i * 2 + 1] = HEX[digest[i] & 0x0f];
+        }
+        return new String(hex);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.component.kafka.KafkaConstants;
+
+/*
+ * Stamps the audit headers of direct:auditing in one step.
+ *
+ * Replaces a chain of setHeader(...).exchangeProperty(...) steps and two ${date:now:...}
+ * expressions: header names are constants, values are the property references already on the
+ * exchange (the strings come from the FhirResource table), and the processed date and time come
+ * from a clock that formats each second once and each millisecond at most once per thread
+ * race. Busy exchanges within the same millisecond share the same header strings.
+ *
+ * AuditStampBenchmark (the jmh profile) measures it against the setHeader chain.
+ */
+public class AuditStampProcessor implements Processor {
+
+    // audit header name, exchange property it is copied from
+    private static final String[][] COPIED = {
+        { "processingtype", "processingtype" },
+        { "industrystd", "industrystd" },
+        { "component", "componentname" },
+        { "messagetrigger", "messagetrigger" },
+        { "processname", "processname" },
+        { "auditdetails", "auditdetails" },
+        { "camelID", "camelID" },
+        { "exchangeID", "exchangeID" },
+        { "internalMsgID", "internalMsgID" },
+        { "bodyData", "bodyData" },
+        // reference based audit (idaas.auditMode=reference)
+        { "contenthash", AuditReferenceProcessor.CONTENT_HASH_PROPERTY },
+        { "contentlength", AuditReferenceProcessor.CONTENT_LENGTH_PROPERTY },
+        { "recordtopic", AuditReferenceProcessor.TOPIC_PROPERTY },
+        { "recordpartition", AuditReferenceProcessor.PARTITION_PROPERTY },
+        { "recordoffset", AuditReferenceProcessor.OFFSET_PROPERTY },
+    };
+
+    private static final String[] HEADER_NAMES;
+
+    static {
+        HEADER_NAMES = new String[COPIED.length + 2];
+        HEADER_NAMES[0] = "messageprocesseddate";
+        HEADER_NAMES[1] = "messageprocessedtime";
+        for (int i = 0; i < COPIED.length; i++) {
+            HEADER_NAMES[i + 2] = COPIED[i][0];
+        }
+    }
+
+    private static final Clock CLOCK = new Clock(ZoneId.systemDefault());
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        long now = System.currentTimeMillis();
+        Clock.Second second = CLOCK.second(now);
+        in.setHeader("messageprocesseddate", second.date);
+        in.setHeader("messageprocessedtime", second.time(now));
+        for (String[] copied : COPIED) {
+            in.setHeader(copied[0], exchange.getProperty(copied[1]));
+        }
+        in.removeHeader(KafkaConstants.OVERRIDE_TOPIC);
+        in.removeHeader(KafkaConstants.KEY);
+    }
+
+    // the audit headers this processor sets, in order
+    static String[] headerNames() {
+        return HEADER_NAMES.clone();
+    }
+
+    /*
+     * yyyy-MM-dd and HH:mm:ss:SSS in the system time zone. The formatted second is an immutable
+     * value swapped in through a volatile field, so readers never lock and a race only means a
+     * second is formatted twice.
+     */
+    static final class Clock {
+        private final ZoneId zone;
+        private volatile Second current;
+
+        Clock(ZoneId zone) {
+            this.zone = zone;
+            this.current = format(System.currentTimeMillis() / 1000);
+        }
+
+        Second second(long millis) {
+            long epochSecond = Math.floorDiv(millis, 1000L);
+            Second second = current;
+            if (second.epochSecond != epochSecond) {
+                second = format(epochSecond);
+                current = second;
+            }
+            return second;
+        }
+
+        private Second format(long epochSecond) {
+            ZoneOffset offset = zone.getRules().getOffset(Instant.ofEpochSecond(epochSecond));
+            LocalDateTime time = LocalDateTime.ofEpochSecond(epochSecond, 0, offset);
+            char[] date = new char[10];
+            digits(date, 0, time.getYear(), 4);
+            date[4] = '-';
+            digits(date, 5, time.getMonthValue(), 2);
+            date[7] = '-';
+            digits(date, 8, time.getDayOfMonth(), 2);
+            char[] prefix = new char[12];
+            digits(prefix, 0, time.getHour(), 2);
+            prefix[2] = ':';
+            digits(prefix, 3, time.getMinute(), 2);
+            prefix[5] = ':';
+            digits(prefix, 6, time.getSecond(), 2);
+            prefix[8] = ':';
+            return new Second(epochSecond, new String(date), prefix);
+        }
+
+        private static void digits(char[] target, int offset, int value, int width) {
+            for (int i = offset + width - 1; i >= offset; i--) {
+                target[i] = (char) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+
+        static final class Second {
+            private final long epochSecond;
+            private final String date;
+            // HH:mm:ss: followed by room for the milliseconds
+            private final char[] time;
+            private volatile Millisecond last;
+
+            Second(long epochSecond, String date, char[] time) {
+                this.epochSecond = epochSecond;
+                this.date = date;
+                this.time = time;
+                this.last = new Millisecond(-1, null);
+            }
+
+            String time(long millis) {
+                Millisecond cached = last;
+                if (cached.millis == millis) {
+                    return cached.time;
+                }
+                char[] chars = time.clone();
+                digits(chars, 9, (int) Math.floorMod(millis, 1000L), 3);
+                cached = new Millisecond(millis, new String(chars));
+                last = cached;
+                return cached.time;
+            }
+        }
+
+        static final class Millisecond {
+            private final long millis;
+            private final String time;
+
+            Millisecond(long millis, String time) {
+                this.millis = millis;
+                this.time = time;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+
+/*
+ * Turns the audit exchange into one binary audit record (idaas.auditFormat=binary, see
+ * AuditEventCodec). Everything the header based format carries goes into the record value,
+ * so all headers are dropped and the Kafka record has none.
+ */
+public class BinaryAuditProcessor implements Processor {
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        AuditEvent event = new AuditEvent();
+        event.setProcessedAt(System.currentTimeMillis());
+        event.setResource(exchange.getProperty(FhirResourceProcessor.RESOURCE_PROPERTY, FhirResource.class));
+        event.setProcessingType(exchange.getProperty("processingtype", String.class));
+        event.setIndustryStd(exchange.getProperty("industrystd", String.class));
+        event.setProcessName(exchange.getProperty("processname", String.class));
+        event.setCamelId(exchange.getProperty("camelID", String.class));
+        event.setExchangeId(exchange.getProperty("exchangeID", String.class));
+        event.setInternalMsgId(exchange.getProperty("internalMsgID", String.class));
+
+        String hash = exchange.getProperty(AuditReferenceProcessor.CONTENT_HASH_PROPERTY, String.class);
+        if (hash != null) {
+            event.setReference(true);
+            event.setContentHash(fromHex(hash));
+            event.setContentLength(exchange.getProperty(AuditReferenceProcessor.CONTENT_LENGTH_PROPERTY, 0L, Long.class));
+            event.setRecordTopic(exchange.getProperty(AuditReferenceProcessor.TOPIC_PROPERTY, String.class));
+            event.setRecordPartition(exchange.getProperty(AuditReferenceProcessor.PARTITION_PROPERTY, 0, Integer.class));
+            event.setRecordOffset(exchange.getProperty(AuditReferenceProcessor.OFFSET_PROPERTY, 0L, Long.class));
+        } else {
+            event.setBody(in.getBody(byte[].class));
+        }
+        in.removeHeaders("*");
+        in.setBody(AuditEventCodec.encode(event));
+    }
+
+    private static byte[] fromHex(String hex) {
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) ((Character.digit(hex.charAt(i * 2), 16) << 4) | Character.digit(hex.charAt(i * 2 + 1), 16));
+        }
+        return bytes;
+    }
+}
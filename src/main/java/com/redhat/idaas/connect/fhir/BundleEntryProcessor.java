@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+
+/*
+ * Resolves a Bundle entry by its resourceType and applies the same resource, producer
+ * and auditing properties a request to the resource's own endpoint would get.
+ */
+public class BundleEntryProcessor implements Processor {
+
+    private final FhirResourceProcessor resourceProcessor;
+
+    public BundleEntryProcessor(FhirResourceProcessor resourceProcessor) {
+        this.resourceProcessor = resourceProcessor;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        String resourceType = exchange.getIn().getHeader(BundleEntrySplitter.RESOURCE_TYPE_HEADER, String.class);
+        if (exchange.getIn().getBody() == null) {
+            throw new IllegalArgumentException("Bundle entry has no resource");
+        }
+        FhirResource resource = FhirResource.fromResourceType(resourceType);
+        if (resource == null) {
+            throw new IllegalArgumentException("Unsupported resourceType: " + resourceType);
+        }
+        resourceProcessor.apply(exchange, resource);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.CamelContext;
+import org.apache.camel.Exchange;
+import org.apache.camel.Expression;
+import org.apache.camel.Message;
+import org.apache.camel.RuntimeCamelException;
+import org.apache.camel.impl.DefaultMessage;
+
+/*
+ * Split expression for FHIR Bundles posted to /camel/bundle.
+ *
+ * The request stream is read with a streaming parser, one entry at a time; the FHIRBundle
+ * route bounds how many parsed entries wait for a thread (idaas.bundleQueueSize). Each
+ * entry[] element becomes a message whose body is the entry's
+ * resource (a String, or byte[] with idaas.kafkaRawBody) and whose headers carry the
+ * resourceType, id and fullUrl. The Bundle type is recorded in the BUNDLE_PROPERTY.
+ *
+ * Entries are published independently, which cannot honour a transaction's all or nothing
+ * rule: a transaction Bundle fails with TransactionBundleException before any entry is read.
+ * Entries are published while the rest is still being parsed, so Bundle.type has to come
+ * before Bundle.entry, as every FHIR serializer writes it.
+ */
+public class BundleEntrySplitter implements Expression {
+
+    public static final String BUNDLE_PROPERTY = "fhirbundle";
+    public static final String RESOURCE_TYPE_HEADER = "fhirEntryResourceType";
+    public static final String RESOURCE_ID_HEADER = "fhirEntryId";
+    public static final String FULL_URL_HEADER = "fhirEntryFullUrl";
+
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final boolean rawBody;
+
+    public BundleEntrySplitter(boolean rawBody) {
+        this.rawBody = rawBody;
+    }
+
+    @Override
+    public <T> T evaluate(Exchange exchange, Class<T> type) {
+        Bundle bundle = new Bundle();
+        exchange.setProperty(BUNDLE_PROPERTY, bundle);
+        try {
+            InputStream body = exchange.getIn().getMandatoryBody(InputStream.class);
+            return type.cast(new EntryIterator(exchange.getContext(), MAPPER.getFactory().createParser(body), bundle));
+        } catch (Exception e) {
+            throw RuntimeCamelException.wrapRuntimeCamelException(e);
+        }
+    }
+
+    /*
+     * What is known about the Bundle itself; complete once all entries were read
+     */
+    public static final class TransactionBundleException extends IOException {
+        public TransactionBundleException() {
+            super("transaction Bundles are not supported, entries are published independently; send a batch Bundle");
+        }
+    }
+
+    public static final class Bundle {
+        private volatile String type;
+        private volatile int entries;
+
+        public String getType() {
+            return type;
+        }
+
+        public int getEntries() {
+            return entries;
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Message> {
+        private final CamelContext context;
+        private final JsonParser parser;
+        private final Bundle bundle;
+        private Message next;
+        private boolean inEntries;
+        private boolean done;
+
+        EntryIterator(CamelContext context, JsonParser parser, Bundle bundle) throws IOException {
+            this.context = context;
+            this.parser = parser;
+            this.bundle = bundle;
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Request body is not a FHIR Bundle");
+            }
+            readBundleFields();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !done) {
+                try {
+                    next = readEntry();
+                } catch (IOException e) {
+                    close();
+                    throw new RuntimeCamelException("Unable to read Bundle entry", e);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Message next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Message entry = next;
+            next = null;
+            return entry;
+        }
+
+        // reads top level fields until the entry array starts or the Bundle ends
+        private void readBundleFields() throws IOException {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("resourceType".equals(name)) {
+                    if (!"Bundle".equals(parser.getText())) {
+                        throw new IOException("Expected a Bundle but got " + parser.getText());
+                    }
+                } else if ("type".equals(name)) {
+                    bundle.type = parser.getText();
+                    if ("transaction".equals(bundle.type)) {
+                        throw new TransactionBundleException();
+                    }
+                } else if ("entry".equals(name) && value == JsonToken.START_ARRAY) {
+                    if (bundle.type == null) {
+                        throw new IOException("Bundle.type has to come before Bundle.entry");
+                    }
+                    inEntries = true;
+                    return;
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            close();
+        }
+
+        private Message readEntry() throws IOException {
+            while (inEntries) {
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.END_ARRAY || token == null) {
+                    inEntries = false;
+                    readBundleFields();
+                    return null;
+                }
+                JsonNode entry = parser.readValueAsTree();
+                bundle.entries++;
+                return toMessage(entry);
+            }
+            return null;
+        }
+
+        private Message toMessage(JsonNode entry) throws IOException {
+            Message message = new DefaultMessage(context);
+            JsonNode resource = entry.get("resource");
+            if (entry.hasNonNull("fullUrl")) {
+                message.setHeader(FULL_URL_HEADER, entry.get("fullUrl").asText());
+            }
+            if (resource != null && resource.isObject()) {
+                message.setHeader(RESOURCE_TYPE_HEADER, resource.path("resourceType").asText(null));
+                message.setHeader(RESOURCE_ID_HEADER, resource.path("id").asText(null));
+                message.setBody(rawBody ? MAPPER.writeValueAsBytes(resource) : MAPPER.writeValueAsString(resource));
+            }
+            return message;
+        }
+
+        private void close() {
+            done = true;
+            try {
+                parser.close();
+            } catch (IOException e) {
+                // nothing left to read
+            }
+        }
+    }
+}
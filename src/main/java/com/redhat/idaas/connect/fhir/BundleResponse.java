@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.processor.aggregate.AggregationStrategy;
+
+/*
+ * Collects the outcome of every Bundle entry, in entry order, and turns them into a
+ * batch-response Bundle.
+ *
+ * Entries are published independently: each entry reports its own outcome and a failed entry
+ * does not roll back the others. Transaction Bundles are refused with 422 (unsupported()),
+ * a partial transaction-response is never returned.
+ */
+public class BundleResponse implements AggregationStrategy {
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Exchange aggregate(Exchange oldExchange, Exchange newExchange) {
+        Exchange result = oldExchange == null ? newExchange : oldExchange;
+        Object outcome = newExchange.getIn().getBody();
+        Integer index = newExchange.getProperty(Exchange.SPLIT_INDEX, Integer.class);
+        Map<Integer, Object> outcomes;
+        if (oldExchange == null) {
+            outcomes = new TreeMap<>();
+            result.getIn().setBody(outcomes);
+        } else {
+            outcomes = oldExchange.getIn().getBody(Map.class);
+        }
+        outcomes.put(index == null ? outcomes.size() : index, outcome);
+        return result;
+    }
+
+    /*
+     * Entry outcome once the resource was published, with the FHIR server's status when forwarded
+     */
+    public static Processor accepted() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Message in = exchange.getIn();
+                ObjectNode response = BundleEntrySplitter.MAPPER.createObjectNode();
+                Integer status = in.getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+                response.put("status", status == null ? "202 Accepted" : status.toString());
+                String type = in.getHeader(BundleEntrySplitter.RESOURCE_TYPE_HEADER, String.class);
+                String id = in.getHeader(BundleEntrySplitter.RESOURCE_ID_HEADER, String.class);
+                if (id != null) {
+                    response.put("location", type + "/" + id);
+                }
+                in.setBody(entry(response));
+            }
+        };
+    }
+
+    /*
+     * Entry outcome when the resource could not be published
+     */
+    public static Processor failed() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Exception cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+                boolean invalid = cause instanceof IllegalArgumentException;
+                // the entry's priority lane was full, the client may retry the entry
+                boolean busy = cause instanceof PriorityLanes.LaneFullException;
+                ObjectNode response = BundleEntrySplitter.MAPPER.createObjectNode();
+                response.put("status", invalid ? "400 Bad Request" : busy ? "503 Service Unavailable" : "500 Internal Server Error");
+                response.set("outcome", operationOutcome(invalid ? "invalid" : busy ? "transient" : "exception",
+                    cause == null ? "unknown error" : cause.getMessage()));
+                exchange.getIn().setBody(entry(response));
+            }
+        };
+    }
+
+    /*
+     * The response Bundle, built from the aggregated entry outcomes
+     */
+    public static Processor response() {
+        return new Processor() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public void process(Exchange exchange) throws Exception {
+                ObjectNode response = BundleEntrySplitter.MAPPER.createObjectNode();
+                response.put("resourceType", "Bundle");
+                response.put("type", "batch-response");
+                ArrayNode entries = response.putArray("entry");
+                Object body = exchange.getIn().getBody();
+                if (body instanceof Map) {
+                    for (Object entry : ((Map<Integer, Object>) body).values()) {
+                        entries.add((ObjectNode) entry);
+                    }
+                }
+                Message in = exchange.getIn();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/fhir+json");
+                in.setBody(BundleEntrySplitter.MAPPER.writeValueAsString(response));
+            }
+        };
+    }
+
+    /*
+     * Response when the request is not a readable Bundle
+     */
+    public static Processor invalid() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Exception cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+                Message in = exchange.getIn();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 400);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/fhir+json");
+                in.setBody(BundleEntrySplitter.MAPPER.writeValueAsString(operationOutcome("invalid",
+                    cause == null ? "invalid Bundle" : cause.getMessage())));
+            }
+        };
+    }
+
+    /*
+     * Response to a transaction Bundle, refused before any of its entries was published
+     */
+    public static Processor unsupported() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Message in = exchange.getIn();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 422);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/fhir+json");
+                in.setBody(BundleEntrySplitter.MAPPER.writeValueAsString(operationOutcome("not-supported",
+                    new BundleEntrySplitter.TransactionBundleException().getMessage())));
+            }
+        };
+    }
+
+    private static ObjectNode entry(ObjectNode response) {
+        ObjectNode entry = BundleEntrySplitter.MAPPER.createObjectNode();
+        entry.set("response", response);
+        return entry;
+    }
+
+    static ObjectNode operationOutcome(String code, String diagnostics) {
+        ObjectNode outcome = BundleEntrySplitter.MAPPER.createObjectNode();
+        outcome.put("resourceType", "OperationOutcome");
+        ObjectNode issue = outcome.putArray("issue").addObject();
+        issue.put("severity", "error");
+        issue.put("code", code);
+        issue.put("diagnostics", diagnostics);
+        return outcome;
+    }
+}
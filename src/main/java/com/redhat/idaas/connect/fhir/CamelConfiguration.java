@@ -17,14 +17,25 @@
 package com.redhat.idaas.connect.fhir;
 
 import ca.uhn.fhir.store.IAuditDataStore;
+import org.apache.camel.Exchange;
 import org.apache.camel.ExchangePattern;
 import org.apache.camel.LoggingLevel;
 import org.apache.camel.MultipleConsumersSupport;
+import org.apache.camel.Predicate;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.ThreadPoolRejectedPolicy;
+import org.apache.camel.builder.PredicateBuilder;
 import org.apache.camel.builder.RouteBuilder;
+import org.apache.camel.builder.ThreadPoolProfileBuilder;
 import org.apache.camel.component.kafka.KafkaComponent;
 import org.apache.camel.component.kafka.KafkaConstants;
 import org.apache.camel.component.kafka.KafkaEndpoint;
-import org.apache.camel.component.servlet.CamelHttpTransportServlet;
+import org.apache.camel.model.RouteDefinition;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import io.netty.handler.timeout.ReadTimeoutException;
+import com.redhat.idaas.connect.fhir.PatientKeyExtractor.KeyStrategy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.boot.web.servlet.ServletRegistrationBean;
@@ -35,15 +46,55 @@ import org.springframework.beans.factory.annotation.Autowired;
 //import javax.jms.ConnectionFactory;
 import org.springframework.stereotype.Component;
 import sun.util.calendar.BaseCalendar;
+import java.io.File;
 import java.time.LocalDate;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
 
 @Component
 public class CamelConfiguration extends RouteBuilder {
   private static final Logger log = LoggerFactory.getLogger(CamelConfiguration.class);
 
+  // Kafka producer default max.request.size, and the record and batch framing around a batch value
+  private static final int DEFAULT_MAX_REQUEST_SIZE = 1048576;
+  private static final int AUDIT_BATCH_RECORD_OVERHEAD = 16384;
+
   @Autowired
   private ConfigProperties config;
 
+  @Autowired
+  private AuditExecutor auditExecutor;
+
+  @Autowired
+  private ReceiptRegistry receiptRegistry;
+
+  @Autowired
+  private ImportRegistry importRegistry;
+
+  @Autowired
+  private ExportJobManager exportJobManager;
+
+  @Autowired
+  private QuotaManager quotaManager;
+
+  @Autowired
+  private ConcurrencyLimits concurrencyLimits;
+
+  @Autowired
+  private TransactionalPublisher transactionalPublisher;
+
+  @Autowired
+  private KafkaOutbox kafkaOutbox;
+
+  @Autowired
+  private ClaimCheck claimCheck;
+
+  @Autowired
+  private TopicProvisioner topicProvisioner;
+
   @Bean
   private KafkaEndpoint kafkaEndpoint(){
     KafkaEndpoint kafkaEndpoint = new KafkaEndpoint();
@@ -56,42 +107,198 @@ public class CamelConfiguration extends RouteBuilder {
   }
 
   @Bean
-  ServletRegistrationBean camelServlet() {
+  AsyncCamelServlet asyncCamelServlet() {
+    return new AsyncCamelServlet(config);
+  }
+
+  @Bean
+  ServletRegistrationBean camelServlet(AsyncCamelServlet asyncCamelServlet) {
     // use a @Bean to register the Camel servlet which we need to do
     // because we want to use the camel-servlet component for the Camel REST service
     ServletRegistrationBean mapping = new ServletRegistrationBean();
     mapping.setName("CamelServlet");
     mapping.setLoadOnStartup(1);
-    mapping.setServlet(new CamelHttpTransportServlet());
+    // requests run in Servlet 3 async mode (idaas.servletAsync*), see AsyncCamelServlet
+    mapping.setServlet(asyncCamelServlet);
+    mapping.setAsyncSupported(true);
     mapping.addUrlMappings("/camel/*");
     return mapping;
   }
 
   private String getKafkaTopicUri(String topic) {
+    return getKafkaTopicUri(topic, false);
+  }
+
+  /*
+   * rawBody selects the ByteArraySerializer so a byte[] body is handed to the producer as is,
+   * instead of being decoded to a String and encoded back again by the StringSerializer
+   */
+  private String getKafkaTopicUri(String topic, boolean rawBody) {
       StringBuilder uri = new StringBuilder();
       uri.append(config.getKafkaBaseURL())
          .append("?topic=").append(topic)
          .append("&brokers=").append(config.getKafkaBrokers());
+      if (rawBody) {
+        uri.append("&serializerClass=").append(ByteArraySerializer.class.getName());
+      }
+      // producer tuning from idaas.kafka.* (profile, explicit values, per topic overrides)
+      uri.append(config.getKafka().resolve(topic).toUriOptions());
     return uri.toString();
   }
 
-  private String getFHIRServerUri(String fhirResource) {
+  /*
+   * Producer endpoint per resource. Resources share one producer unless their topic has
+   * idaas.kafka.topics.<topic>.* overrides, in which case they get their own tuned producer.
+   */
+  private Map<FhirResource, String> getProducerUris(boolean rawBody, PriorityLanes lanes) {
+    String shared = getKafkaTopicUri("fhirsvr_ingress", rawBody);
+    Map<FhirResource, String> uris = new EnumMap<>(FhirResource.class);
+    for (FhirResource resource : FhirResource.values()) {
+      String uri = config.getKafka().hasOverride(resource.getTopic())
+          ? getKafkaTopicUri(resource.getTopic(), rawBody) : shared;
+      // a distinct client id gives every priority lane producers of its own
+      uris.put(resource, lanes == null ? uri : uri + "&clientId=idaas-lane-" + lanes.laneOf(resource));
+    }
+    return uris;
+  }
+
+  /*
+   * Audit batch producer. Its max.request.size must fit a full batch plus the record overhead:
+   * left unset it is raised to that, set explicitly too low fails the start instead of every
+   * batch record being rejected with RecordTooLargeException at runtime.
+   */
+  private String getAuditBatchTopicUri() {
+    String uri = getKafkaTopicUri("opsmgmt_platformtransactions", true);
+    int required = config.getAuditBatchBytes() + AUDIT_BATCH_RECORD_OVERHEAD;
+    Integer maxRequestSize = config.getKafka().resolve("opsmgmt_platformtransactions").getMaxRequestSize();
+    if (maxRequestSize == null) {
+      return required > DEFAULT_MAX_REQUEST_SIZE ? uri + "&maxRequestSize=" + required : uri;
+    }
+    if (maxRequestSize < required) {
+      throw new IllegalArgumentException("idaas.auditBatchBytes=" + config.getAuditBatchBytes()
+          + " needs a max.request.size of at least " + required + " for opsmgmt_platformtransactions, got " + maxRequestSize);
+    }
+    return uri;
+  }
+
+  /*
+   * FHIR server of idaas.fhirVendor (ibm, hapi or microsoft) as a netty4-http producer over a pool of
+   * at most idaas.fhirMaxConnections kept-alive connections. The exchange's thread waits for the
+   * answer, at most idaas.fhirRequestTimeout ms. The resource type is appended per request from
+   * Exchange.HTTP_PATH, so every resource shares the one pool of the vendor's server. Upstream
+   * statuses come back as they are (throwExceptionOnFailure=false), see ForwardingReply.
+   */
+  private String getFHIRServerUri() {
     String fhirServerVendor = config.getFhirVendor();
     String fhirServerURI = null;
-    if (fhirServerVendor.equals("ibm"))
+    if ("ibm".equals(fhirServerVendor))
     {
-      //.to("jetty:http://localhost:8090/fhir-server/api/v4/AdverseEvents?bridgeEndpoint=true&exchangePattern=InOut")
-      fhirServerURI = "jetty:"+config.getIbmURI()+fhirResource+"?bridgeEndpoint=true&exchangePattern=InOut";
+      fhirServerURI = config.getIbmURI();
     }
-    if (fhirServerVendor.equals("hapi"))
+    if ("hapi".equals(fhirServerVendor))
     {
-      fhirServerURI = "jetty:"+config.getHapiURI()+fhirResource+"?bridgeEndpoint=true&exchangePattern=InOut";
+      fhirServerURI = config.getHapiURI();
     }
-    if (fhirServerVendor.equals("microsoft"))
+    if ("microsoft".equals(fhirServerVendor))
     {
-      fhirServerURI = "jetty:"+config.getMicrosoftURI()+fhirResource+"?bridgeEndpoint=true&exchangePattern=InOut";
+      fhirServerURI = config.getMicrosoftURI();
     }
-    return fhirServerURI;
+    if (fhirServerURI == null) {
+      throw new IllegalArgumentException("idaas.fhirForwarding needs idaas.fhirVendor (ibm, hapi or microsoft) and its URI, got "
+          + fhirServerVendor);
+    }
+    return "netty4-http:" + fhirServerURI
+        + "?keepAlive=true&disconnect=false&tcpNoDelay=true"
+        + "&producerPoolEnabled=true&producerPoolMaxActive=" + config.getFhirMaxConnections()
+        + "&producerPoolMinEvictableIdle=" + config.getFhirIdleTimeout()
+        + "&connectTimeout=" + config.getFhirConnectTimeout()
+        + "&requestTimeout=" + config.getFhirRequestTimeout()
+        + "&throwExceptionOnFailure=false";
+  }
+
+  /*
+   * Resources whose audit record carries the full body. With idaas.auditMode=reference only the
+   * resources listed in idaas.auditFullBodyResources (path or resourceType) keep the payload,
+   * everything else is audited by hash, length and Kafka coordinates.
+   */
+  private Set<FhirResource> getFullBodyAuditResources() {
+    if (!"reference".equalsIgnoreCase(config.getAuditMode())) {
+      return EnumSet.allOf(FhirResource.class);
+    }
+    Set<FhirResource> fullBody = EnumSet.noneOf(FhirResource.class);
+    for (String name : config.getAuditFullBodyResources()) {
+      FhirResource resource = FhirResource.fromPath(name);
+      if (resource == null) {
+        resource = FhirResource.fromResourceType(name.trim());
+      }
+      if (resource == null) {
+        log.warn("Ignoring unknown FHIR resource in idaas.auditFullBodyResources: {}", name);
+        continue;
+      }
+      fullBody.add(resource);
+    }
+    return fullBody;
+  }
+
+  /*
+   * Message key strategy per resource: idaas.kafkaKeyStrategy for every resource, replaced
+   * per resource (path or resourceType) by idaas.kafkaKeyStrategies.<resource>
+   */
+  private Map<FhirResource, KeyStrategy> getKeyStrategies() {
+    Map<FhirResource, KeyStrategy> strategies = new EnumMap<>(FhirResource.class);
+    KeyStrategy defaultStrategy = toKeyStrategy(config.getKafkaKeyStrategy());
+    for (FhirResource resource : FhirResource.values()) {
+      strategies.put(resource, defaultStrategy);
+    }
+    for (Map.Entry<String, String> entry : config.getKafkaKeyStrategies().entrySet()) {
+      FhirResource resource = FhirResource.fromPath(entry.getKey());
+      if (resource == null) {
+        resource = FhirResource.fromResourceType(entry.getKey().trim());
+      }
+      if (resource == null) {
+        log.warn("Ignoring unknown FHIR resource in idaas.kafkaKeyStrategies: {}", entry.getKey());
+        continue;
+      }
+      strategies.put(resource, toKeyStrategy(entry.getValue()));
+    }
+    return strategies;
+  }
+
+  private static KeyStrategy toKeyStrategy(String strategy) {
+    return KeyStrategy.valueOf(strategy.trim().toUpperCase().replace('-', '_'));
+  }
+
+  /*
+   * idaas.ingressMode=netty serves the same /camel/* paths from netty4-http: requests are handled on
+   * the event loop with Netty's pooled buffers and kept-alive connections, so idle or slow clients
+   * don't each hold a container thread. The request body is handed over without a stream cache copy;
+   * every route converts or streams it exactly once. The same holds for the servlet, whose
+   * request stream is not cached either (see PayloadSpooler).
+   */
+  private String getIngressUri() {
+    if (!"netty".equalsIgnoreCase(config.getIngressMode())) {
+      return "servlet:/?matchOnUriPrefix=true&disableStreamCache=true";
+    }
+    StringBuilder uri = new StringBuilder();
+    uri.append("netty4-http:http://").append(config.getNettyHost()).append(':').append(config.getNettyPort())
+       .append("/camel?matchOnUriPrefix=true")
+       .append("&keepAlive=true&tcpNoDelay=true&reuseAddress=true")
+       .append("&disableStreamCache=true")
+       .append("&backlog=").append(config.getNettyBacklog())
+       .append("&chunkedMaxContentLength=").append(config.getNettyMaxContentLength())
+       // gzip/deflate replies when the client accepts them; the servlet side uses server.compression.*
+       .append("&compression=").append(config.isResponseCompression());
+    if (config.getNettyWorkerCount() > 0) {
+      uri.append("&workerCount=").append(config.getNettyWorkerCount());
+    }
+    return uri.toString();
+  }
+
+  /*
+   * Matches requests whose servlet path starts with the given segment, e.g. receipts/{id}
+   */
+  private static Predicate pathIs(final String segment) {
+    return exchange -> segment.equals(FhirResource.firstSegment(exchange.getIn().getHeader(Exchange.HTTP_PATH, String.class)));
   }
 
   /*
@@ -101,6 +308,21 @@ public class CamelConfiguration extends RouteBuilder {
   @Override
   public void configure() throws Exception {
 
+    // idaas.kafkaRawBody keeps the request as the bytes read from the servlet all the way to Kafka
+    boolean rawBody = config.isKafkaRawBody();
+    Class<?> ingressBodyType = rawBody ? byte[].class : String.class;
+    boolean binaryAudit = "binary".equalsIgnoreCase(config.getAuditFormat());
+    PriorityLanes lanes = config.isPriorityLanes() ? new PriorityLanes(config.getLanes()) : null;
+    // every publish of a request (resource, Bundle entry, import line) passes its priority lane first
+    String publishUri = lanes != null ? "direct:fhirlane" : "direct:fhirpublish";
+    FhirResourceProcessor resourceProcessor = new FhirResourceProcessor(getFullBodyAuditResources(), getProducerUris(rawBody, lanes));
+    // bodies above idaas.spoolThreshold stay on disk as SpooledBody and are converted where they are read
+    getContext().getTypeConverterRegistry().addTypeConverters(new SpooledBody.Converters());
+    // a compressed body inflating past idaas.maxInflatedSize fails wherever it is read, see ContentEncodingProcessor
+    onException(ContentEncodingProcessor.InflatedSizeException.class)
+        .handled(true)
+        .process(ContentEncodingProcessor.tooLarge());
+
     /*
      * Audit
      *
@@ -109,22 +331,49 @@ public class CamelConfiguration extends RouteBuilder {
      * We are doing this to ensure we dont need to build a series of beans
      * and we keep the processing as lightweight as possible
      *
+     * Wire taps into this route run on the bounded AuditExecutor, never on Camel's default
+     * wire tap pool, so a slow audit topic can not grow an unbounded queue
+     *
      */
-    from("direct:auditing")
-        .setHeader("messageprocesseddate").simple("${date:now:yyyy-MM-dd}")
-        .setHeader("messageprocessedtime").simple("${date:now:HH:mm:ss:SSS}")
-        .setHeader("processingtype").exchangeProperty("processingtype")
-        .setHeader("industrystd").exchangeProperty("industrystd")
-        .setHeader("component").exchangeProperty("componentname")
-        .setHeader("messagetrigger").exchangeProperty("messagetrigger")
-        .setHeader("processname").exchangeProperty("processname")
-        .setHeader("auditdetails").exchangeProperty("auditdetails")
-        .setHeader("camelID").exchangeProperty("camelID")
-        .setHeader("exchangeID").exchangeProperty("exchangeID")
-        .setHeader("internalMsgID").exchangeProperty("internalMsgID")
-        .setHeader("bodyData").exchangeProperty("bodyData")
-        .convertBodyTo(String.class).to(getKafkaTopicUri("opsmgmt_platformtransactions"))
-    ;
+    RouteDefinition auditing = from("direct:auditing")
+        // processed date/time and the audit properties as headers (AuditStampProcessor), or one
+        // binary record with no headers for idaas.auditFormat=binary (AuditEventCodec)
+        .process(binaryAudit ? new BinaryAuditProcessor() : new AuditStampProcessor());
+    if (config.isAuditBatch()) {
+      // one record per idaas.auditBatchSize events, auditBatchBytes bytes or auditBatchWindow ms,
+      // whichever comes first; a pending batch is still sent when the route stops, a crash loses it
+      AuditBatchAggregator batcher = new AuditBatchAggregator(binaryAudit, config.getAuditBatchBytes());
+      auditing
+          .aggregate(constant(true), batcher)
+              .completionSize(config.getAuditBatchSize())
+              .completionPredicate(AuditBatchAggregator.sizeReached(config.getAuditBatchBytes()))
+              .completionInterval(config.getAuditBatchWindow())
+              .forceCompletionOnStop()
+              .process(batcher.complete())
+              .to(getAuditBatchTopicUri())
+          .end()
+      ;
+    } else {
+      auditing
+          .convertBodyTo(binaryAudit ? byte[].class : String.class)
+          .to(getKafkaTopicUri("opsmgmt_platformtransactions", binaryAudit))
+      ;
+    }
+    if (auditExecutor.getRejectionPolicy() == AuditExecutor.RejectionPolicy.SPILL) {
+      // audit records spilled while the queue was full go through direct:auditing once it has drained
+      ProducerTemplate spillReplay = getContext().createProducerTemplate();
+      auditExecutor.setSpillReplayer((properties, body) -> {
+        Exchange sent = spillReplay.send("direct:auditing", exchange -> {
+          for (Map.Entry<String, String> property : properties.entrySet()) {
+            exchange.setProperty(property.getKey(), property.getValue());
+          }
+          exchange.getIn().setBody(body);
+        });
+        if (sent.getException() != null) {
+          throw sent.getException();
+        }
+      });
+    }
     /*
     *  Logging
     */
@@ -136,2874 +385,365 @@ public class CamelConfiguration extends RouteBuilder {
 
     /*
      *  Any endpoint defined would be managed by access http(s)://<servername>:<serverport>/<resource name>
+     *
+     *  FHIR Ingress
+     *  One servlet consumer serves every resource listed in FhirResource (clinical, financial,
+     *  evidence based medicine and quality reporting) plus the connector's own endpoints:
+     *  /camel/receipts/{id}, /camel/content/{hash}, /camel/topics, /camel/bundle, /camel/$import and
+     *  /camel/$export.
+     *  idaas.ingressMode selects the servlet (default) or the netty4-http transport.
+     *  gzip and deflate request bodies are inflated while the routes read them, at most
+     *  idaas.maxInflatedSize bytes (413).
+     *  Client and resource quotas (idaas.quota*) are checked before anything is read.
+     */
+    from(getIngressUri())
+        .routeId("FHIRIngress")
+        .process(AsyncCamelServlet.bindTimeout())
+        .process(quotaManager.enforce())
+        .process(new ContentEncodingProcessor(config.getMaxInflatedSize()))
+        .choice()
+            .when(pathIs("receipts"))
+                .to("direct:receipts")
+            .when(pathIs("content"))
+                .to("direct:content")
+            .when(pathIs("topics"))
+                .to("direct:topics")
+            .when(pathIs("bundle"))
+                .to("direct:bundle")
+            .when(pathIs("$import"))
+                .to("direct:import")
+            .when(pathIs("$export"))
+                .to("direct:export")
+            .otherwise()
+                .to("direct:fhirresource")
+        .end()
+    ;
+    /*
+     *  The path is resolved against FhirResource, which supplies the auditing properties and the
+     *  fhirsvr_* topic for the resource. The body is only converted once, to a String or to the
+     *  raw byte[] (idaas.kafkaRawBody), or spooled to disk above idaas.spoolThreshold. With
+     *  idaas.asyncIngest the request is answered with 202 Accepted and a receipt as soon as its
+     *  record is in the outbox, otherwise once Kafka acked it. With
+     *  idaas.concurrencyLimitEnabled requests beyond the adaptive in-flight limit are answered
+     *  with 503 before the body is read, and so are requests whose priority lane is full.
+     */
+    from("direct:fhirresource")
+        .routeId("FHIRResource")
+        .process(concurrencyLimits.limit(concurrencyLimits.getIngress()))
+        .process(new PayloadSpooler(ingressBodyType, config.getSpoolThreshold(), new File(config.getSpoolDirectory())))
+        // resolve resource and set Auditing Properties
+        .process(resourceProcessor)
+        .doTry()
+            .to(config.isAsyncIngest() ? "direct:fhirasync" : publishUri)
+        .doCatch(PriorityLanes.LaneFullException.class)
+            .setHeader(Exchange.HTTP_RESPONSE_CODE).constant(503)
+            .setHeader("Retry-After").constant("1")
+            .setBody().simple("${exception.message}")
+        .end()
+    ;
+    /*
+     *  Priority lanes (idaas.priorityLanes)
+     *  Each lane admits at most idaas.lanes.<name>.maxInFlight publishes at once and has its own
+     *  Kafka producers, the outbox's included; not available with idaas.kafkaTransactional. The publish runs on the caller's thread, nothing is handed off or waited
+     *  for: a request whose lane is full fails with LaneFullException at once, so a burst of
+     *  claims only ever takes the financial lane's share of servlet threads.
      */
+    if (lanes != null) {
+      if (config.isKafkaTransactional()) {
+        throw new IllegalArgumentException("idaas.priorityLanes cannot be combined with idaas.kafkaTransactional,"
+            + " all transactions go through one producer and the lanes would share its buffer");
+      }
+      from("direct:fhirlane")
+          .routeId("FHIRLane")
+          .process(lanes.enter())
+          .doTry()
+              .to("direct:fhirpublish")
+          .doFinally()
+              .process(lanes.leave())
+          .end()
+      ;
+    }
+    RouteDefinition publish = from("direct:fhirpublish")
+        .routeId("FHIRPublish");
+    if (config.isFhirForwarding()) {
+      // the FHIR server's slot is taken before anything is published: a full limit is a 503 with nothing sent,
+      // not an error for a record Kafka already has
+      publish
+          .process(concurrencyLimits.reserve(concurrencyLimits.getFhirServer(),
+              exchangeProperty(ForwardingReply.STATUS_PROPERTY).isGreaterThanOrEqualTo(500)));
+    }
+    if (config.isKafkaTransactional()) {
+      // data and audit record committed together in one Kafka transaction, see TransactionalPublisher
+      publish
+          .process(new PatientKeyProcessor(getKeyStrategies()));
+      if (claimCheck.isEnabled()) {
+        publish.process(claimCheck.offload());
+      }
+      publish
+          .process(AsyncCamelServlet.failIfTimedOut())
+          .process(transactionalPublisher.publish());
+    } else {
+      // Kafka key per idaas.kafkaKeyStrategy, taken from the resource before a claim check replaces it
+      publish
+          .process(new PatientKeyProcessor(getKeyStrategies()));
+      if (claimCheck.isEnabled()) {
+        // bodies above idaas.claimCheckThreshold go to the content store, Kafka gets a pointer record
+        publish.process(claimCheck.offload());
+      }
+      publish
+          // the client was answered 503 already (idaas.servletAsyncTimeout), don't publish behind its back
+          .process(AsyncCamelServlet.failIfTimedOut())
+          // iDAAS DataHub Processing - full body audit
+          .choice()
+              .when(exchangeProperty(FhirResourceProcessor.FULL_BODY_AUDIT_PROPERTY).isEqualTo(true))
+                  .wireTap("direct:auditing")
+                      .executorService(auditExecutor.getExecutorService())
+                      .onPrepare(auditExecutor.onPrepare(null))
+              .endChoice()
+          .end()
+          // Send To Topic
+          .setHeader(KafkaConstants.OVERRIDE_TOPIC).exchangeProperty(FhirResourceProcessor.TOPIC_PROPERTY);
+      if (kafkaOutbox.isEnabled()) {
+        // sent within idaas.outboxSendTimeout or else put in the local outbox (202) and replayed in order, see KafkaOutbox
+        publish
+            .process(kafkaOutbox.send());
+      } else {
+        publish
+            .toD("${exchangeProperty." + FhirResourceProcessor.ENDPOINT_PROPERTY + "}");
+      }
+      publish
+          // iDAAS DataHub Processing - reference audit, once the record's partition and offset are known;
+          // an outboxed record has none yet and is audited when it is replayed (direct:outboxreplayed)
+          .choice()
+              .when(PredicateBuilder.and(exchangeProperty(FhirResourceProcessor.FULL_BODY_AUDIT_PROPERTY).isEqualTo(false),
+                  exchangeProperty(KafkaOutbox.QUEUED_PROPERTY).isNull()))
+                  .wireTap("direct:auditing")
+                      .executorService(auditExecutor.getExecutorService())
+                      .onPrepare(auditExecutor.onPrepare(new AuditReferenceProcessor()))
+              .endChoice()
+          .end();
+    }
+    /*
+     *  Outbox replay (idaas.outboxEnabled)
+     *  Every record the outbox replayed comes back here with the exchange properties it was
+     *  queued with and the partition and offset Kafka gave it, for the deferred reference audit
+     *  and the asynchronous ingest receipt. A record Kafka refused for good only fails its receipt.
+     */
+    if (kafkaOutbox.isEnabled()) {
+      ProducerTemplate replayed = getContext().createProducerTemplate();
+      KafkaOutbox.ReplayListener receipts = receiptRegistry.outboxListener();
+      kafkaOutbox.setReplayListener(new KafkaOutbox.ReplayListener() {
+        @Override
+        public void replayed(ProducerRecord<byte[], byte[]> record, Map<String, String> context, RecordMetadata metadata) {
+          receipts.replayed(record, context, metadata);
+          String resource = context.get(FhirResourceProcessor.RESOURCE_PROPERTY);
+          if (resource == null) {
+            return;
+          }
+          replayed.send("direct:outboxreplayed", exchange -> {
+            resourceProcessor.apply(exchange, FhirResource.valueOf(resource));
+            exchange.setProperty("exchangeID", context.get("exchangeID"));
+            exchange.setProperty("internalMsgID", context.get("internalMsgID"));
+            exchange.getIn().setHeader(KafkaConstants.KAFKA_RECORDMETA, Collections.singletonList(metadata));
+            exchange.getIn().setBody(record.value());
+          });
+        }
 
+        @Override
+        public void failed(ProducerRecord<byte[], byte[]> record, Map<String, String> context, Throwable cause) {
+          receipts.failed(record, context, cause);
+        }
+      });
+      from("direct:outboxreplayed")
+          .routeId("FHIROutboxReplayed")
+          .choice()
+              .when(exchangeProperty(FhirResourceProcessor.FULL_BODY_AUDIT_PROPERTY).isEqualTo(false))
+                  .wireTap("direct:auditing")
+                      .executorService(auditExecutor.getExecutorService())
+                      .onPrepare(auditExecutor.onPrepare(new AuditReferenceProcessor()))
+              .endChoice()
+          .end()
+      ;
+    }
+    if (config.isFhirForwarding()) {
+      // Invoke External FHIR Server, behind its own adaptive concurrency limit. The outcome is reported in
+      // X-iDAAS-Forwarding (502 unreachable, 504 no answer within idaas.fhirRequestTimeout), the reply stays the
+      // publish's unless the record went straight to Kafka and the server accepted it, see ForwardingReply
+      publish
+          .process(ForwardingReply.save())
+          .process(ClaimCheck.restore())
+          .removeHeaders("*", BundleEntrySplitter.RESOURCE_TYPE_HEADER, BundleEntrySplitter.RESOURCE_ID_HEADER)
+          .setHeader(Exchange.HTTP_METHOD, constant("POST"))
+          .setHeader(Exchange.CONTENT_TYPE, constant("application/fhir+json"))
+          .setHeader(Exchange.HTTP_PATH).simple("${exchangeProperty." + FhirResourceProcessor.RESOURCE_PROPERTY + ".resourceType}")
+          .process(concurrencyLimits.start(concurrencyLimits.getFhirServer()))
+          .doTry()
+              .to(getFHIRServerUri())
+          .doCatch(ReadTimeoutException.class)
+              .setHeader(Exchange.HTTP_RESPONSE_CODE, constant(504))
+              .setBody(constant(""))
+          .doCatch(Exception.class)
+              .setHeader(Exchange.HTTP_RESPONSE_CODE, constant(502))
+              .setBody(constant(""))
+          .end()
+          .process(ForwardingReply.restore());
+    }
     /*
-     *  Clinical FHIR
+     *  Asynchronous ingest (idaas.asyncIngest)
+     *  The record is appended to the outbox and the request acknowledged with 202 Accepted and a
+     *  receipt only then, so an accepted record survives a restart. The outbox replay sends it
+     *  and marks the receipt sent, or failed when Kafka refuses it for good (dead letter); the
+     *  receipt is pollable at /camel/receipts/{id}. A full lane or a full outbox is answered with 503.
      */
-    from("servlet://adverseevent")
-        .routeId("FHIRAdverseEvent")
-        // set Auditing Properties
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("AdverseEvent")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Adverse Event message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_adverseevent"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/AdverseEvents?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("adverseevents")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("adverseevents FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
+    if (config.isAsyncIngest()) {
+      if (!kafkaOutbox.isEnabled() || config.isKafkaTransactional()) {
+        throw new IllegalArgumentException("idaas.asyncIngest needs idaas.outboxEnabled=true and idaas.kafkaTransactional=false,"
+            + " accepted records are kept in the outbox until they are sent");
+      }
+      from("direct:fhirasync")
+          .routeId("FHIRAsyncIngest")
+          .process(receiptRegistry.accepted())
+          .setProperty(KafkaOutbox.DEFERRED_PROPERTY).constant(true)
+          .doTry()
+              .to(publishUri)
+              .process(receiptRegistry.acceptedResponse())
+          .doCatch(IllegalStateException.class, PriorityLanes.LaneFullException.class)
+              .process(receiptRegistry.failed())
+              .setHeader(Exchange.HTTP_RESPONSE_CODE).constant(503)
+              .setHeader("Retry-After").constant("1")
+              .setBody().simple("${exception.message}")
+          .end()
       ;
-    from("servlet://alergyintollerance")
-        .routeId("FHIRAllergyIntollerance")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("messagetrigger").constant("AllergyIntollerance")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Allergy Intollerance message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_allergyintellorance"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/AllergyIntollerance?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("allergyintollerance")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("allergyintollerance FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")// Invoke External FHIR Server
-    ;
-    from("servlet://appointment")
-         .routeId("FHIRAppointment")
-         .convertBodyTo(String.class)
-         // set Auditing Properties
-         .setProperty("processingtype").constant("data")
-         .setProperty("appname").constant("iDAAS-Connect-FHIR")
-         .setProperty("industrystd").constant("FHIR")
-         .setProperty("messagetrigger").constant("Appointment")
-         .setProperty("component").simple("${routeId}")
-         .setProperty("camelID").simple("${camelId}")
-         .setProperty("exchangeID").simple("${exchangeId}")
-         .setProperty("internalMsgID").simple("${id}")
-         .setProperty("bodyData").simple("${body}")
-         .setProperty("processname").constant("Input")
-         .setProperty("auditdetails").constant("Appointment message received")
-         // iDAAS DataHub Processing
-         .wireTap("direct:auditing")
-         // Send To Topic
-         .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_appointment"))
-         //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-         //.to("jetty:http://localhost:8090/fhir-server/api/v4/Appointment?bridgeEndpoint=true&exchangePattern=InOut")
-         //Process Response
-         //.convertBodyTo(String.class)
-         // set Auditing Properties
-         //.setProperty("processingtype").constant("data")
-         //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-         //.setProperty("industrystd").constant("FHIR")
-         //.setProperty("messagetrigger").constant("appointment")
-         //.setProperty("component").simple("${routeId}")
-         //.setProperty("processname").constant("Response")
-         //.setProperty("camelID").simple("${camelId}")
-         //.setProperty("exchangeID").simple("${exchangeId}")
-         //.setProperty("internalMsgID").simple("${id}")
-         //.setProperty("bodyData").simple("${body}")
-         //.setProperty("auditdetails").constant("appointment FHIR response message received")
-         // iDAAS DataHub Processing
-         //.wireTap("direct:auditing")// Invoke External FHIR Server
-    ;
-    from("servlet://appointmentresponse")
-        .routeId("FHIRAppointmentResponse")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("AppointmentResponse")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Appointment Response message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_appointmentresponse"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/AppointmentResponse?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("appointmentresponse")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("appointmentresponse FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")// Invoke External FHIR Server
-    ;
-    from("servlet://careplan")
-        .routeId("FHIRCarePlan")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("CarePlan")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("CarePlan message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_careplan"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/CarePlan?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("careplan")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("careplan FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")// Invoke External FHIR Server
-    ;
-    from("servlet://careteam")
-        .routeId("FHIRCareTeam")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("CareTeam")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("CareTeam message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_careteam"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/CareTeam?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("careteam")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("careteam FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")// Invoke External FHIR Server
-        // Send To Topic
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://clincialimpression")
-        .routeId("FHIRClinicalImpression")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ClinicalImpression")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("ClinicalImpression message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_clinicalimpression"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ClinicalImpression?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("clinicalimpression")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("clinicalimpression FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://codesystem")
-        .routeId("FHIRCodeSystem")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("CodeSystem")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("CodeSystem message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_codesystem"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/CodeSystem?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("codesystem")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("codesystem FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://consent")
-        .routeId("FHIRConsent")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Consent")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Consent message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_consent"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Consent?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("consent")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("consent FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://communication")
-        .routeId("FHIRCommunication")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Communication")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Communication message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_communication"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Communication?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("communication")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("communication FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://condition")
-        .routeId("FHIRCondition")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Condition")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Condition message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_condition"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Condition?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("condition")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("condition FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://detectedissue")
-        .routeId("FHIRDetectedIssue")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DetectedIssue")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Detected Issue message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_detectedissue"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/DetectedIssue?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("detectedissue")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("detectedissue FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://device")
-        .routeId("FHIRDevice")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Device")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Device message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_device"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Device?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("device")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("device FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://devicerequest")
-        .routeId("FHIRDeviceRequest")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DeviceRequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Device Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_devicerequest"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/DeviceRequest?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("devicerequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("devicerequest FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://deviceusestatement")
-        .routeId("FHIRDeviceUseStatement")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DeviceUseStatement")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Device Use Statement message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_deviceusestatement"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/DeviceUseStatement?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("deviceusestatement")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("deviceusestatement FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://diagnosticreport")
-        .routeId("FHIRDiagnosticReport")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DiagnosticReport")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Diagnostic Report message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_diagnosticreport"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/DiagnosticReport?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("DiagnosticReport")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("Diagnostic Report FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://documentreference")
-        .routeId("FHIRDocumentReference")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("DocumentReference")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("DocumentReference message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_documentreference"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/DocumentReference?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("documentreference")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("documentreference FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://encounter")
-        .routeId("FHIREncounter")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Encounter")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Encounter message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_encounter"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Encounter?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("encounter")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("encounter FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://episodeofcare")
-        .routeId("FHIREpisodeOfCare")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("EpisodeOfCare")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("EpisodeOfCare message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_episodeofcare"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/EpisodeOfCare?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("episodeofcare")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("episodeofcare FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://familymemberhistory")
-        .routeId("FHIRMemberHistory")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Family Member History")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Family Member History message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_familymemberhistory"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/FamilyMemberHistory?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("Family Member History")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("Family Member History FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://goal")
-        .routeId("FHIRGoal")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Goal")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Goal message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_goal"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Goal?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("goal")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("goal FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://healthcareservice")
-        .routeId("FHIRHealthcareService")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("HealthcareService")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("HealthcareService message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_healthcareservice"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/HealthcareService?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("healthcareservice")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("healthcareservice FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://imagingstudy")
-        .routeId("FHIRImagingStudy")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ImagingStudy")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Imaging Study message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_imagingstudy"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ImagingStudy?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("imagingstudy")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("imagingstudy FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-     from("servlet://immunization")
-        .routeId("FHIRImmunization")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Immunization")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Immunization message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_immunization"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Immunization?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("Immunization")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("Immunization FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://location")
-        .routeId("FHIRLocation")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Location")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Location message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_location"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Location?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("location")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("location FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://medication")
-        .routeId("FHIRMedication")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Medication")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Medication message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_medication"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Medication?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("Medication")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("Medication FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://medicationadministration")
-        .routeId("FHIRMedicationAdministration")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("MedicationAdministration")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Medication Admin message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_medicationadmiinistration"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/MedicationAdministration?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("medicationadministration")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("Medication Admin FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://medicationdispense")
-        .routeId("FHIRMedicationDispense")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("MedicationDispense")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Medication Dispense message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_medicationdispense"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/MedicationDispense?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("medicationdispense")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("Medication Dispense response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://medicationrequest")
-        .routeId("FHIRMedicationRequest")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("MedicationRequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Medication Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_medicationrequest"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/MedicationRequest?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("medicationrequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("meedicationrequest FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://medicationstatement")
-        .routeId("FHIRMedicationStatement")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("MedicationStatement")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Medication Statement message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_medicationstatement"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/MedicationStatement?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("medicationstatement")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("Medication Statement FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://observation")
-        .routeId("FHIRObservation")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Observation")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Observation message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_observation"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Observation?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("observation")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("observation FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://organization")
-        .routeId("FHIROrganization")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Organization")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Organization message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_organization"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Organization?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("organization")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("organization FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://organizationaffiliation")
-        .routeId("FHIROrganizationAffiliation")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("OrganizationAffiliation")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Organization Affiliation message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_organizationaffiliation"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/OrganizationAffiliation?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("organizationaffiliation")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("organizationaffiliation FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://patient")
-        .routeId("FHIRPatient")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Patient")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Patient message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_patient"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Patient?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("patient")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("patient FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://person")
-        .routeId("FHIRPerson")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Person")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Person message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_person"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Person?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("person")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("person FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://practitioner")
-        .routeId("FHIRPractitioner")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Practitioner")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("Practitioner message received")
-        .setProperty("bodyData").simple("${body}")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_practitioner"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Practitioner?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("practitioner")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("practitioner FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://practitionerrole")
-        .routeId("FHIRPractitionerRole")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("PractitionerRole")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("Practitioner Role message received")
-        .setProperty("bodyData").simple("${body}")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_practitionerrole"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/PractitionerRole?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("practitionerrole")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("practitioner role response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://procedure")
-        .routeId("FHIRProcedure")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Procedure")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Procedure message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_procedure"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Procedure?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("procedure")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("procedure FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://questionaire")
-        .routeId("FHIRQuestionaire")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Questionaire")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Questionaire message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_questionaire"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Questionaire?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("questionaire")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("questionaire FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://questionaireresponse")
-        .routeId("FHIRQuestionaireResponse")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("QuestionaireResponse")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Questionaire Response message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_questionaireresponse"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/QuestionaireResponse?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("questionaireresponse")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("questionaireresponse FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://researchstudy")
-        .routeId("FHIRResearchStudy")
-        .convertBodyTo(String.class)
-         // set Auditing Properties
-         .setProperty("processingtype").constant("data")
-         .setProperty("appname").constant("iDAAS-Connect-FHIR")
-         .setProperty("industrystd").constant("FHIR")
-         .setProperty("messagetrigger").constant("ResearchStudy")
-         .setProperty("component").simple("${routeId}")
-         .setProperty("camelID").simple("${camelId}")
-         .setProperty("exchangeID").simple("${exchangeId}")
-         .setProperty("processname").constant("Input")
-         .setProperty("internalMsgID").simple("${id}")
-         .setProperty("bodyData").simple("${body}")
-         .setProperty("processname").constant("Input")
-         .setProperty("auditdetails").constant("Research Study message received")
-         // iDAAS DataHub Processing
-         .wireTap("direct:auditing")
-         // Send To Topic
-         .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_researchstudy"))
-         //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-         //.to("jetty:http://localhost:8090/fhir-server/api/v4/ResearchStudy?bridgeEndpoint=true&exchangePattern=InOut")
-         //Process Response
-         //.convertBodyTo(String.class)
-         // set Auditing Properties
-         //.setProperty("processingtype").constant("data")
-         //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-         //.setProperty("industrystd").constant("FHIR")
-         //.setProperty("messagetrigger").constant("researchstudy")
-         //.setProperty("component").simple("${routeId}")
-         //.setProperty("processname").constant("Response")
-         //.setProperty("camelID").simple("${camelId}")
-         //.setProperty("exchangeID").simple("${exchangeId}")
-         //.setProperty("internalMsgID").simple("${id}")
-         //.setProperty("bodyData").simple("${body}")
-         //.setProperty("auditdetails").constant("researchstudy FHIR response message received")
-         // iDAAS DataHub Processing
-         //.wireTap("direct:auditing")
-    ;
-    from("servlet://schedule")
-        .routeId("FHIRSchedule")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Schedule")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Schedule message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_schedule"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Schedule?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("schedule")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("schedule FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://servicerequest")
-        .routeId("FHIRServiceRequest")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ServiceRequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Service Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_servicerequest"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ServiceRequest?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("servicerequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("servicerequest FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://specimen")
-        .routeId("FHIRSpecimen")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Specimen")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Specimen message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_specimen"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Specimen?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("specimen")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("specimen FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://substance")
-        .routeId("FHIRSubstance")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Substance")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Substance message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_sustance"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Substance?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("substance")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("substance FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://supplydelivery")
-        .routeId("FHIRSupplyDelivery")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("SupplyDelivery")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Supply Delivery message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_supplydelivery"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/SupplyDelivery?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("supplydelivery")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("supplydelivery FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://supplyrequest")
-        .routeId("FHIRSupplyRequest")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("SupplyRequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Supply Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_supplyrequest"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/SupplyRequest?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("supplyrequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("supplyrequest FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://testreport")
-        .routeId("FHIRTestReport")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("TestReport")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Test Report message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_testreport"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/TestReport?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("testreport")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("testreport FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://verificationresult")
-        .routeId("FHIRVerificationResult")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("VerificationResult")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Verification Result message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_verificationresult"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/VerificationResult?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("verificationresult")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("verificationresult FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
+    }
     /*
-     *  FHIR: Financial
+     *  FHIR Bundle (batch)
+     *  The Bundle is streamed and split entry by entry; entries are published in parallel to
+     *  their own fhirsvr_* topic exactly like a request to the resource's endpoint, and the
+     *  client gets a batch-response Bundle with an outcome per entry. Transaction Bundles are
+     *  refused with 422 before anything is published, their entries would not be atomic.
+     *  Entries are published on a bounded pool whose overflow runs on the parsing thread, so at
+     *  most idaas.bundleParallelism + idaas.bundleQueueSize entries are in memory at once.
+     *  A Bundle takes one slot of the adaptive ingress limit, like a single resource request.
      */
-    from("servlet://account")
-        .routeId("FHIRAccount")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("account")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("account message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_account"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Account?bridgeEndpoint=true&exchangePattern=InOut")
-        // Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("account")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Input")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("account FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://chargeitem")
-        .routeId("FHIRChargeItem")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("chargeitem")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("charge item message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_chargeitem"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ChargeItem?bridgeEndpoint=true&exchangePattern=InOut")
-        // Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("chargeitem")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Input")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("chargeitem FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://chargeitemdefinition")
-        .routeId("FHIRChargeItemDefintion")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("chargeitemdefinition")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("charge item definition message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_chargeitemdefinintion"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ChargeItemDefinition?bridgeEndpoint=true&exchangePattern=InOut")
-        // Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("chargeitemdefintion")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Input")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("chargeitemdefintion FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://claim")
-        .routeId("FHIRClaim")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("claim")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("claim message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_claim"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Claim?bridgeEndpoint=true&exchangePattern=InOut")
-        // Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("claim")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Input")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("claim FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://claimresponse")
-        .routeId("FHIRClaimResponse")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("claimresponse")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("claim response message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_claimresponse"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ClaimResponse?bridgeEndpoint=true&exchangePattern=InOut")
-        // Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("claimresponse")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Input")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("claim response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://contract")
-        .routeId("FHIRContract")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("contract")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("contract message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_contract"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Contract?bridgeEndpoint=true&exchangePattern=InOut")
-        // Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("contract")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("contract FHIR message response received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://coverage")
-        .routeId("FHIRCoverage")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("coverage")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("coverage message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_coverage"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Coverage?bridgeEndpoint=true&exchangePattern=InOut")
-        // Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("coverage")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("coverage FHIR message response received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet:/coverageeligibilityrequest")
-        .routeId("FHIRCoverageEligibilityRequest")
-        // set Auditing Properties
-        .convertBodyTo(String.class)
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("coverageeligibilityrequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("coverageeligibilityrequest message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_coverageeligibilityrequest"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/CoverageEligibilityRequest?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("coverageeligibilityrequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("coverage eligibility request FHIR Response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://coverageeligibilityresponse")
-        .routeId("FHIRCoverageEligibilityResponse")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("coverageeligibilityresponse")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("coverageeligibilityresponse message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_coverageeligibilityresponse"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/CoverageEligibilityResponse?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("coverageeligibilityresponse")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("coverage eligibility response response received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://enrollmentrequest")
-        .routeId("FHIREnrollmentrequest")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("enrollmentrequest")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("Enrollment Request message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_enrollmentrequest"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/EnrollmentRequest?bridgeEndpoint=true&exchangePattern=InOut")
-        // Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("enrollmentrequest")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("enrollment request message  received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://enrollmentresponse")
-        .routeId("FHIREnrollmentresponse")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("enrollmentresponse")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("Enroll Response message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_enrollmentresponse"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/EnrollmentResponse?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("enrollmentresponse")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("enrollment response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://explanationofbenefits")
-        .routeId("FHIRExplanationofbenefits")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("explanationofbenefits")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("explanationofbenefits message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_explanationofbenefits"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ExplanationOfBenefit?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("explanationofbenefits")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("explanationofbenefits response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://insuranceplan")
-        .routeId("FHIRInsuranceplan")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("insuranceplan")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("insuranceplan message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_insuranceplan"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        // Invoke External FHIR Server
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/InsurancePlan?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("insuranceplan")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("insuranceplan response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://invoice")
-        .routeId("FHIRInvoice")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("invoice")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("invoice message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_invoice"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Invoice?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("invoice")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("invoice FHIR message response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://paymentnotice")
-        .routeId("FHIRPaymentNotice")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("paymentnotice")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("auditdetails").constant("paymentnotice message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_paymentnotice"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/PaymentNotice?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("paymentnotice")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("paymentnotice FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet:paymentreconciliation")
-        .routeId("FHIRPaymentreconciliation")
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("paymentreconciliation")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("paymentreconciliation message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_paymentreconciliation"))
-        // Invoke External FHIR Server
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/PaymentReconciliation?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("paymentreconciliation")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("paymentreconciliation FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://researchsubject")
-        .routeId("FHIRResearchSubject")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ResearchSubject")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Research Subject message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_researchsubject"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ResearchSubject?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("researchsubject")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("researchsubject FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
+    from("direct:bundle")
+        .routeId("FHIRBundle")
+        .process(concurrencyLimits.limit(concurrencyLimits.getIngress()))
+        .doTry()
+            .split(new BundleEntrySplitter(rawBody), new BundleResponse())
+                .streaming()
+                .parallelProcessing()
+                .executorService(getContext().getExecutorServiceManager().newThreadPool(this, "FHIRBundleEntries",
+                    new ThreadPoolProfileBuilder("FHIRBundleEntries")
+                        .poolSize(config.getBundleParallelism())
+                        .maxPoolSize(config.getBundleParallelism())
+                        .maxQueueSize(config.getBundleQueueSize())
+                        .rejectedPolicy(ThreadPoolRejectedPolicy.CallerRuns)
+                        .build()))
+                .to("direct:bundleentry")
+            .end()
+            .process(BundleResponse.response())
+        .doCatch(BundleEntrySplitter.TransactionBundleException.class)
+            .process(BundleResponse.unsupported())
+        .doCatch(ContentEncodingProcessor.InflatedSizeException.class)
+            .process(ContentEncodingProcessor.tooLarge())
+        .doCatch(Exception.class)
+            .process(BundleResponse.invalid())
+        .end()
+    ;
+    // publishUri is direct:fhirlane with priority lanes, entries take their lane's permit like single requests
+    from("direct:bundleentry")
+        .routeId("FHIRBundleEntry")
+        .doTry()
+            .process(new BundleEntryProcessor(resourceProcessor))
+            .to(publishUri)
+            .process(BundleResponse.accepted())
+        .doCatch(Exception.class)
+            .process(BundleResponse.failed())
+        .end()
     ;
     /*
-     *  FHIR: Evidence Based Medicine
+     *  NDJSON bulk import ($import)
+     *  The upload is read line by line and never buffered as a whole. Each line goes to the
+     *  fhirsvr_* topic of its resourceType. Lines are published on a bounded pool whose
+     *  overflow runs on the reading thread, so when the Kafka producer buffer fills and sends
+     *  block, reading the upload slows down with it. GET /camel/$import shows progress. An upload
+     *  takes one slot of the adaptive ingress limit, like a single resource request.
      */
-     from("servlet://researchdefinition")
-        .routeId("FHIRResearchDefinition")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ResearchDefinition")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Research Definition message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_researchdefinition"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ResearchDefinition?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("researchdefinition")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("researchdefinition FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-        ;
-    from("servlet://researchelementdefinition")
-        .routeId("FHIRResearchElementDefinition")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("ResearchElementDefinition")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Research Element Definition message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_researchelementdefinition"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/ResearchElementDefinition?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("researchelementdefinition")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("researchelementdefinition FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://evidence")
-        .routeId("FHIREvidence")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Evidence")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Evidence message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_evidence"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Evidence?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("evidence")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("evidence FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://evidencevariable")
-        .routeId("FHIREvidenceVariable")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("EvidenceVariable")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Evidence Variable message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_evidencevariable"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/EvidenceVariable?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("evidencevariable")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("evidencevariable FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
+    from("direct:import")
+        .routeId("FHIRImport")
+        .choice()
+            .when(header(Exchange.HTTP_METHOD).isEqualTo("GET"))
+                .process(importRegistry.status())
+            .otherwise()
+                .to("direct:importrun")
+        .end()
+    ;
+    from("direct:importrun")
+        .routeId("FHIRImportRun")
+        .process(concurrencyLimits.limit(concurrencyLimits.getIngress()))
+        .process(importRegistry.start())
+        .doTry()
+            .split(body().tokenize("\n"))
+                .streaming()
+                .parallelProcessing()
+                .executorService(getContext().getExecutorServiceManager().newThreadPool(this, "FHIRImportLines",
+                    new ThreadPoolProfileBuilder("FHIRImportLines")
+                        .poolSize(config.getImportParallelism())
+                        .maxPoolSize(config.getImportParallelism())
+                        .maxQueueSize(config.getImportQueueSize())
+                        .rejectedPolicy(ThreadPoolRejectedPolicy.CallerRuns)
+                        .build()))
+                .to("direct:importline")
+            .end()
+            .process(importRegistry.finish())
+        // lines fail on their own (direct:importline), this is the upload itself failing part way
+        .doCatch(ContentEncodingProcessor.InflatedSizeException.class)
+            .process(importRegistry.aborted())
+            .process(ContentEncodingProcessor.tooLarge())
+        .doCatch(Exception.class)
+            .process(importRegistry.aborted())
+        .end()
+    ;
+    from("direct:importline")
+        .routeId("FHIRImportLine")
+        .doTry()
+            .process(new ImportLineProcessor(resourceProcessor, rawBody))
+            .filter(exchangeProperty(ImportLineProcessor.SKIP_PROPERTY).isEqualTo(false))
+                .to(publishUri)
+            .end()
+            .process(importRegistry.lineDone())
+        .doCatch(Exception.class)
+            .process(importRegistry.lineFailed())
+        .end()
     ;
-    from("servlet://effectevidencesynthesis")
-        .routeId("FHIREffectEvidenceSynthesis")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("EffectEvidenceSynthesis")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Effect Evidence Synthesis message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_effectevidencesynthesis"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/EffectEvidenceSynthesis?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("effectevidencesynthesis")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("effectevidencesynthesis FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
+    /*
+     *  FHIR Bulk Data export ($export)
+     *  Kick-off returns 202 with a Content-Location to poll; the job reads the fhirsvr_* topics
+     *  back partition by partition into NDJSON files under idaas.exportDirectory
+     */
+    from("direct:export")
+        .routeId("FHIRExport")
+        .process(exportJobManager.api())
     ;
-    from("servlet://riskevidencesynthesis")
-        .routeId("FHIRRiskEvidenceSynthesis")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("RiskEvidenceSynthesis")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Risk Evidence Synthesis message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_riskevidencesynthesis"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/RiskEvidenceSynthesis?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("riskevidencesynthesis")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("riskevidencesynthesis FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
+    from("direct:receipts")
+        .routeId("FHIRReceipts")
+        .process(receiptRegistry.lookup())
     ;
     /*
-     *  FHIR: Quality Reporting
+     *  Claim check content (idaas.claimCheckEnabled)
+     *  Serves the content behind a pointer record by its SHA-256, see ClaimCheckResolver. PHI, so
+     *  only with idaas.claimCheckServeContent and to bearers of idaas.claimCheckContentToken
      */
-    from("servlet://measure")
-        .routeId("FHIRMeasure")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("Measure")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Measure message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_measure"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/Measure?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("measure")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("measure FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
-    ;
-    from("servlet://measurereport")
-        .routeId("FHIRMeasureReport")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("MeasureReport")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("camelID").simple("${camelId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Measure Report message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_measurereport"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/MeasureReport?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("measurereport")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("measurereport FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
+    from("direct:content")
+        .routeId("FHIRContent")
+        .process(claimCheck.lookup())
     ;
-    from("servlet://testscript")
-        .routeId("FHIRTestScript")
-        .convertBodyTo(String.class)
-        // set Auditing Properties
-        .setProperty("processingtype").constant("data")
-        .setProperty("appname").constant("iDAAS-Connect-FHIR")
-        .setProperty("industrystd").constant("FHIR")
-        .setProperty("messagetrigger").constant("TestScript")
-        .setProperty("component").simple("${routeId}")
-        .setProperty("exchangeID").simple("${exchangeId}")
-        .setProperty("processname").constant("Input")
-        .setProperty("internalMsgID").simple("${id}")
-        .setProperty("bodyData").simple("${body}")
-        .setProperty("processname").constant("Input")
-        .setProperty("auditdetails").constant("Test Script message received")
-        // iDAAS DataHub Processing
-        .wireTap("direct:auditing")
-        // Send To Topic
-        .convertBodyTo(String.class).to(getKafkaTopicUri("fhirsvr_testscript"))
-        //.setHeader(Exchange.CONTENT_TYPE,constant("application/json"))
-        //.to("jetty:http://localhost:8090/fhir-server/api/v4/TestScript?bridgeEndpoint=true&exchangePattern=InOut")
-        //Process Response
-        //.convertBodyTo(String.class)
-        // set Auditing Properties
-        //.setProperty("processingtype").constant("data")
-        //.setProperty("appname").constant("iDAAS-Connect-FHIR")
-        //.setProperty("industrystd").constant("FHIR")
-        //.setProperty("messagetrigger").constant("testscript")
-        //.setProperty("component").simple("${routeId}")
-        //.setProperty("processname").constant("Response")
-        //.setProperty("camelID").simple("${camelId}")
-        //.setProperty("exchangeID").simple("${exchangeId}")
-        //.setProperty("internalMsgID").simple("${id}")
-        //.setProperty("bodyData").simple("${body}")
-        //.setProperty("auditdetails").constant("testscript FHIR response message received")
-        // iDAAS DataHub Processing
-        //.wireTap("direct:auditing")
+    /*
+     *  Topic throughput report, flags under-partitioned topics (see TopicProvisioner)
+     */
+    from("direct:topics")
+        .routeId("FHIRTopics")
+        .process(topicProvisioner.report())
     ;
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Claim check for large resources (idaas.claimCheckEnabled). A body larger than
+ * idaas.claimCheckThreshold bytes is put in the ContentStore and replaced, before it is sent to
+ * its fhirsvr_* topic, by a small pointer record:
+ *
+ *   {"resourceType":"ImagingStudy","claimCheck":{"store":"filesystem","algorithm":"SHA-256",
+ *    "hash":"<hex>","size":5242880,"location":"/camel/content/<hex>"}}
+ *
+ * Consumers turn pointer records back into the resource with ClaimCheckResolver, and so does
+ * $export. Spooled bodies are stored straight from their mapping.
+ *
+ * GET /camel/content/{hash} hands out the stored resources, PHI, to anyone who knows a hash:
+ * it answers 404 unless idaas.claimCheckServeContent is set, which requires
+ * idaas.claimCheckContentToken, and then only to requests with Authorization: Bearer <token>.
+ *
+ * FileContentStore content not stored again for idaas.claimCheckRetention seconds is deleted by
+ * an hourly sweep; a pointer record kept longer than that can no longer be resolved.
+ */
+@Component
+public class ClaimCheck {
+    private static final Logger log = LoggerFactory.getLogger(ClaimCheck.class);
+
+    public static final String HASH_PROPERTY = "claimcheckhash";
+    // the offloaded body, for the FHIR server forwarding which needs the resource itself
+    public static final String BODY_PROPERTY = "claimcheckbody";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final boolean enabled;
+    private final long threshold;
+    private final boolean rawBody;
+    private final ContentStore store;
+    private final boolean serveContent;
+    private final byte[] contentToken;
+    private final long retention;
+    private final ScheduledExecutorService sweeper;
+
+    @Autowired
+    public ClaimCheck(ConfigProperties config) throws ReflectiveOperationException {
+        this.enabled = config.isClaimCheckEnabled();
+        this.threshold = config.getClaimCheckThreshold();
+        this.rawBody = config.isKafkaRawBody();
+        this.store = createStore(config);
+        this.serveContent = config.isClaimCheckServeContent();
+        String token = config.getClaimCheckContentToken();
+        if (serveContent && (token == null || token.trim().isEmpty())) {
+            throw new IllegalArgumentException("idaas.claimCheckServeContent needs idaas.claimCheckContentToken,"
+                + " the content endpoint serves PHI");
+        }
+        this.contentToken = token == null ? null : ("Bearer " + token.trim()).getBytes(StandardCharsets.UTF_8);
+        this.retention = config.getClaimCheckRetention();
+        if (enabled && retention > 0 && store instanceof FileContentStore) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "iDAAS-ClaimCheck-Sweeper");
+                thread.setDaemon(true);
+                return thread;
+            });
+            sweeper.scheduleWithFixedDelay(this::expire, 1, 60, TimeUnit.MINUTES);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+
+    private void expire() {
+        try {
+            int deleted = ((FileContentStore) store).expire(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(retention));
+            if (deleted > 0) {
+                log.info("Claim check store deleted {} files older than {} s", deleted, retention);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.warn("Claim check store sweep failed", e);
+        }
+    }
+
+    private static ContentStore createStore(ConfigProperties config) throws ReflectiveOperationException {
+        String name = config.getClaimCheckStore();
+        if (name == null || "filesystem".equalsIgnoreCase(name.trim())) {
+            return new FileContentStore(config);
+        }
+        Class<? extends ContentStore> type = Class.forName(name.trim()).asSubclass(ContentStore.class);
+        try {
+            return type.getConstructor(ConfigProperties.class).newInstance(config);
+        } catch (NoSuchMethodException e) {
+            return type.getConstructor().newInstance();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ContentStore getStore() {
+        return store;
+    }
+
+    /*
+     * Swaps a body above the threshold for its pointer record
+     */
+    public Processor offload() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Message in = exchange.getIn();
+                Object body = in.getBody();
+                InputStream content;
+                long size;
+                if (body instanceof SpooledBody) {
+                    size = ((SpooledBody) body).length();
+                    content = ((SpooledBody) body).openStream();
+                } else if (body instanceof byte[]) {
+                    size = ((byte[]) body).length;
+                    content = new ByteArrayInputStream((byte[]) body);
+                } else if (body instanceof String && ((String) body).length() * 3L > threshold) {
+                    // at most three UTF-8 bytes per char, shorter strings never need encoding here
+                    byte[] bytes = ((String) body).getBytes(StandardCharsets.UTF_8);
+                    size = bytes.length;
+                    content = new ByteArrayInputStream(bytes);
+                } else {
+                    return;
+                }
+                if (size <= threshold) {
+                    return;
+                }
+                String hash = store.put(content);
+                FhirResource resource = exchange.getProperty(FhirResourceProcessor.RESOURCE_PROPERTY, FhirResource.class);
+                String pointer = pointer(resource == null ? null : resource.getResourceType(), hash, size);
+                exchange.setProperty(BODY_PROPERTY, body);
+                in.setBody(rawBody ? pointer.getBytes(StandardCharsets.UTF_8) : pointer);
+                exchange.setProperty(HASH_PROPERTY, hash);
+            }
+        };
+    }
+
+    /*
+     * Puts the offloaded body back in place of the pointer record, for steps after the Kafka send
+     */
+    public static Processor restore() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Object body = exchange.removeProperty(BODY_PROPERTY);
+                if (body != null) {
+                    exchange.getIn().setBody(body);
+                }
+            }
+        };
+    }
+
+    /*
+     * GET /camel/content/{hash}, 404 for every hash unless idaas.claimCheckServeContent is set
+     */
+    public Processor lookup() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                if (!authorize(exchange)) {
+                    return;
+                }
+                Message in = exchange.getIn();
+                String path = in.getHeader(Exchange.HTTP_PATH, String.class);
+                String hash = !serveContent || path == null ? null : path.substring(path.lastIndexOf('/') + 1).toLowerCase();
+                InputStream content = isHash(hash) ? store.open(hash) : null;
+                if (content == null) {
+                    in.setHeader(Exchange.HTTP_RESPONSE_CODE, 404);
+                    in.setHeader(Exchange.CONTENT_TYPE, "application/json");
+                    in.setBody("{\"hash\":\"" + ReceiptRegistry.Receipt.escape(hash) + "\",\"state\":\"UNKNOWN\"}");
+                    return;
+                }
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/fhir+json");
+                in.setHeader(Exchange.CONTENT_LENGTH, store.size(hash));
+                in.setBody(content);
+            }
+        };
+    }
+
+    /*
+     * Whether claim checked content is handed out over HTTP at all, behind idaas.claimCheckContentToken
+     */
+    public boolean isServingContent() {
+        return serveContent;
+    }
+
+    /*
+     * Checks the request's bearer token while content is served, /camel/content and $export both
+     * hand out PHI read back from the store. A missing or wrong token is answered with 401.
+     */
+    public boolean authorize(Exchange exchange) {
+        Message in = exchange.getIn();
+        if (!serveContent || authorized(in.getHeader("Authorization", String.class))) {
+            return true;
+        }
+        in.removeHeader("Authorization");
+        in.setHeader(Exchange.HTTP_RESPONSE_CODE, 401);
+        in.setHeader("WWW-Authenticate", "Bearer");
+        in.setBody("");
+        return false;
+    }
+
+    private boolean authorized(String authorization) {
+        // constant time, the comparison must not leak how much of the token was right
+        return authorization != null
+            && MessageDigest.isEqual(contentToken, authorization.trim().getBytes(StandardCharsets.UTF_8));
+    }
+
+    String pointer(String resourceType, String hash, long size) {
+        ObjectNode record = MAPPER.createObjectNode();
+        if (resourceType != null) {
+            record.put("resourceType", resourceType);
+        }
+        record.putObject(ClaimCheckResolver.POINTER_FIELD)
+            .put("store", store.getName())
+            .put("algorithm", "SHA-256")
+            .put("hash", hash)
+            .put("size", size)
+            .put("location", "/camel/content/" + hash);
+        return record.toString();
+    }
+
+    static boolean isHash(String hash) {
+        if (hash == null || hash.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < hash.length(); i++) {
+            char c = hash.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/*
+ * Consumer side of the claim check: turns a record read from a fhirsvr_* topic back into the
+ * resource. Records that are not pointer records are returned as they are, so a consumer can
+ * pass every record through resolve(). Resolved content is checked against the pointer's size
+ * and SHA-256 while it is read; a mismatch fails the read with an IOException.
+ *
+ *   ClaimCheckResolver resolver = new ClaimCheckResolver(new FileContentStore(new File("/mnt/idaas-content")));
+ *   try (InputStream resource = resolver.resolve(record.value())) { ... }
+ */
+public class ClaimCheckResolver {
+
+    static final String POINTER_FIELD = "claimCheck";
+
+    // pointer records are a few hundred bytes, anything longer is a resource
+    private static final int MAX_POINTER_LENGTH = 1024;
+    private static final byte[] MARKER = ("\"" + POINTER_FIELD + "\"").getBytes(StandardCharsets.UTF_8);
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ContentStore store;
+
+    public ClaimCheckResolver(ContentStore store) {
+        this.store = store;
+    }
+
+    public static boolean isPointer(byte[] record) {
+        return pointer(record) != null;
+    }
+
+    public InputStream resolve(byte[] record) throws IOException {
+        JsonNode pointer = pointer(record);
+        if (pointer == null) {
+            return new ByteArrayInputStream(record);
+        }
+        String hash = pointer.path("hash").asText();
+        long size = pointer.path("size").asLong(-1);
+        InputStream content = store.open(hash);
+        if (content == null) {
+            throw new FileNotFoundException("Claim check content " + hash + " is not in the " + store.getName() + " store");
+        }
+        return new VerifyingStream(content, hash, size);
+    }
+
+    public byte[] resolveBytes(byte[] record) throws IOException {
+        if (!isPointer(record)) {
+            return record;
+        }
+        try (InputStream in = resolve(record)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[65536];
+            int read;
+            while ((read = in.read(chunk)) != -1) {
+                out.write(chunk, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    public String resolve(String record) throws IOException {
+        byte[] bytes = record.getBytes(StandardCharsets.UTF_8);
+        return isPointer(bytes) ? new String(resolveBytes(bytes), StandardCharsets.UTF_8) : record;
+    }
+
+    private static JsonNode pointer(byte[] record) {
+        if (record == null || record.length > MAX_POINTER_LENGTH || !contains(record, MARKER)) {
+            return null;
+        }
+        try {
+            JsonNode pointer = MAPPER.readTree(record).path(POINTER_FIELD);
+            return ClaimCheck.isHash(pointer.path("hash").asText(null)) ? pointer : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static boolean contains(byte[] record, byte[] marker) {
+        outer:
+        for (int i = 0; i <= record.length - marker.length; i++) {
+            for (int j = 0; j < marker.length; j++) {
+                if (record[i + j] != marker[j]) {
+                    continue outer;
+                }
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private static final class VerifyingStream extends FilterInputStream {
+        private final MessageDigest digest = FileContentStore.sha256();
+        private final String hash;
+        private final long size;
+        private long read;
+        private boolean verified;
+
+        VerifyingStream(InputStream in, String hash, long size) {
+            super(in);
+            this.hash = hash;
+            this.size = size;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                verify();
+            } else {
+                digest.update((byte) b);
+                read++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                verify();
+            } else {
+                digest.update(b, off, n);
+                read += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // every byte has to pass through the digest
+            byte[] chunk = new byte[(int) Math.min(n, 8192)];
+            int skipped = read(chunk, 0, chunk.length);
+            return Math.max(skipped, 0);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void verify() throws IOException {
+            if (verified) {
+                return;
+            }
+            verified = true;
+            if (size >= 0 && read != size) {
+                throw new IOException("Claim check content " + hash + " is " + read + " bytes, expected " + size);
+            }
+            if (!hash.equals(AuditReferenceProcessor.hex(digest.digest()))) {
+                throw new IOException("Claim check content " + hash + " does not match its hash");
+            }
+        }
+    }
+}
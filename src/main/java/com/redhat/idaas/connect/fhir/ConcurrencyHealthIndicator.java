@@ -0,0 +1,55 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/*
+ * Publishes the current concurrency limits and in-flight counts through the actuator
+ * health endpoint. Always reports UP, a shrunken limit is back pressure, not a failure.
+ */
+@Component
+public class ConcurrencyHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private ConcurrencyLimits concurrencyLimits;
+
+    @Override
+    public Health health() {
+        return Health.up()
+            .withDetail("enabled", concurrencyLimits.isEnabled())
+            .withDetail(concurrencyLimits.getIngress().getName(), details(concurrencyLimits.getIngress()))
+            .withDetail(concurrencyLimits.getFhirServer().getName(), details(concurrencyLimits.getFhirServer()))
+            .build();
+    }
+
+    private static Map<String, Object> details(AdaptiveConcurrencyLimiter limiter) {
+        Map<String, Object> details = new LinkedHashMap<>();
+        details.put("limit", limiter.getLimit());
+        details.put("inFlight", limiter.getInFlight());
+        details.put("accepted", limiter.getAcceptedCount());
+        details.put("rejected", limiter.getRejectedCount());
+        details.put("lastLatencyMillis", limiter.getLastLatencyMillis());
+        return details;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import org.apache.camel.Predicate;
+import org.apache.camel.Processor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * The adaptive concurrency limits of the connector: one in front of the resource ingress,
+ * whose latency is mostly the Kafka send, and one in front of the FHIR server forwarding.
+ * Both are configured by idaas.concurrencyLimit*.
+ */
+@Component
+public class ConcurrencyLimits {
+
+    private final boolean enabled;
+    private final AdaptiveConcurrencyLimiter ingress;
+    private final AdaptiveConcurrencyLimiter fhirServer;
+
+    @Autowired
+    public ConcurrencyLimits(ConfigProperties config) {
+        this.enabled = config.isConcurrencyLimitEnabled();
+        this.ingress = new AdaptiveConcurrencyLimiter("ingress", config.getConcurrencyLimitInitial(),
+            config.getConcurrencyLimitMin(), config.getConcurrencyLimitMax());
+        this.fhirServer = new AdaptiveConcurrencyLimiter("fhirserver", config.getConcurrencyLimitInitial(),
+            config.getConcurrencyLimitMin(), config.getConcurrencyLimitMax());
+    }
+
+    // the limiter's acquire step, or a step that does nothing when limits are disabled
+    public Processor limit(AdaptiveConcurrencyLimiter limiter) {
+        return enabled ? limiter.acquire() : exchange -> { };
+    }
+
+    // the limiter's reserve step for a later call, see AdaptiveConcurrencyLimiter
+    public Processor reserve(AdaptiveConcurrencyLimiter limiter, Predicate failed) {
+        return enabled ? limiter.reserve(failed) : exchange -> { };
+    }
+
+    public Processor start(AdaptiveConcurrencyLimiter limiter) {
+        return enabled ? limiter.start() : exchange -> { };
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public AdaptiveConcurrencyLimiter getIngress() {
+        return ingress;
+    }
+
+    public AdaptiveConcurrencyLimiter getFhirServer() {
+        return fhirServer;
+    }
+}
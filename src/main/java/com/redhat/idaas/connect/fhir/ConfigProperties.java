@@ -16,6 +16,12 @@
  */
 package com.redhat.idaas.connect.fhir;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
 @SuppressWarnings("ConfigurationProperties")
@@ -24,6 +30,169 @@ public class ConfigProperties {
 
     private String kafkaBrokers;
     private String kafkaBaseURL;
+    private boolean kafkaRawBody;
+    private KafkaProducerProperties kafka = new KafkaProducerProperties();
+    private String kafkaKeyStrategy = "none";
+    private Map<String, String> kafkaKeyStrategies = new HashMap<>();
+
+    private boolean asyncIngest;
+    private int receiptBufferSize = 10000;
+
+    private int bundleParallelism = 8;
+    private int bundleQueueSize = 16;
+
+    private int importParallelism = 8;
+    private int importQueueSize = 1000;
+    private long importProgressInterval = 100000;
+
+    private String exportDirectory = System.getProperty("java.io.tmpdir") + "/idaas-export";
+
+    private int exportParallelism = 4;
+
+    private boolean exportGzip;
+    private long exportRetention = 86400;
+
+    private String ingressMode = "servlet";
+
+    private String nettyHost = "0.0.0.0";
+
+    private int nettyPort = 9980;
+
+    private int nettyWorkerCount;
+
+    private int nettyBacklog = 1024;
+
+    private int nettyMaxContentLength = 64 * 1024 * 1024;
+
+    private boolean servletAsync = true;
+
+    private long servletAsyncTimeout = 30000;
+
+    private int servletAsyncPoolSize = 200;
+
+    private int servletAsyncQueueSize = 1000;
+
+    private boolean responseCompression = true;
+
+    private long maxInflatedSize = 64L * 1024 * 1024;
+
+    private int spoolThreshold = 1024 * 1024;
+
+    private String spoolDirectory = System.getProperty("java.io.tmpdir") + "/idaas-spool";
+
+    private boolean quotaEnabled;
+
+    private String quotaClientHeader;
+
+    private double quotaClientRate;
+
+    private int quotaClientBurst = 100;
+
+    private double quotaRate;
+
+    private int quotaBurst = 50;
+
+    private Map<String, Double> quotaRates = new HashMap<>();
+
+    private Map<String, Integer> quotaBursts = new HashMap<>();
+
+    private boolean concurrencyLimitEnabled;
+
+    private int concurrencyLimitInitial = 100;
+
+    private int concurrencyLimitMin = 8;
+
+    private int concurrencyLimitMax = 1000;
+
+    private boolean priorityLanes;
+
+    private String auditFormat = "headers";
+
+    private boolean auditBatch;
+
+    private int auditBatchSize = 500;
+
+    private int auditBatchBytes = 1000000;
+
+    private long auditBatchWindow = 200;
+
+    private boolean kafkaTransactional;
+
+    private String kafkaTransactionalId;
+
+    private int transactionBatchSize = 100;
+
+    private long transactionBatchWindow = 5;
+
+    private int transactionQueueSize = 10000;
+
+    private long transactionSendTimeout = 30000;
+
+    private boolean outboxEnabled;
+
+    private String outboxDirectory = System.getProperty("java.io.tmpdir") + "/idaas-outbox";
+
+    private int outboxSegmentSize = 64 * 1024 * 1024;
+
+    private long outboxMaxBytes = 4L * 1024 * 1024 * 1024;
+
+    private String outboxFsync = "interval";
+
+    private long outboxFsyncInterval = 1000;
+
+    private int outboxReplayRate = 5000;
+
+    private int outboxReplayMaxRate = 50000;
+
+    private long outboxSendTimeout = 10000;
+
+    private boolean claimCheckEnabled;
+
+    private int claimCheckThreshold = 1024 * 1024;
+
+    private String claimCheckStore = "filesystem";
+
+    private String claimCheckDirectory = System.getProperty("java.io.tmpdir") + "/idaas-content";
+
+    private long claimCheckRetention = 604800;
+
+    private boolean claimCheckServeContent;
+
+    private String claimCheckContentToken;
+
+    private String topicProvisioning = "check";
+
+    private long topicProvisioningTimeout = 10000;
+
+    private TopicProperties topicDefaults = new TopicProperties(1, (short) 1);
+
+    private Map<String, TopicProperties> topics = new HashMap<>();
+
+    private long topicReportInterval = 300;
+
+    private double topicPartitionCapacity = 1000;
+
+    private boolean fhirForwarding;
+
+    private int fhirMaxConnections = 64;
+
+    private int fhirConnectTimeout = 5000;
+
+    private long fhirRequestTimeout = 30000;
+
+    private long fhirIdleTimeout = 60000;
+
+    private Map<String, PriorityLaneProperties> lanes = new LinkedHashMap<>();
+
+    private String auditMode = "full";
+    private List<String> auditFullBodyResources = new ArrayList<>();
+
+    private int auditPoolSize = 2;
+    private int auditQueueSize = 1000;
+    private String auditRejectionPolicy = "drop";
+    private long auditBlockTimeout = 50;
+    private String auditSpillDirectory = System.getProperty("java.io.tmpdir") + "/idaas-audit-spill";
+    private long auditSpillReplayInterval = 10;
 
     private String fhirVendor;
 
@@ -70,4 +239,715 @@ public class ConfigProperties {
         this.kafkaBaseURL = kafkaBaseURL;
     }
 
+    public boolean isKafkaRawBody() {
+        return kafkaRawBody;
+    }
+
+    public void setKafkaRawBody(boolean kafkaRawBody) {
+        this.kafkaRawBody = kafkaRawBody;
+    }
+
+    public KafkaProducerProperties getKafka() {
+        return kafka;
+    }
+
+    public void setKafka(KafkaProducerProperties kafka) {
+        this.kafka = kafka;
+    }
+
+    public String getKafkaKeyStrategy() {
+        return kafkaKeyStrategy;
+    }
+
+    public void setKafkaKeyStrategy(String kafkaKeyStrategy) {
+        this.kafkaKeyStrategy = kafkaKeyStrategy;
+    }
+
+    public Map<String, String> getKafkaKeyStrategies() {
+        return kafkaKeyStrategies;
+    }
+
+    public void setKafkaKeyStrategies(Map<String, String> kafkaKeyStrategies) {
+        this.kafkaKeyStrategies = kafkaKeyStrategies;
+    }
+
+    public String getAuditMode() {
+        return auditMode;
+    }
+
+    public void setAuditMode(String auditMode) {
+        this.auditMode = auditMode;
+    }
+
+    public List<String> getAuditFullBodyResources() {
+        return auditFullBodyResources;
+    }
+
+    public void setAuditFullBodyResources(List<String> auditFullBodyResources) {
+        this.auditFullBodyResources = auditFullBodyResources;
+    }
+
+    public int getAuditPoolSize() {
+        return auditPoolSize;
+    }
+
+    public void setAuditPoolSize(int auditPoolSize) {
+        this.auditPoolSize = auditPoolSize;
+    }
+
+    public int getAuditQueueSize() {
+        return auditQueueSize;
+    }
+
+    public void setAuditQueueSize(int auditQueueSize) {
+        this.auditQueueSize = auditQueueSize;
+    }
+
+    public String getAuditRejectionPolicy() {
+        return auditRejectionPolicy;
+    }
+
+    public void setAuditRejectionPolicy(String auditRejectionPolicy) {
+        this.auditRejectionPolicy = auditRejectionPolicy;
+    }
+
+    public long getAuditBlockTimeout() {
+        return auditBlockTimeout;
+    }
+
+    public void setAuditBlockTimeout(long auditBlockTimeout) {
+        this.auditBlockTimeout = auditBlockTimeout;
+    }
+
+    public String getAuditSpillDirectory() {
+        return auditSpillDirectory;
+    }
+
+    public void setAuditSpillDirectory(String auditSpillDirectory) {
+        this.auditSpillDirectory = auditSpillDirectory;
+    }
+
+    public long getAuditSpillReplayInterval() {
+        return auditSpillReplayInterval;
+    }
+
+    public void setAuditSpillReplayInterval(long auditSpillReplayInterval) {
+        this.auditSpillReplayInterval = auditSpillReplayInterval;
+    }
+
+    public boolean isAsyncIngest() {
+        return asyncIngest;
+    }
+
+    public void setAsyncIngest(boolean asyncIngest) {
+        this.asyncIngest = asyncIngest;
+    }
+
+    public int getReceiptBufferSize() {
+        return receiptBufferSize;
+    }
+
+    public void setReceiptBufferSize(int receiptBufferSize) {
+        this.receiptBufferSize = receiptBufferSize;
+    }
+
+    public int getBundleParallelism() {
+        return bundleParallelism;
+    }
+
+    public void setBundleParallelism(int bundleParallelism) {
+        this.bundleParallelism = bundleParallelism;
+    }
+
+    public int getBundleQueueSize() {
+        return bundleQueueSize;
+    }
+
+    public void setBundleQueueSize(int bundleQueueSize) {
+        this.bundleQueueSize = bundleQueueSize;
+    }
+
+    public int getImportParallelism() {
+        return importParallelism;
+    }
+
+    public void setImportParallelism(int importParallelism) {
+        this.importParallelism = importParallelism;
+    }
+
+    public int getImportQueueSize() {
+        return importQueueSize;
+    }
+
+    public void setImportQueueSize(int importQueueSize) {
+        this.importQueueSize = importQueueSize;
+    }
+
+    public long getImportProgressInterval() {
+        return importProgressInterval;
+    }
+
+    public void setImportProgressInterval(long importProgressInterval) {
+        this.importProgressInterval = importProgressInterval;
+    }
+
+    public String getExportDirectory() {
+        return exportDirectory;
+    }
+
+    public void setExportDirectory(String exportDirectory) {
+        this.exportDirectory = exportDirectory;
+    }
+
+    public int getExportParallelism() {
+        return exportParallelism;
+    }
+
+    public void setExportParallelism(int exportParallelism) {
+        this.exportParallelism = exportParallelism;
+    }
+
+    public boolean isExportGzip() {
+        return exportGzip;
+    }
+
+    public void setExportGzip(boolean exportGzip) {
+        this.exportGzip = exportGzip;
+    }
+
+    public long getExportRetention() {
+        return exportRetention;
+    }
+
+    public void setExportRetention(long exportRetention) {
+        this.exportRetention = exportRetention;
+    }
+
+    public String getIngressMode() {
+        return ingressMode;
+    }
+
+    public void setIngressMode(String ingressMode) {
+        this.ingressMode = ingressMode;
+    }
+
+    public String getNettyHost() {
+        return nettyHost;
+    }
+
+    public void setNettyHost(String nettyHost) {
+        this.nettyHost = nettyHost;
+    }
+
+    public int getNettyPort() {
+        return nettyPort;
+    }
+
+    public void setNettyPort(int nettyPort) {
+        this.nettyPort = nettyPort;
+    }
+
+    public int getNettyWorkerCount() {
+        return nettyWorkerCount;
+    }
+
+    public void setNettyWorkerCount(int nettyWorkerCount) {
+        this.nettyWorkerCount = nettyWorkerCount;
+    }
+
+    public int getNettyBacklog() {
+        return nettyBacklog;
+    }
+
+    public void setNettyBacklog(int nettyBacklog) {
+        this.nettyBacklog = nettyBacklog;
+    }
+
+    public int getNettyMaxContentLength() {
+        return nettyMaxContentLength;
+    }
+
+    public void setNettyMaxContentLength(int nettyMaxContentLength) {
+        this.nettyMaxContentLength = nettyMaxContentLength;
+    }
+
+    public boolean isServletAsync() {
+        return servletAsync;
+    }
+
+    public void setServletAsync(boolean servletAsync) {
+        this.servletAsync = servletAsync;
+    }
+
+    public long getServletAsyncTimeout() {
+        return servletAsyncTimeout;
+    }
+
+    public void setServletAsyncTimeout(long servletAsyncTimeout) {
+        this.servletAsyncTimeout = servletAsyncTimeout;
+    }
+
+    public int getServletAsyncPoolSize() {
+        return servletAsyncPoolSize;
+    }
+
+    public void setServletAsyncPoolSize(int servletAsyncPoolSize) {
+        this.servletAsyncPoolSize = servletAsyncPoolSize;
+    }
+
+    public int getServletAsyncQueueSize() {
+        return servletAsyncQueueSize;
+    }
+
+    public void setServletAsyncQueueSize(int servletAsyncQueueSize) {
+        this.servletAsyncQueueSize = servletAsyncQueueSize;
+    }
+
+    public boolean isResponseCompression() {
+        return responseCompression;
+    }
+
+    public void setResponseCompression(boolean responseCompression) {
+        this.responseCompression = responseCompression;
+    }
+
+    public long getMaxInflatedSize() {
+        return maxInflatedSize;
+    }
+
+    public void setMaxInflatedSize(long maxInflatedSize) {
+        this.maxInflatedSize = maxInflatedSize;
+    }
+
+    public int getSpoolThreshold() {
+        return spoolThreshold;
+    }
+
+    public void setSpoolThreshold(int spoolThreshold) {
+        this.spoolThreshold = spoolThreshold;
+    }
+
+    public String getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    public void setSpoolDirectory(String spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    public boolean isQuotaEnabled() {
+        return quotaEnabled;
+    }
+
+    public void setQuotaEnabled(boolean quotaEnabled) {
+        this.quotaEnabled = quotaEnabled;
+    }
+
+    public String getQuotaClientHeader() {
+        return quotaClientHeader;
+    }
+
+    public void setQuotaClientHeader(String quotaClientHeader) {
+        this.quotaClientHeader = quotaClientHeader;
+    }
+
+    public double getQuotaClientRate() {
+        return quotaClientRate;
+    }
+
+    public void setQuotaClientRate(double quotaClientRate) {
+        this.quotaClientRate = quotaClientRate;
+    }
+
+    public int getQuotaClientBurst() {
+        return quotaClientBurst;
+    }
+
+    public void setQuotaClientBurst(int quotaClientBurst) {
+        this.quotaClientBurst = quotaClientBurst;
+    }
+
+    public double getQuotaRate() {
+        return quotaRate;
+    }
+
+    public void setQuotaRate(double quotaRate) {
+        this.quotaRate = quotaRate;
+    }
+
+    public int getQuotaBurst() {
+        return quotaBurst;
+    }
+
+    public void setQuotaBurst(int quotaBurst) {
+        this.quotaBurst = quotaBurst;
+    }
+
+    public Map<String, Double> getQuotaRates() {
+        return quotaRates;
+    }
+
+    public void setQuotaRates(Map<String, Double> quotaRates) {
+        this.quotaRates = quotaRates;
+    }
+
+    public Map<String, Integer> getQuotaBursts() {
+        return quotaBursts;
+    }
+
+    public void setQuotaBursts(Map<String, Integer> quotaBursts) {
+        this.quotaBursts = quotaBursts;
+    }
+
+    public boolean isConcurrencyLimitEnabled() {
+        return concurrencyLimitEnabled;
+    }
+
+    public void setConcurrencyLimitEnabled(boolean concurrencyLimitEnabled) {
+        this.concurrencyLimitEnabled = concurrencyLimitEnabled;
+    }
+
+    public int getConcurrencyLimitInitial() {
+        return concurrencyLimitInitial;
+    }
+
+    public void setConcurrencyLimitInitial(int concurrencyLimitInitial) {
+        this.concurrencyLimitInitial = concurrencyLimitInitial;
+    }
+
+    public int getConcurrencyLimitMin() {
+        return concurrencyLimitMin;
+    }
+
+    public void setConcurrencyLimitMin(int concurrencyLimitMin) {
+        this.concurrencyLimitMin = concurrencyLimitMin;
+    }
+
+    public int getConcurrencyLimitMax() {
+        return concurrencyLimitMax;
+    }
+
+    public void setConcurrencyLimitMax(int concurrencyLimitMax) {
+        this.concurrencyLimitMax = concurrencyLimitMax;
+    }
+
+    public boolean isPriorityLanes() {
+        return priorityLanes;
+    }
+
+    public void setPriorityLanes(boolean priorityLanes) {
+        this.priorityLanes = priorityLanes;
+    }
+
+    public Map<String, PriorityLaneProperties> getLanes() {
+        return lanes;
+    }
+
+    public void setLanes(Map<String, PriorityLaneProperties> lanes) {
+        this.lanes = lanes;
+    }
+
+    public String getAuditFormat() {
+        return auditFormat;
+    }
+
+    public void setAuditFormat(String auditFormat) {
+        this.auditFormat = auditFormat;
+    }
+
+    public boolean isAuditBatch() {
+        return auditBatch;
+    }
+
+    public void setAuditBatch(boolean auditBatch) {
+        this.auditBatch = auditBatch;
+    }
+
+    public int getAuditBatchSize() {
+        return auditBatchSize;
+    }
+
+    public void setAuditBatchSize(int auditBatchSize) {
+        this.auditBatchSize = auditBatchSize;
+    }
+
+    public int getAuditBatchBytes() {
+        return auditBatchBytes;
+    }
+
+    public void setAuditBatchBytes(int auditBatchBytes) {
+        this.auditBatchBytes = auditBatchBytes;
+    }
+
+    public long getAuditBatchWindow() {
+        return auditBatchWindow;
+    }
+
+    public void setAuditBatchWindow(long auditBatchWindow) {
+        this.auditBatchWindow = auditBatchWindow;
+    }
+
+    public boolean isKafkaTransactional() {
+        return kafkaTransactional;
+    }
+
+    public void setKafkaTransactional(boolean kafkaTransactional) {
+        this.kafkaTransactional = kafkaTransactional;
+    }
+
+    public String getKafkaTransactionalId() {
+        return kafkaTransactionalId;
+    }
+
+    public void setKafkaTransactionalId(String kafkaTransactionalId) {
+        this.kafkaTransactionalId = kafkaTransactionalId;
+    }
+
+    public int getTransactionBatchSize() {
+        return transactionBatchSize;
+    }
+
+    public void setTransactionBatchSize(int transactionBatchSize) {
+        this.transactionBatchSize = transactionBatchSize;
+    }
+
+    public long getTransactionBatchWindow() {
+        return transactionBatchWindow;
+    }
+
+    public void setTransactionBatchWindow(long transactionBatchWindow) {
+        this.transactionBatchWindow = transactionBatchWindow;
+    }
+
+    public int getTransactionQueueSize() {
+        return transactionQueueSize;
+    }
+
+    public void setTransactionQueueSize(int transactionQueueSize) {
+        this.transactionQueueSize = transactionQueueSize;
+    }
+
+    public long getTransactionSendTimeout() {
+        return transactionSendTimeout;
+    }
+
+    public void setTransactionSendTimeout(long transactionSendTimeout) {
+        this.transactionSendTimeout = transactionSendTimeout;
+    }
+
+    public boolean isOutboxEnabled() {
+        return outboxEnabled;
+    }
+
+    public void setOutboxEnabled(boolean outboxEnabled) {
+        this.outboxEnabled = outboxEnabled;
+    }
+
+    public String getOutboxDirectory() {
+        return outboxDirectory;
+    }
+
+    public void setOutboxDirectory(String outboxDirectory) {
+        this.outboxDirectory = outboxDirectory;
+    }
+
+    public int getOutboxSegmentSize() {
+        return outboxSegmentSize;
+    }
+
+    public void setOutboxSegmentSize(int outboxSegmentSize) {
+        this.outboxSegmentSize = outboxSegmentSize;
+    }
+
+    public long getOutboxMaxBytes() {
+        return outboxMaxBytes;
+    }
+
+    public void setOutboxMaxBytes(long outboxMaxBytes) {
+        this.outboxMaxBytes = outboxMaxBytes;
+    }
+
+    public String getOutboxFsync() {
+        return outboxFsync;
+    }
+
+    public void setOutboxFsync(String outboxFsync) {
+        this.outboxFsync = outboxFsync;
+    }
+
+    public long getOutboxFsyncInterval() {
+        return outboxFsyncInterval;
+    }
+
+    public void setOutboxFsyncInterval(long outboxFsyncInterval) {
+        this.outboxFsyncInterval = outboxFsyncInterval;
+    }
+
+    public int getOutboxReplayRate() {
+        return outboxReplayRate;
+    }
+
+    public void setOutboxReplayRate(int outboxReplayRate) {
+        this.outboxReplayRate = outboxReplayRate;
+    }
+
+    public int getOutboxReplayMaxRate() {
+        return outboxReplayMaxRate;
+    }
+
+    public void setOutboxReplayMaxRate(int outboxReplayMaxRate) {
+        this.outboxReplayMaxRate = outboxReplayMaxRate;
+    }
+
+    public long getOutboxSendTimeout() {
+        return outboxSendTimeout;
+    }
+
+    public void setOutboxSendTimeout(long outboxSendTimeout) {
+        this.outboxSendTimeout = outboxSendTimeout;
+    }
+
+    public boolean isClaimCheckEnabled() {
+        return claimCheckEnabled;
+    }
+
+    public void setClaimCheckEnabled(boolean claimCheckEnabled) {
+        this.claimCheckEnabled = claimCheckEnabled;
+    }
+
+    public int getClaimCheckThreshold() {
+        return claimCheckThreshold;
+    }
+
+    public void setClaimCheckThreshold(int claimCheckThreshold) {
+        this.claimCheckThreshold = claimCheckThreshold;
+    }
+
+    public String getClaimCheckStore() {
+        return claimCheckStore;
+    }
+
+    public void setClaimCheckStore(String claimCheckStore) {
+        this.claimCheckStore = claimCheckStore;
+    }
+
+    public String getClaimCheckDirectory() {
+        return claimCheckDirectory;
+    }
+
+    public void setClaimCheckDirectory(String claimCheckDirectory) {
+        this.claimCheckDirectory = claimCheckDirectory;
+    }
+
+    public long getClaimCheckRetention() {
+        return claimCheckRetention;
+    }
+
+    public void setClaimCheckRetention(long claimCheckRetention) {
+        this.claimCheckRetention = claimCheckRetention;
+    }
+
+    public boolean isClaimCheckServeContent() {
+        return claimCheckServeContent;
+    }
+
+    public void setClaimCheckServeContent(boolean claimCheckServeContent) {
+        this.claimCheckServeContent = claimCheckServeContent;
+    }
+
+    public String getClaimCheckContentToken() {
+        return claimCheckContentToken;
+    }
+
+    public void setClaimCheckContentToken(String claimCheckContentToken) {
+        this.claimCheckContentToken = claimCheckContentToken;
+    }
+
+    public String getTopicProvisioning() {
+        return topicProvisioning;
+    }
+
+    public void setTopicProvisioning(String topicProvisioning) {
+        this.topicProvisioning = topicProvisioning;
+    }
+
+    public long getTopicProvisioningTimeout() {
+        return topicProvisioningTimeout;
+    }
+
+    public void setTopicProvisioningTimeout(long topicProvisioningTimeout) {
+        this.topicProvisioningTimeout = topicProvisioningTimeout;
+    }
+
+    public TopicProperties getTopicDefaults() {
+        return topicDefaults;
+    }
+
+    public void setTopicDefaults(TopicProperties topicDefaults) {
+        this.topicDefaults = topicDefaults;
+    }
+
+    public Map<String, TopicProperties> getTopics() {
+        return topics;
+    }
+
+    public void setTopics(Map<String, TopicProperties> topics) {
+        this.topics = topics;
+    }
+
+    public long getTopicReportInterval() {
+        return topicReportInterval;
+    }
+
+    public void setTopicReportInterval(long topicReportInterval) {
+        this.topicReportInterval = topicReportInterval;
+    }
+
+    public double getTopicPartitionCapacity() {
+        return topicPartitionCapacity;
+    }
+
+    public void setTopicPartitionCapacity(double topicPartitionCapacity) {
+        this.topicPartitionCapacity = topicPartitionCapacity;
+    }
+
+    public boolean isFhirForwarding() {
+        return fhirForwarding;
+    }
+
+    public void setFhirForwarding(boolean fhirForwarding) {
+        this.fhirForwarding = fhirForwarding;
+    }
+
+    public int getFhirMaxConnections() {
+        return fhirMaxConnections;
+    }
+
+    public void setFhirMaxConnections(int fhirMaxConnections) {
+        this.fhirMaxConnections = fhirMaxConnections;
+    }
+
+    public int getFhirConnectTimeout() {
+        return fhirConnectTimeout;
+    }
+
+    public void setFhirConnectTimeout(int fhirConnectTimeout) {
+        this.fhirConnectTimeout = fhirConnectTimeout;
+    }
+
+    public long getFhirRequestTimeout() {
+        return fhirRequestTimeout;
+    }
+
+    public void setFhirRequestTimeout(long fhirRequestTimeout) {
+        this.fhirRequestTimeout = fhirRequestTimeout;
+    }
+
+    public long getFhirIdleTimeout() {
+        return fhirIdleTimeout;
+    }
+
+    public void setFhirIdleTimeout(long fhirIdleTimeout) {
+        this.fhirIdleTimeout = fhirIdleTimeout;
+    }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+
+/*
+ * Decodes Content-Encoding: gzip / deflate request bodies by wrapping the body stream, so the
+ * payload is inflated as the routes read it instead of being buffered compressed first.
+ *
+ * The transport may already have inflated a gzip body, so the first bytes are checked for the
+ * gzip or zlib header before wrapping. Content-Encoding is removed afterwards, otherwise it is
+ * copied onto the reply. Any other encoding is answered with a 415 and the route is stopped.
+ *
+ * The transport only limits the compressed length, a few KB of deflate can inflate to
+ * gigabytes. The decoded stream fails with InflatedSizeException once more than
+ * idaas.maxInflatedSize bytes were read from it, which the routes answer with 413.
+ */
+public class ContentEncodingProcessor implements Processor {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final long maxInflatedSize;
+
+    public ContentEncodingProcessor(long maxInflatedSize) {
+        this.maxInflatedSize = maxInflatedSize;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        String encoding = in.getHeader(Exchange.CONTENT_ENCODING, String.class);
+        if (encoding == null || encoding.trim().isEmpty() || "identity".equalsIgnoreCase(encoding.trim())) {
+            return;
+        }
+        encoding = encoding.trim().toLowerCase();
+        if (!"gzip".equals(encoding) && !"x-gzip".equals(encoding) && !"deflate".equals(encoding)) {
+            in.setHeader(Exchange.HTTP_RESPONSE_CODE, 415);
+            in.setHeader(Exchange.CONTENT_TYPE, "text/plain");
+            in.setBody("Unsupported Content-Encoding: " + encoding);
+            in.removeHeader(Exchange.CONTENT_ENCODING);
+            exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+            return;
+        }
+        InputStream body = in.getBody(InputStream.class);
+        in.removeHeader(Exchange.CONTENT_ENCODING);
+        // the declared length is the compressed one
+        in.removeHeader(Exchange.CONTENT_LENGTH);
+        if (body == null) {
+            return;
+        }
+        BufferedInputStream buffered = new BufferedInputStream(body, BUFFER_SIZE);
+        buffered.mark(2);
+        int b0 = buffered.read();
+        int b1 = buffered.read();
+        buffered.reset();
+        if (b0 < 0 || b1 < 0) {
+            in.setBody(buffered);
+        } else if (b0 == 0x1f && b1 == 0x8b) {
+            in.setBody(new LimitedInputStream(new GZIPInputStream(buffered, BUFFER_SIZE), maxInflatedSize));
+        } else if ((b0 & 0x0f) == 8 && ((b0 << 8) | b1) % 31 == 0) {
+            in.setBody(new LimitedInputStream(new InflaterInputStream(buffered, new Inflater(), BUFFER_SIZE), maxInflatedSize));
+        } else if ("deflate".equals(encoding) && !isJsonStart(b0)) {
+            // some clients send raw deflate data without the zlib wrapper
+            in.setBody(new LimitedInputStream(new InflaterInputStream(buffered, new Inflater(true), BUFFER_SIZE), maxInflatedSize));
+        } else {
+            // already inflated by the transport
+            in.setBody(new LimitedInputStream(buffered, maxInflatedSize));
+        }
+    }
+
+    /*
+     * Answers 413 for a body that failed with InflatedSizeException
+     */
+    public static Processor tooLarge() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Message in = exchange.getIn();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 413);
+                in.setHeader(Exchange.CONTENT_TYPE, "text/plain");
+                in.setBody("Request body is larger than idaas.maxInflatedSize once inflated");
+            }
+        };
+    }
+
+    /*
+     * An inflated request body grew past idaas.maxInflatedSize
+     */
+    public static class InflatedSizeException extends IOException {
+        public InflatedSizeException(long limit) {
+            super("Request body inflates to more than " + limit + " bytes");
+        }
+    }
+
+    private static final class LimitedInputStream extends FilterInputStream {
+        private final long limit;
+        private long count;
+
+        LimitedInputStream(InputStream in, long limit) {
+            super(in);
+            this.limit = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                counted(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                counted(n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            counted(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void counted(long n) throws InflatedSizeException {
+            count += n;
+            if (count > limit) {
+                throw new InflatedSizeException(limit);
+            }
+        }
+    }
+
+    private static boolean isJsonStart(int b) {
+        return b == '{' || b == '[' || b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == 0xef;
+    }
+}
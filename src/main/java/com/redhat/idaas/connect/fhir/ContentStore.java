@@ -0,0 +1,51 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/*
+ * Content addressed store behind the claim check (see ClaimCheck). Content is keyed by the
+ * lowercase hex SHA-256 of its bytes, so storing the same payload twice keeps one copy and a
+ * pointer never goes stale while the content is retained.
+ *
+ * idaas.claimCheckStore=filesystem selects FileContentStore; any other value is taken as the
+ * name of a ContentStore class with a public (ConfigProperties) or no-argument constructor.
+ */
+public interface ContentStore {
+
+    /*
+     * Name recorded in pointer records, e.g. "filesystem"
+     */
+    String getName();
+
+    /*
+     * Stores the stream's content and returns its hash
+     */
+    String put(InputStream content) throws IOException;
+
+    /*
+     * Opens the content for hash, or returns null when the store doesn't hold it
+     */
+    InputStream open(String hash) throws IOException;
+
+    /*
+     * Size in bytes of the content for hash, -1 when the store doesn't hold it
+     */
+    long size(String hash) throws IOException;
+}
@@ -0,0 +1,541 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.consumer.OffsetAndTimestamp;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * FHIR Bulk Data $export built on the connector's own fhirsvr_* topics.
+ *
+ *   GET    /camel/$export?_type=Patient,Observation&_since=2020-07-01T00:00:00Z  kick-off, 202 + Content-Location
+ *   GET    /camel/$export/{job}                                                 202 + X-Progress, then 200 + manifest
+ *   GET    /camel/$export/{job}/{file}                                          download one NDJSON file
+ *   DELETE /camel/$export/{job}                                                 cancel and remove the files
+ *
+ * Every partition of every requested topic is exported by its own consumer task, reading
+ * from the _since timestamp (or the beginning) up to the end offset seen at kick-off, and
+ * streaming record values straight into <type>-<partition>.ndjson[.gz]. Nothing but the
+ * record being written is held in memory. The partitions are looked up with AdminClient on
+ * the export pool, never on the request thread, and missing topics are skipped, not created.
+ *
+ * Claim check pointer records are exported as the resource they point to, read back from the
+ * ContentStore and verified against the pointer's hash. Pointers whose content is gone or
+ * corrupt are left out and reported per file in the manifest's error list. Reading content
+ * back is the same as serving it from /camel/content: it only happens with
+ * idaas.claimCheckServeContent, and then every $export request needs the
+ * idaas.claimCheckContentToken bearer token (requiresAccessToken in the manifest). Without it
+ * pointer records are withheld and reported as forbidden.
+ *
+ * Jobs and their files are removed idaas.exportRetention seconds after they complete; files
+ * of jobs from before a restart are removed at startup.
+ */
+@Component
+public class ExportJobManager {
+    private static final Logger log = LoggerFactory.getLogger(ExportJobManager.class);
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final ConfigProperties config;
+    private final ClaimCheck claimCheck;
+    private final ClaimCheckResolver resolver;
+    private final File exportDirectory;
+    private final ExecutorService executor;
+    private final ScheduledExecutorService sweeper;
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+    @Autowired
+    public ExportJobManager(ConfigProperties config, ClaimCheck claimCheck) {
+        this.config = config;
+        this.claimCheck = claimCheck;
+        this.resolver = new ClaimCheckResolver(claimCheck.getStore());
+        this.exportDirectory = new File(config.getExportDirectory());
+        final AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(config.getExportParallelism(), r -> {
+            Thread thread = new Thread(r, "iDAAS-Export-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        removeStaleJobs();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "iDAAS-Export-Sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::expire, 1, 1, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        for (ExportJob job : jobs.values()) {
+            job.cancelled = true;
+        }
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    // job directories left by a previous run, their jobs are gone with it
+    private void removeStaleJobs() {
+        File[] directories = exportDirectory.listFiles(File::isDirectory);
+        if (directories == null) {
+            return;
+        }
+        for (File directory : directories) {
+            try {
+                UUID.fromString(directory.getName());
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            delete(directory);
+        }
+    }
+
+    private void expire() {
+        long cutoff = System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(config.getExportRetention());
+        for (ExportJob job : jobs.values()) {
+            long finishedAt = job.finishedAt;
+            if (finishedAt > 0 && finishedAt < cutoff && jobs.remove(job.id, job)) {
+                log.info("Export {} expired", job.id);
+                delete(job.directory);
+            }
+        }
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (!file.delete()) {
+                    log.warn("Unable to delete export file {}", file);
+                }
+            }
+        }
+        if (!directory.delete()) {
+            log.warn("Unable to delete export directory {}", directory);
+        }
+    }
+
+    /*
+     * Handles every request below /camel/$export
+     */
+    public Processor api() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                if (!claimCheck.authorize(exchange)) {
+                    return;
+                }
+                Message in = exchange.getIn();
+                String method = in.getHeader(Exchange.HTTP_METHOD, "GET", String.class);
+                String[] path = segments(in.getHeader(Exchange.HTTP_PATH, String.class));
+                if (path.length == 1 && "GET".equals(method)) {
+                    kickOff(exchange);
+                } else if (path.length == 2 && "GET".equals(method)) {
+                    status(exchange, jobs.get(path[1]));
+                } else if (path.length == 2 && "DELETE".equals(method)) {
+                    cancel(exchange, jobs.remove(path[1]));
+                } else if (path.length == 3 && "GET".equals(method)) {
+                    download(exchange, jobs.get(path[1]), path[2]);
+                } else {
+                    respond(exchange, 404, BundleResponse.operationOutcome("not-found", "Unknown $export request"));
+                }
+            }
+        };
+    }
+
+    private void kickOff(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        Set<FhirResource> resources = EnumSet.noneOf(FhirResource.class);
+        String types = in.getHeader("_type", String.class);
+        if (types == null || types.trim().isEmpty()) {
+            resources = EnumSet.allOf(FhirResource.class);
+        } else {
+            for (String type : types.split(",")) {
+                FhirResource resource = FhirResource.fromResourceType(type.trim());
+                if (resource == null) {
+                    respond(exchange, 400, BundleResponse.operationOutcome("not-supported", "Unsupported _type: " + type));
+                    return;
+                }
+                resources.add(resource);
+            }
+        }
+        long since = -1;
+        String sinceParam = in.getHeader("_since", String.class);
+        if (sinceParam != null && !sinceParam.trim().isEmpty()) {
+            try {
+                since = OffsetDateTime.parse(sinceParam.trim()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException e) {
+                respond(exchange, 400, BundleResponse.operationOutcome("invalid", "Invalid _since: " + sinceParam));
+                return;
+            }
+        }
+
+        ExportJob job = new ExportJob(in.getHeader(Exchange.HTTP_URI, String.class), resources, since);
+        if (!job.directory.mkdirs()) {
+            respond(exchange, 500, BundleResponse.operationOutcome("exception", "Unable to create " + job.directory));
+            return;
+        }
+        jobs.put(job.id, job);
+        executor.submit(job::plan);
+        in.setHeader(Exchange.HTTP_RESPONSE_CODE, 202);
+        in.setHeader("Content-Location", "/camel/$export/" + job.id);
+        in.setBody("");
+    }
+
+    private void status(Exchange exchange, ExportJob job) throws Exception {
+        if (job == null) {
+            respond(exchange, 404, BundleResponse.operationOutcome("not-found", "Unknown export job"));
+            return;
+        }
+        List<PartitionExport> tasks = job.tasks;
+        int done = job.completed.get();
+        if (job.finishedAt == 0) {
+            exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, 202);
+            exchange.getIn().setHeader("X-Progress", tasks == null ? "planning"
+                : done + " of " + tasks.size() + " partitions, " + job.records.sum() + " resources");
+            exchange.getIn().setHeader("Retry-After", "5");
+            exchange.getIn().setBody("");
+            return;
+        }
+        ObjectNode manifest = MAPPER.createObjectNode();
+        manifest.put("transactionTime", Instant.ofEpochMilli(job.transactionTime).toString());
+        manifest.put("request", job.request);
+        manifest.put("requiresAccessToken", claimCheck.isServingContent());
+        ArrayNode output = manifest.putArray("output");
+        for (PartitionExport task : tasks) {
+            if (task.error == null && task.count > 0) {
+                ObjectNode file = output.addObject();
+                file.put("type", task.resource.getResourceType());
+                file.put("url", "/camel/$export/" + job.id + "/" + task.file.getName());
+                file.put("count", task.count);
+            }
+        }
+        ArrayNode errors = manifest.putArray("error");
+        if (job.error != null) {
+            errors.add(BundleResponse.operationOutcome("exception", job.error));
+        }
+        for (PartitionExport task : tasks) {
+            if (task.error != null) {
+                errors.add(BundleResponse.operationOutcome("exception",
+                    task.resource.getTopic() + "-" + task.partition + ": " + task.error));
+            }
+            if (task.unresolved > 0) {
+                errors.add(BundleResponse.operationOutcome("not-found", task.resource.getTopic() + "-" + task.partition
+                    + ": " + task.unresolved + " claim check pointers could not be resolved, left out of " + task.file.getName()));
+            }
+            if (task.withheld > 0) {
+                errors.add(BundleResponse.operationOutcome("forbidden", task.resource.getTopic() + "-" + task.partition
+                    + ": " + task.withheld + " claim checked resources left out of " + task.file.getName()
+                    + ", idaas.claimCheckServeContent is off"));
+            }
+        }
+        respond(exchange, 200, manifest);
+    }
+
+    private void cancel(Exchange exchange, ExportJob job) {
+        if (job == null) {
+            exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, 404);
+            exchange.getIn().setBody("");
+            return;
+        }
+        job.cancelled = true;
+        delete(job.directory);
+        exchange.getIn().setHeader(Exchange.HTTP_RESPONSE_CODE, 202);
+        exchange.getIn().setBody("");
+    }
+
+    private void download(Exchange exchange, ExportJob job, String name) throws Exception {
+        File file = job == null ? null : new File(job.directory, name);
+        if (file == null || !file.isFile() || !file.getParentFile().equals(job.directory)) {
+            respond(exchange, 404, BundleResponse.operationOutcome("not-found", "Unknown export file"));
+            return;
+        }
+        Message in = exchange.getIn();
+        in.setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+        in.setHeader(Exchange.CONTENT_TYPE, "application/fhir+ndjson");
+        if (name.endsWith(".gz")) {
+            in.setHeader("Content-Encoding", "gzip");
+        }
+        in.setBody(file);
+    }
+
+    private static void respond(Exchange exchange, int status, ObjectNode body) throws Exception {
+        Message in = exchange.getIn();
+        in.setHeader(Exchange.HTTP_RESPONSE_CODE, status);
+        in.setHeader(Exchange.CONTENT_TYPE, "application/fhir+json");
+        in.setBody(MAPPER.writeValueAsString(body));
+    }
+
+    private static String[] segments(String path) {
+        List<String> segments = new ArrayList<>();
+        if (path != null) {
+            for (String segment : path.split("/")) {
+                if (!segment.isEmpty()) {
+                    segments.add(segment);
+                }
+            }
+        }
+        return segments.toArray(new String[0]);
+    }
+
+    private Properties consumerProperties() {
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+        properties.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        // only committed records (idaas.kafkaTransactional), aborted data is never exported
+        properties.put(ConsumerConfig.ISOLATION_LEVEL_CONFIG, "read_committed");
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        return properties;
+    }
+
+    private final class ExportJob {
+        private final String id = UUID.randomUUID().toString();
+        private final long transactionTime = System.currentTimeMillis();
+        private final String request;
+        private final Set<FhirResource> resources;
+        private final long since;
+        private final File directory;
+        private final AtomicInteger completed = new AtomicInteger();
+        private final LongAdder records = new LongAdder();
+        private volatile List<PartitionExport> tasks;
+        private volatile String error;
+        private volatile long finishedAt;
+        private volatile boolean cancelled;
+
+        ExportJob(String request, Set<FhirResource> resources, long since) {
+            this.request = request;
+            this.resources = resources;
+            this.since = since;
+            this.directory = new File(exportDirectory, id);
+        }
+
+        // one task per partition of every requested topic, runs on the export pool
+        void plan() {
+            List<PartitionExport> planned = new ArrayList<>();
+            Properties properties = new Properties();
+            properties.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+            try (AdminClient admin = AdminClient.create(properties)) {
+                Map<String, FhirResource> byTopic = new HashMap<>();
+                for (FhirResource resource : resources) {
+                    byTopic.put(resource.getTopic(), resource);
+                }
+                Map<String, KafkaFuture<TopicDescription>> descriptions = admin.describeTopics(byTopic.keySet()).values();
+                for (Map.Entry<String, KafkaFuture<TopicDescription>> topic : descriptions.entrySet()) {
+                    TopicDescription description;
+                    try {
+                        description = topic.getValue().get(30, TimeUnit.SECONDS);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof UnknownTopicOrPartitionException) {
+                            continue;
+                        }
+                        throw e;
+                    }
+                    for (TopicPartitionInfo partition : description.partitions()) {
+                        planned.add(new PartitionExport(this, byTopic.get(topic.getKey()), partition.partition()));
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Export {} could not list its partitions", id, e);
+                error = "Unable to list partitions: " + e.getMessage();
+                tasks = Collections.emptyList();
+                finishedAt = System.currentTimeMillis();
+                return;
+            }
+            tasks = planned;
+            log.info("Export {} started for {} partitions of {} resource types", id, planned.size(), resources.size());
+            if (planned.isEmpty()) {
+                finishedAt = System.currentTimeMillis();
+            }
+            for (PartitionExport task : planned) {
+                executor.submit(task);
+            }
+        }
+
+        void taskDone() {
+            if (completed.incrementAndGet() == tasks.size()) {
+                finishedAt = System.currentTimeMillis();
+            }
+        }
+    }
+
+    private final class PartitionExport implements Runnable {
+        private final ExportJob job;
+        private final FhirResource resource;
+        private final int partition;
+        private final File file;
+        private volatile long count;
+        private volatile long unresolved;
+        private volatile long withheld;
+        private volatile String error;
+
+        PartitionExport(ExportJob job, FhirResource resource, int partition) {
+            this.job = job;
+            this.resource = resource;
+            this.partition = partition;
+            this.file = new File(job.directory, resource.getResourceType() + "-" + partition
+                + (config.isExportGzip() ? ".ndjson.gz" : ".ndjson"));
+        }
+
+        @Override
+        public void run() {
+            TopicPartition topicPartition = new TopicPartition(resource.getTopic(), partition);
+            try (KafkaConsumer<byte[], byte[]> consumer = new KafkaConsumer<>(consumerProperties());
+                 OutputStream out = open()) {
+                consumer.assign(Collections.singletonList(topicPartition));
+                long end = consumer.endOffsets(Collections.singletonList(topicPartition)).get(topicPartition);
+                seek(consumer, topicPartition, end);
+                while (!job.cancelled && consumer.position(topicPartition) < end) {
+                    ConsumerRecords<byte[], byte[]> records = consumer.poll(500L);
+                    for (ConsumerRecord<byte[], byte[]> record : records) {
+                        if (record.offset() >= end) {
+                            break;
+                        }
+                        if (record.value() != null && record.value().length > 0) {
+                            if (!claimCheck.isServingContent() && ClaimCheckResolver.isPointer(record.value())) {
+                                withheld++;
+                                continue;
+                            }
+                            byte[] value = resolve(record);
+                            if (value == null) {
+                                unresolved++;
+                                continue;
+                            }
+                            writeLine(out, value);
+                            count++;
+                            job.records.increment();
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.warn("Export {} of {} partition {} failed", job.id, resource.getTopic(), partition, e);
+                error = e.getMessage();
+            }
+            if (count == 0 && error == null && !file.delete()) {
+                log.debug("Unable to delete empty export file {}", file);
+            }
+            job.taskDone();
+        }
+
+        // the record itself, or for a pointer record the verified content, null when that is unavailable
+        private byte[] resolve(ConsumerRecord<byte[], byte[]> record) {
+            if (!ClaimCheckResolver.isPointer(record.value())) {
+                return record.value();
+            }
+            try {
+                return resolver.resolveBytes(record.value());
+            } catch (IOException e) {
+                log.warn("Export {} could not resolve the claim check at {}-{}@{}: {}",
+                    job.id, record.topic(), record.partition(), record.offset(), e.getMessage());
+                return null;
+            }
+        }
+
+        private OutputStream open() throws IOException {
+            OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 65536);
+            return config.isExportGzip() ? new GZIPOutputStream(out, 65536) : out;
+        }
+
+        private void seek(KafkaConsumer<byte[], byte[]> consumer, TopicPartition topicPartition, long end) {
+            if (job.since < 0) {
+                consumer.seekToBeginning(Collections.singletonList(topicPartition));
+                return;
+            }
+            Map<TopicPartition, Long> query = new HashMap<>();
+            query.put(topicPartition, job.since);
+            OffsetAndTimestamp offset = consumer.offsetsForTimes(query).get(topicPartition);
+            consumer.seek(topicPartition, offset == null ? end : offset.offset());
+        }
+    }
+
+    /*
+     * NDJSON needs one resource per line; pretty printed resources are compacted on the fly
+     */
+    private static void writeLine(OutputStream out, byte[] value) throws IOException {
+        boolean multiline = false;
+        for (byte b : value) {
+            if (b == '\n' || b == '\r') {
+                multiline = true;
+                break;
+            }
+        }
+        if (!multiline) {
+            out.write(value);
+        } else {
+            try (JsonParser parser = JSON.createParser(value);
+                 JsonGenerator generator = JSON.createGenerator(out)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                parser.nextToken();
+                generator.copyCurrentStructure(parser);
+            }
+        }
+        out.write('\n');
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/*
+ * Table of every FHIR resource the connector accepts.
+ *
+ * Each row carries the servlet path, the resourceType, the component name used for auditing,
+ * the audit trigger/details, the Kafka topic the resource is published to and the resource's
+ * code in binary audit records. The table is resolved once when the class loads, so the ingress
+ * route only needs a map lookup per exchange. Adding a resource to the connector is one new row
+ * here, with the next unused audit code; codes are never changed or reused.
+ */
+public enum FhirResource {
+
+    /*
+     *  Clinical FHIR
+     */
+    ADVERSE_EVENT(Category.CLINICAL, "adverseevent", "AdverseEvent", "FHIRAdverseEvent", "AdverseEvent", "fhirsvr_adverseevent", "Adverse Event message received", 1),
+    ALLERGY_INTOLERANCE(Category.CLINICAL, "alergyintollerance", "AllergyIntolerance", "FHIRAllergyIntollerance", "AllergyIntollerance", "fhirsvr_allergyintellorance", "Allergy Intollerance message received", 2),
+    APPOINTMENT(Category.CLINICAL, "appointment", "Appointment", "FHIRAppointment", "Appointment", "fhirsvr_appointment", "Appointment message received", 3),
+    APPOINTMENT_RESPONSE(Category.CLINICAL, "appointmentresponse", "AppointmentResponse", "FHIRAppointmentResponse", "AppointmentResponse", "fhirsvr_appointmentresponse", "Appointment Response message received", 4),
+    CARE_PLAN(Category.CLINICAL, "careplan", "CarePlan", "FHIRCarePlan", "CarePlan", "fhirsvr_careplan", "CarePlan message received", 5),
+    CARE_TEAM(Category.CLINICAL, "careteam", "CareTeam", "FHIRCareTeam", "CareTeam", "fhirsvr_careteam", "CareTeam message received", 6),
+    CLINICAL_IMPRESSION(Category.CLINICAL, "clincialimpression", "ClinicalImpression", "FHIRClinicalImpression", "ClinicalImpression", "fhirsvr_clinicalimpression", "ClinicalImpression message received", 7),
+    CODE_SYSTEM(Category.CLINICAL, "codesystem", "CodeSystem", "FHIRCodeSystem", "CodeSystem", "fhirsvr_codesystem", "CodeSystem message received", 8),
+    CONSENT(Category.CLINICAL, "consent", "Consent", "FHIRConsent", "Consent", "fhirsvr_consent", "Consent message received", 9),
+    COMMUNICATION(Category.CLINICAL, "communication", "Communication", "FHIRCommunication", "Communication", "fhirsvr_communication", "Communication message received", 10),
+    CONDITION(Category.CLINICAL, "condition", "Condition", "FHIRCondition", "Condition", "fhirsvr_condition", "Condition message received", 11),
+    DETECTED_ISSUE(Category.CLINICAL, "detectedissue", "DetectedIssue", "FHIRDetectedIssue", "DetectedIssue", "fhirsvr_detectedissue", "Detected Issue message received", 12),
+    DEVICE(Category.CLINICAL, "device", "Device", "FHIRDevice", "Device", "fhirsvr_device", "Device message received", 13),
+    DEVICE_REQUEST(Category.CLINICAL, "devicerequest", "DeviceRequest", "FHIRDeviceRequest", "DeviceRequest", "fhirsvr_devicerequest", "Device Request message received", 14),
+    DEVICE_USE_STATEMENT(Category.CLINICAL, "deviceusestatement", "DeviceUseStatement", "FHIRDeviceUseStatement", "DeviceUseStatement", "fhirsvr_deviceusestatement", "Device Use Statement message received", 15),
+    DIAGNOSTIC_REPORT(Category.CLINICAL, "diagnosticreport", "DiagnosticReport", "FHIRDiagnosticReport", "DiagnosticReport", "fhirsvr_diagnosticreport", "Diagnostic Report message received", 16),
+    DOCUMENT_REFERENCE(Category.CLINICAL, "documentreference", "DocumentReference", "FHIRDocumentReference", "DocumentReference", "fhirsvr_documentreference", "DocumentReference message received", 17),
+    ENCOUNTER(Category.CLINICAL, "encounter", "Encounter", "FHIREncounter", "Encounter", "fhirsvr_encounter", "Encounter message received", 18),
+    EPISODE_OF_CARE(Category.CLINICAL, "episodeofcare", "EpisodeOfCare", "FHIREpisodeOfCare", "EpisodeOfCare", "fhirsvr_episodeofcare", "EpisodeOfCare message received", 19),
+    FAMILY_MEMBER_HISTORY(Category.CLINICAL, "familymemberhistory", "FamilyMemberHistory", "FHIRMemberHistory", "Family Member History", "fhirsvr_familymemberhistory", "Family Member History message received", 20),
+    GOAL(Category.CLINICAL, "goal", "Goal", "FHIRGoal", "Goal", "fhirsvr_goal", "Goal message received", 21),
+    HEALTHCARE_SERVICE(Category.CLINICAL, "healthcareservice", "HealthcareService", "FHIRHealthcareService", "HealthcareService", "fhirsvr_healthcareservice", "HealthcareService message received", 22),
+    IMAGING_STUDY(Category.CLINICAL, "imagingstudy", "ImagingStudy", "FHIRImagingStudy", "ImagingStudy", "fhirsvr_imagingstudy", "Imaging Study message received", 23),
+    IMMUNIZATION(Category.CLINICAL, "immunization", "Immunization", "FHIRImmunization", "Immunization", "fhirsvr_immunization", "Immunization message received", 24),
+    LOCATION(Category.CLINICAL, "location", "Location", "FHIRLocation", "Location", "fhirsvr_location", "Location message received", 25),
+    MEDICATION(Category.CLINICAL, "medication", "Medication", "FHIRMedication", "Medication", "fhirsvr_medication", "Medication message received", 26),
+    MEDICATION_ADMINISTRATION(Category.CLINICAL, "medicationadministration", "MedicationAdministration", "FHIRMedicationAdministration", "MedicationAdministration", "fhirsvr_medicationadmiinistration", "Medication Admin message received", 27),
+    MEDICATION_DISPENSE(Category.CLINICAL, "medicationdispense", "MedicationDispense", "FHIRMedicationDispense", "MedicationDispense", "fhirsvr_medicationdispense", "Medication Dispense message received", 28),
+    MEDICATION_REQUEST(Category.CLINICAL, "medicationrequest", "MedicationRequest", "FHIRMedicationRequest", "MedicationRequest", "fhirsvr_medicationrequest", "Medication Request message received", 29),
+    MEDICATION_STATEMENT(Category.CLINICAL, "medicationstatement", "MedicationStatement", "FHIRMedicationStatement", "MedicationStatement", "fhirsvr_medicationstatement", "Medication Statement message received", 30),
+    OBSERVATION(Category.CLINICAL, "observation", "Observation", "FHIRObservation", "Observation", "fhirsvr_observation", "Observation message received", 31),
+    ORGANIZATION(Category.CLINICAL, "organization", "Organization", "FHIROrganization", "Organization", "fhirsvr_organization", "Organization message received", 32),
+    ORGANIZATION_AFFILIATION(Category.CLINICAL, "organizationaffiliation", "OrganizationAffiliation", "FHIROrganizationAffiliation", "OrganizationAffiliation", "fhirsvr_organizationaffiliation", "Organization Affiliation message received", 33),
+    PATIENT(Category.CLINICAL, "patient", "Patient", "FHIRPatient", "Patient", "fhirsvr_patient", "Patient message received", 34),
+    PERSON(Category.CLINICAL, "person", "Person", "FHIRPerson", "Person", "fhirsvr_person", "Person message received", 35),
+    PRACTITIONER(Category.CLINICAL, "practitioner", "Practitioner", "FHIRPractitioner", "Practitioner", "fhirsvr_practitioner", "Practitioner message received", 36),
+    PRACTITIONER_ROLE(Category.CLINICAL, "practitionerrole", "PractitionerRole", "FHIRPractitionerRole", "PractitionerRole", "fhirsvr_practitionerrole", "Practitioner Role message received", 37),
+    PROCEDURE(Category.CLINICAL, "procedure", "Procedure", "FHIRProcedure", "Procedure", "fhirsvr_procedure", "Procedure message received", 38),
+    QUESTIONNAIRE(Category.CLINICAL, "questionaire", "Questionnaire", "FHIRQuestionaire", "Questionaire", "fhirsvr_questionaire", "Questionaire message received", 39),
+    QUESTIONNAIRE_RESPONSE(Category.CLINICAL, "questionaireresponse", "QuestionnaireResponse", "FHIRQuestionaireResponse", "QuestionaireResponse", "fhirsvr_questionaireresponse", "Questionaire Response message received", 40),
+    RESEARCH_STUDY(Category.CLINICAL, "researchstudy", "ResearchStudy", "FHIRResearchStudy", "ResearchStudy", "fhirsvr_researchstudy", "Research Study message received", 41),
+    SCHEDULE(Category.CLINICAL, "schedule", "Schedule", "FHIRSchedule", "Schedule", "fhirsvr_schedule", "Schedule message received", 42),
+    SERVICE_REQUEST(Category.CLINICAL, "servicerequest", "ServiceRequest", "FHIRServiceRequest", "ServiceRequest", "fhirsvr_servicerequest", "Service Request message received", 43),
+    SPECIMEN(Category.CLINICAL, "specimen", "Specimen", "FHIRSpecimen", "Specimen", "fhirsvr_specimen", "Specimen message received", 44),
+    SUBSTANCE(Category.CLINICAL, "substance", "Substance", "FHIRSubstance", "Substance", "fhirsvr_sustance", "Substance message received", 45),
+    SUPPLY_DELIVERY(Category.CLINICAL, "supplydelivery", "SupplyDelivery", "FHIRSupplyDelivery", "SupplyDelivery", "fhirsvr_supplydelivery", "Supply Delivery message received", 46),
+    SUPPLY_REQUEST(Category.CLINICAL, "supplyrequest", "SupplyRequest", "FHIRSupplyRequest", "SupplyRequest", "fhirsvr_supplyrequest", "Supply Request message received", 47),
+    TEST_REPORT(Category.CLINICAL, "testreport", "TestReport", "FHIRTestReport", "TestReport", "fhirsvr_testreport", "Test Report message received", 48),
+    VERIFICATION_RESULT(Category.CLINICAL, "verificationresult", "VerificationResult", "FHIRVerificationResult", "VerificationResult", "fhirsvr_verificationresult", "Verification Result message received", 49),
+
+    /*
+     *  FHIR: Financial
+     */
+    ACCOUNT(Category.FINANCIAL, "account", "Account", "FHIRAccount", "account", "fhirsvr_account", "account message received", 50),
+    CHARGE_ITEM(Category.FINANCIAL, "chargeitem", "ChargeItem", "FHIRChargeItem", "chargeitem", "fhirsvr_chargeitem", "charge item message received", 51),
+    CHARGE_ITEM_DEFINITION(Category.FINANCIAL, "chargeitemdefinition", "ChargeItemDefinition", "FHIRChargeItemDefintion", "chargeitemdefinition", "fhirsvr_chargeitemdefinintion", "charge item definition message received", 52),
+    CLAIM(Category.FINANCIAL, "claim", "Claim", "FHIRClaim", "claim", "fhirsvr_claim", "claim message received", 53),
+    CLAIM_RESPONSE(Category.FINANCIAL, "claimresponse", "ClaimResponse", "FHIRClaimResponse", "claimresponse", "fhirsvr_claimresponse", "claim response message received", 54),
+    CONTRACT(Category.FINANCIAL, "contract", "Contract", "FHIRContract", "contract", "fhirsvr_contract", "contract message received", 55),
+    COVERAGE(Category.FINANCIAL, "coverage", "Coverage", "FHIRCoverage", "coverage", "fhirsvr_coverage", "coverage message received", 56),
+    COVERAGE_ELIGIBILITY_REQUEST(Category.FINANCIAL, "coverageeligibilityrequest", "CoverageEligibilityRequest", "FHIRCoverageEligibilityRequest", "coverageeligibilityrequest", "fhirsvr_coverageeligibilityrequest", "coverageeligibilityrequest message received", 57),
+    COVERAGE_ELIGIBILITY_RESPONSE(Category.FINANCIAL, "coverageeligibilityresponse", "CoverageEligibilityResponse", "FHIRCoverageEligibilityResponse", "coverageeligibilityresponse", "fhirsvr_coverageeligibilityresponse", "coverageeligibilityresponse message received", 58),
+    ENROLLMENT_REQUEST(Category.FINANCIAL, "enrollmentrequest", "EnrollmentRequest", "FHIREnrollmentrequest", "enrollmentrequest", "fhirsvr_enrollmentrequest", "Enrollment Request message received", 59),
+    ENROLLMENT_RESPONSE(Category.FINANCIAL, "enrollmentresponse", "EnrollmentResponse", "FHIREnrollmentresponse", "enrollmentresponse", "fhirsvr_enrollmentresponse", "Enroll Response message received", 60),
+    EXPLANATION_OF_BENEFIT(Category.FINANCIAL, "explanationofbenefits", "ExplanationOfBenefit", "FHIRExplanationofbenefits", "explanationofbenefits", "fhirsvr_explanationofbenefits", "explanationofbenefits message received", 61),
+    INSURANCE_PLAN(Category.FINANCIAL, "insuranceplan", "InsurancePlan", "FHIRInsuranceplan", "insuranceplan", "fhirsvr_insuranceplan", "insuranceplan message received", 62),
+    INVOICE(Category.FINANCIAL, "invoice", "Invoice", "FHIRInvoice", "invoice", "fhirsvr_invoice", "invoice message received", 63),
+    PAYMENT_NOTICE(Category.FINANCIAL, "paymentnotice", "PaymentNotice", "FHIRPaymentNotice", "paymentnotice", "fhirsvr_paymentnotice", "paymentnotice message received", 64),
+    PAYMENT_RECONCILIATION(Category.FINANCIAL, "paymentreconciliation", "PaymentReconciliation", "FHIRPaymentreconciliation", "paymentreconciliation", "fhirsvr_paymentreconciliation", "paymentreconciliation message received", 65),
+    RESEARCH_SUBJECT(Category.FINANCIAL, "researchsubject", "ResearchSubject", "FHIRResearchSubject", "ResearchSubject", "fhirsvr_researchsubject", "Research Subject message received", 66),
+
+    /*
+     *  FHIR: Evidence Based Medicine
+     */
+    RESEARCH_DEFINITION(Category.EVIDENCE, "researchdefinition", "ResearchDefinition", "FHIRResearchDefinition", "ResearchDefinition", "fhirsvr_researchdefinition", "Research Definition message received", 67),
+    RESEARCH_ELEMENT_DEFINITION(Category.EVIDENCE, "researchelementdefinition", "ResearchElementDefinition", "FHIRResearchElementDefinition", "ResearchElementDefinition", "fhirsvr_researchelementdefinition", "Research Element Definition message received", 68),
+    EVIDENCE(Category.EVIDENCE, "evidence", "Evidence", "FHIREvidence", "Evidence", "fhirsvr_evidence", "Evidence message received", 69),
+    EVIDENCE_VARIABLE(Category.EVIDENCE, "evidencevariable", "EvidenceVariable", "FHIREvidenceVariable", "EvidenceVariable", "fhirsvr_evidencevariable", "Evidence Variable message received", 70),
+    EFFECT_EVIDENCE_SYNTHESIS(Category.EVIDENCE, "effectevidencesynthesis", "EffectEvidenceSynthesis", "FHIREffectEvidenceSynthesis", "EffectEvidenceSynthesis", "fhirsvr_effectevidencesynthesis", "Effect Evidence Synthesis message received", 71),
+    RISK_EVIDENCE_SYNTHESIS(Category.EVIDENCE, "riskevidencesynthesis", "RiskEvidenceSynthesis", "FHIRRiskEvidenceSynthesis", "RiskEvidenceSynthesis", "fhirsvr_riskevidencesynthesis", "Risk Evidence Synthesis message received", 72),
+
+    /*
+     *  FHIR: Quality Reporting
+     */
+    MEASURE(Category.QUALITY, "measure", "Measure", "FHIRMeasure", "Measure", "fhirsvr_measure", "Measure message received", 73),
+    MEASURE_REPORT(Category.QUALITY, "measurereport", "MeasureReport", "FHIRMeasureReport", "MeasureReport", "fhirsvr_measurereport", "Measure Report message received", 74),
+    TEST_SCRIPT(Category.QUALITY, "testscript", "TestScript", "FHIRTestScript", "TestScript", "fhirsvr_testscript", "Test Script message received", 75);
+
+    public enum Category { CLINICAL, FINANCIAL, EVIDENCE, QUALITY }
+
+    private static final Map<String, FhirResource> BY_PATH = new HashMap<>();
+    private static final Map<String, FhirResource> BY_RESOURCE_TYPE = new HashMap<>();
+    private static final Map<Integer, FhirResource> BY_AUDIT_CODE = new HashMap<>();
+
+    static {
+        for (FhirResource resource : values()) {
+            BY_PATH.put(resource.path, resource);
+            BY_RESOURCE_TYPE.put(resource.resourceType, resource);
+            if (resource.auditCode < 1 || BY_AUDIT_CODE.put(resource.auditCode, resource) != null) {
+                throw new IllegalStateException("Audit code " + resource.auditCode + " of " + resource + " is not unique");
+            }
+        }
+    }
+
+    private final Category category;
+    private final String path;
+    private final String resourceType;
+    private final String component;
+    private final String messageTrigger;
+    private final String topic;
+    private final String auditDetails;
+    private final int auditCode;
+
+    FhirResource(Category category, String path, String resourceType, String component,
+                 String messageTrigger, String topic, String auditDetails, int auditCode) {
+        this.category = category;
+        this.path = path;
+        this.resourceType = resourceType;
+        this.component = component;
+        this.messageTrigger = messageTrigger;
+        this.topic = topic;
+        this.auditDetails = auditDetails;
+        this.auditCode = auditCode;
+    }
+
+    /*
+     * Resolves the resource from the servlet path remaining after /camel, e.g. "adverseevent" or
+     * "/adverseevent/123". Returns null when the path does not name a known resource.
+     */
+    public static FhirResource fromPath(String httpPath) {
+        String segment = firstSegment(httpPath);
+        if (segment == null) {
+            return null;
+        }
+        FhirResource resource = BY_PATH.get(segment);
+        if (resource == null) {
+            resource = BY_PATH.get(segment.toLowerCase(Locale.ROOT));
+        }
+        return resource;
+    }
+
+    /*
+     * First segment of a servlet path, ignoring leading slashes: "/receipts/abc-1" -> "receipts"
+     */
+    public static String firstSegment(String httpPath) {
+        if (httpPath == null) {
+            return null;
+        }
+        int start = 0;
+        int end = httpPath.length();
+        while (start < end && httpPath.charAt(start) == '/') {
+            start++;
+        }
+        int slash = httpPath.indexOf('/', start);
+        if (slash > 0) {
+            end = slash;
+        }
+        return start < end ? httpPath.substring(start, end) : null;
+    }
+
+    public static FhirResource fromResourceType(String resourceType) {
+        return resourceType == null ? null : BY_RESOURCE_TYPE.get(resourceType);
+    }
+
+    // null for a code this version does not know
+    public static FhirResource fromAuditCode(int auditCode) {
+        return BY_AUDIT_CODE.get(auditCode);
+    }
+
+    public Category getCategory() {
+        return category;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getResourceType() {
+        return resourceType;
+    }
+
+    public String getComponent() {
+        return component;
+    }
+
+    public String getMessageTrigger() {
+        return messageTrigger;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public String getAuditDetails() {
+        return auditDetails;
+    }
+
+    // the resource in binary audit records (AuditEventCodec), fixed once assigned
+    public int getAuditCode() {
+        return auditCode;
+    }
+}
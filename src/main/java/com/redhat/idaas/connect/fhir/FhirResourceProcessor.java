@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+
+/*
+ * Resolves the FHIR resource an ingress request was posted to and sets the auditing
+ * properties for it. Everything except the per-exchange ids comes straight from the
+ * FhirResource table, so no simple expressions are evaluated per request.
+ *
+ * Requests for an unknown path are answered with a 404 and the route is stopped.
+ *
+ * Only resources in the full body audit set get the payload copied into bodyData, every
+ * other resource is audited by reference (see AuditReferenceProcessor).
+ */
+public class FhirResourceProcessor implements Processor {
+
+    public static final String RESOURCE_PROPERTY = "fhirresource";
+    public static final String TOPIC_PROPERTY = "kafkatopic";
+    public static final String ENDPOINT_PROPERTY = "kafkaendpoint";
+    public static final String FULL_BODY_AUDIT_PROPERTY = "auditfullbody";
+
+    private final Set<FhirResource> fullBodyAudit;
+    private final Map<FhirResource, String> producerUris;
+
+    public FhirResourceProcessor(Set<FhirResource> fullBodyAudit, Map<FhirResource, String> producerUris) {
+        this.fullBodyAudit = fullBodyAudit;
+        this.producerUris = producerUris;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        FhirResource resource = FhirResource.fromPath(in.getHeader(Exchange.HTTP_PATH, String.class));
+        if (resource == null) {
+            in.setHeader(Exchange.HTTP_RESPONSE_CODE, 404);
+            in.setHeader(Exchange.CONTENT_TYPE, "text/plain");
+            in.setBody("Unknown FHIR resource: " + in.getHeader(Exchange.HTTP_PATH, String.class));
+            exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+            return;
+        }
+        apply(exchange, resource);
+    }
+
+    /*
+     * Sets the resource, producer and auditing properties for a resolved resource; also used for
+     * resources that did not arrive on their own path, such as Bundle entries
+     */
+    public void apply(Exchange exchange, FhirResource resource) {
+        Message in = exchange.getIn();
+        // set Auditing Properties
+        exchange.setProperty(RESOURCE_PROPERTY, resource);
+        exchange.setProperty(TOPIC_PROPERTY, resource.getTopic());
+        exchange.setProperty(ENDPOINT_PROPERTY, producerUris.get(resource));
+        exchange.setProperty("processingtype", "data");
+        exchange.setProperty("appname", "iDAAS-Connect-FHIR");
+        exchange.setProperty("industrystd", "FHIR");
+        exchange.setProperty("messagetrigger", resource.getMessageTrigger());
+        exchange.setProperty("component", resource.getComponent());
+        exchange.setProperty("camelID", exchange.getContext().getName());
+        exchange.setProperty("exchangeID", exchange.getExchangeId());
+        exchange.setProperty("internalMsgID", in.getMessageId());
+        boolean fullBody = fullBodyAudit.contains(resource);
+        exchange.setProperty(FULL_BODY_AUDIT_PROPERTY, fullBody);
+        if (fullBody) {
+            // a spooled body is audited as the record value only, it is never copied into a header
+            if (!(in.getBody() instanceof SpooledBody)) {
+                exchange.setProperty("bodyData", in.getBody());
+            }
+        }
+        exchange.setProperty("processname", "Input");
+        exchange.setProperty("auditdetails", resource.getAuditDetails());
+    }
+}
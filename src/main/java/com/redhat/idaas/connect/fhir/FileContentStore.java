@@ -0,0 +1,140 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.stream.Stream;
+
+/*
+ * Default ContentStore: one file per hash under idaas.claimCheckDirectory, fanned out as
+ * ab/cd/abcd... so no directory grows too large. Content is written to a temp file while it is
+ * hashed and then moved into place atomically, readers never see a partial file.
+ *
+ * Storing content that is already there refreshes its modification time, so expire() only
+ * deletes content no pointer record newer than the cutoff refers to.
+ */
+public class FileContentStore implements ContentStore {
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final File directory;
+
+    public FileContentStore(ConfigProperties config) {
+        this(new File(config.getClaimCheckDirectory()));
+    }
+
+    public FileContentStore(File directory) {
+        this.directory = directory;
+    }
+
+    @Override
+    public String getName() {
+        return "filesystem";
+    }
+
+    @Override
+    public String put(InputStream content) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create content store directory " + directory);
+        }
+        Path temp = Files.createTempFile(directory.toPath(), "put-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            try (OutputStream out = new DigestOutputStream(Files.newOutputStream(temp), digest)) {
+                byte[] chunk = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = content.read(chunk)) != -1) {
+                    out.write(chunk, 0, read);
+                }
+            }
+            String hash = AuditReferenceProcessor.hex(digest.digest());
+            Path target = path(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                try {
+                    Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                } catch (FileAlreadyExistsException e) {
+                    // stored concurrently by another request, same content
+                }
+            } else {
+                // a new pointer refers to it, it has to outlive that pointer
+                Files.setLastModifiedTime(target, FileTime.fromMillis(System.currentTimeMillis()));
+            }
+            return hash;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    @Override
+    public InputStream open(String hash) throws IOException {
+        Path path = path(hash);
+        return Files.exists(path) ? Files.newInputStream(path) : null;
+    }
+
+    @Override
+    public long size(String hash) throws IOException {
+        Path path = path(hash);
+        return Files.exists(path) ? Files.size(path) : -1;
+    }
+
+    /*
+     * Deletes content, and temp files of interrupted puts, last stored before cutoff (epoch ms);
+     * returns the number of files deleted
+     */
+    public int expire(long cutoff) throws IOException {
+        if (!directory.isDirectory()) {
+            return 0;
+        }
+        int deleted = 0;
+        try (Stream<Path> files = Files.walk(directory.toPath(), 3)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (Files.isRegularFile(file) && Files.getLastModifiedTime(file).toMillis() < cutoff
+                        && Files.deleteIfExists(file)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private Path path(String hash) {
+        if (!ClaimCheck.isHash(hash)) {
+            throw new IllegalArgumentException("Not a SHA-256 content hash: " + hash);
+        }
+        return directory.toPath().resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+
+/*
+ * Keeps the publish reply across the FHIR server forwarding (idaas.fhirForwarding).
+ *
+ * The record is in Kafka, or in the outbox, before the FHIR server is called, so the reply
+ * reports the publish and the forwarding outcome goes in X-iDAAS-Forwarding: the upstream
+ * status, 502 when the server was unreachable, 504 when it did not answer in time. Only a
+ * record sent straight to Kafka whose resource the FHIR server accepted (2xx) is answered with
+ * the server's status and body; an outboxed record keeps its 202 and X-iDAAS-Outbox.
+ */
+public final class ForwardingReply {
+
+    public static final String HEADER = "X-iDAAS-Forwarding";
+    // upstream status, for the FHIR server concurrency limit's failure signal
+    public static final String STATUS_PROPERTY = "fhirforwardingstatus";
+
+    private static final String REPLY_PROPERTY = "publishreply";
+
+    private final Integer status;
+    private final String contentType;
+    private final String outbox;
+    private final Object body;
+
+    private ForwardingReply(Message in) {
+        this.status = in.getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class);
+        this.contentType = in.getHeader(Exchange.CONTENT_TYPE, String.class);
+        this.outbox = in.getHeader("X-iDAAS-Outbox", String.class);
+        this.body = in.getBody();
+    }
+
+    /*
+     * Remembers the publish reply, before the headers are cleared for the upstream request
+     */
+    public static Processor save() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                exchange.setProperty(REPLY_PROPERTY, new ForwardingReply(exchange.getIn()));
+            }
+        };
+    }
+
+    /*
+     * Reports the forwarding outcome and puts the publish reply back unless the upstream reply stands
+     */
+    public static Processor restore() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Message in = exchange.getIn();
+                Object saved = exchange.removeProperty(REPLY_PROPERTY);
+                ForwardingReply reply = saved instanceof ForwardingReply ? (ForwardingReply) saved : null;
+                int upstream = in.getHeader(Exchange.HTTP_RESPONSE_CODE, 502, Integer.class);
+                exchange.setProperty(STATUS_PROPERTY, upstream);
+                boolean queued = exchange.getProperty(KafkaOutbox.QUEUED_PROPERTY) != null;
+                if (reply != null && (queued || upstream < 200 || upstream > 299)) {
+                    in.removeHeaders("*", BundleEntrySplitter.RESOURCE_TYPE_HEADER, BundleEntrySplitter.RESOURCE_ID_HEADER);
+                    if (reply.status != null) {
+                        in.setHeader(Exchange.HTTP_RESPONSE_CODE, reply.status);
+                    }
+                    if (reply.contentType != null) {
+                        in.setHeader(Exchange.CONTENT_TYPE, reply.contentType);
+                    }
+                    if (reply.outbox != null) {
+                        in.setHeader("X-iDAAS-Outbox", reply.outbox);
+                    }
+                    in.setBody(reply.body);
+                }
+                in.setHeader(HEADER, upstream);
+            }
+        };
+    }
+}
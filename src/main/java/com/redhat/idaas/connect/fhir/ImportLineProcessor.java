@@ -0,0 +1,86 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+
+/*
+ * Prepares one NDJSON line of a bulk import for publishing. The resourceType is read from
+ * the top level of the line with a streaming parser; the line is then resolved against
+ * FhirResource and gets the same properties as a request to the resource's own endpoint.
+ * Blank lines are marked to be skipped, unknown resource types fail the line.
+ */
+public class ImportLineProcessor implements Processor {
+
+    public static final String SKIP_PROPERTY = "importskip";
+    public static final String RESOURCE_TYPE_PROPERTY = "importresourcetype";
+
+    private static final JsonFactory JSON = new JsonFactory();
+
+    private final FhirResourceProcessor resourceProcessor;
+    private final boolean rawBody;
+
+    public ImportLineProcessor(FhirResourceProcessor resourceProcessor, boolean rawBody) {
+        this.resourceProcessor = resourceProcessor;
+        this.rawBody = rawBody;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        String line = in.getBody(String.class);
+        if (line == null || line.trim().isEmpty()) {
+            exchange.setProperty(SKIP_PROPERTY, true);
+            return;
+        }
+        exchange.setProperty(SKIP_PROPERTY, false);
+        String resourceType = resourceType(line);
+        exchange.setProperty(RESOURCE_TYPE_PROPERTY, resourceType);
+        FhirResource resource = FhirResource.fromResourceType(resourceType);
+        if (resource == null) {
+            throw new IllegalArgumentException("Unsupported resourceType: " + resourceType);
+        }
+        line = line.trim();
+        in.setBody(rawBody ? line.getBytes(StandardCharsets.UTF_8) : line);
+        resourceProcessor.apply(exchange, resource);
+    }
+
+    static String resourceType(String json) throws IOException {
+        try (JsonParser parser = JSON.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IllegalArgumentException("Line is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                parser.nextToken();
+                if ("resourceType".equals(name)) {
+                    return parser.getText();
+                }
+                parser.skipChildren();
+            }
+        }
+        return null;
+    }
+}
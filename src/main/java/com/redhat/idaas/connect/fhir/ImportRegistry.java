@@ -0,0 +1,251 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Tracks NDJSON bulk imports posted to /camel/$import.
+ *
+ * Every import gets a job with lock free counters per resourceType that the line
+ * processors update as they go; progress is logged every idaas.importProgressInterval
+ * lines and GET /camel/$import lists the running and the most recent imports. When the
+ * upload has been fully read the job's summary is the response to the POST. When reading the
+ * upload fails part way (client gone, I/O error, body too large) the job ends as failed with
+ * that error; the lines published until then stay published.
+ */
+@Component
+public class ImportRegistry {
+    private static final Logger log = LoggerFactory.getLogger(ImportRegistry.class);
+
+    public static final String JOB_PROPERTY = "importjob";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final int HISTORY = 20;
+    private static final int MAX_ERRORS = 10;
+
+    private final long progressInterval;
+    private final Deque<ImportJob> jobs = new ConcurrentLinkedDeque<>();
+
+    @Autowired
+    public ImportRegistry(ConfigProperties config) {
+        this.progressInterval = config.getImportProgressInterval();
+    }
+
+    public Processor start() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                ImportJob job = new ImportJob();
+                jobs.addFirst(job);
+                while (jobs.size() > HISTORY) {
+                    jobs.pollLast();
+                }
+                exchange.setProperty(JOB_PROPERTY, job);
+                log.info("Import {} started", job.id);
+            }
+        };
+    }
+
+    public Processor finish() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                ImportJob job = exchange.getProperty(JOB_PROPERTY, ImportJob.class);
+                job.finishedAt = System.currentTimeMillis();
+                log.info("Import {} finished: {} lines, {} published, {} failed, {} skipped in {} ms", job.id,
+                    job.lines.get(), job.published.sum(), job.failed.sum(), job.skipped.sum(),
+                    job.finishedAt - job.startedAt);
+                Message in = exchange.getIn();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, job.failed.sum() == 0 ? 200 : 207);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/json");
+                in.setBody(MAPPER.writeValueAsString(job.toJson()));
+            }
+        };
+    }
+
+    /*
+     * Ends the job when the upload could not be read to the end, answered with 500 and the summary
+     */
+    public Processor aborted() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                ImportJob job = exchange.getProperty(JOB_PROPERTY, ImportJob.class);
+                Exception cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+                job.abort(cause == null ? "unknown error" : cause.getMessage());
+                log.warn("Import {} failed after {} lines: {}", job.id, job.lines.get(), job.error);
+                Message in = exchange.getIn();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 500);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/json");
+                in.setBody(MAPPER.writeValueAsString(job.toJson()));
+            }
+        };
+    }
+
+    /*
+     * Counts a line once it was published, or skipped when blank
+     */
+    public Processor lineDone() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                ImportJob job = exchange.getProperty(JOB_PROPERTY, ImportJob.class);
+                if (exchange.getProperty(ImportLineProcessor.SKIP_PROPERTY, false, Boolean.class)) {
+                    job.skipped();
+                } else {
+                    job.published(exchange.getProperty(ImportLineProcessor.RESOURCE_TYPE_PROPERTY, String.class));
+                }
+            }
+        };
+    }
+
+    public Processor lineFailed() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                ImportJob job = exchange.getProperty(JOB_PROPERTY, ImportJob.class);
+                Exception cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+                Integer index = exchange.getProperty(Exchange.SPLIT_INDEX, Integer.class);
+                job.failed(exchange.getProperty(ImportLineProcessor.RESOURCE_TYPE_PROPERTY, String.class),
+                    index == null ? 0 : index + 1, cause == null ? "unknown error" : cause.getMessage());
+            }
+        };
+    }
+
+    /*
+     * GET /camel/$import
+     */
+    public Processor status() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                ArrayNode list = MAPPER.createArrayNode();
+                for (ImportJob job : jobs) {
+                    list.add(job.toJson());
+                }
+                Message in = exchange.getIn();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/json");
+                in.setBody(MAPPER.writeValueAsString(list));
+            }
+        };
+    }
+
+    public final class ImportJob {
+        private final String id = UUID.randomUUID().toString();
+        private final long startedAt = System.currentTimeMillis();
+        private volatile long finishedAt;
+        // why the upload could not be read to the end
+        private volatile String error;
+
+        private final AtomicLong lines = new AtomicLong();
+        private final LongAdder published = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder skipped = new LongAdder();
+        private final Map<String, LongAdder[]> types = new ConcurrentHashMap<>();
+        private final List<String> errors = new ArrayList<>();
+
+        void abort(String error) {
+            this.error = error;
+            this.finishedAt = System.currentTimeMillis();
+        }
+
+        public void skipped() {
+            count();
+            skipped.increment();
+        }
+
+        public void published(String resourceType) {
+            count();
+            published.increment();
+            type(resourceType)[0].increment();
+        }
+
+        public void failed(String resourceType, long line, String error) {
+            count();
+            failed.increment();
+            type(resourceType)[1].increment();
+            synchronized (errors) {
+                if (errors.size() < MAX_ERRORS) {
+                    errors.add("line " + line + ": " + error);
+                }
+            }
+        }
+
+        private void count() {
+            // exactly one thread sees each count, so every interval is logged once
+            long line = lines.incrementAndGet();
+            if (progressInterval > 0 && line % progressInterval == 0) {
+                log.info("Import {} progress: {} lines, {} published, {} failed", id, line,
+                    published.sum(), failed.sum());
+            }
+        }
+
+        private LongAdder[] type(String resourceType) {
+            return types.computeIfAbsent(resourceType == null ? "unknown" : resourceType,
+                key -> new LongAdder[] { new LongAdder(), new LongAdder() });
+        }
+
+        ObjectNode toJson() {
+            ObjectNode json = MAPPER.createObjectNode();
+            json.put("import", id);
+            json.put("state", finishedAt == 0 ? "running" : error != null ? "failed" : "complete");
+            if (error != null) {
+                json.put("error", error);
+            }
+            json.put("startedAt", startedAt);
+            json.put("durationMillis", (finishedAt == 0 ? System.currentTimeMillis() : finishedAt) - startedAt);
+            json.put("lines", lines.get());
+            json.put("published", published.sum());
+            json.put("failed", failed.sum());
+            json.put("skipped", skipped.sum());
+            ObjectNode summary = json.putObject("types");
+            for (Map.Entry<String, LongAdder[]> type : types.entrySet()) {
+                ObjectNode counts = summary.putObject(type.getKey());
+                counts.put("published", type.getValue()[0].sum());
+                counts.put("failed", type.getValue()[1].sum());
+            }
+            ArrayNode errorList = json.putArray("errors");
+            synchronized (errors) {
+                for (String error : errors) {
+                    errorList.add(error);
+                }
+            }
+            return json;
+        }
+    }
+}
@@ -0,0 +1,794 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import javax.annotation.PreDestroy;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.InterruptException;
+import org.apache.kafka.common.errors.RetriableException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Local write-ahead outbox for data records Kafka could not take (idaas.outboxEnabled).
+ *
+ * With the outbox enabled data records are sent by the outbox's own producers whose
+ * delivery.timeout.ms is idaas.outboxSendTimeout: one per topic with idaas.kafka.topics.<topic>.*
+ * overrides and one shared by the rest, for every priority lane (LANE_PROPERTY) so lanes never
+ * share buffer.memory, and another set for replay. A record Kafka did not acknowledge within
+ * that time, or refused with a retriable error, is appended to the outbox and the request is
+ * answered with 202 and X-iDAAS-Outbox: queued. Non-retriable errors (record too large,
+ * authorization) fail the request instead, they would fail on every replay as well.
+ *
+ * Records are appended to memory mapped segment files of idaas.outboxSegmentSize bytes under
+ * idaas.outboxDirectory, and a replay thread sends them to Kafka in append order once the broker
+ * is back. While anything is waiting in the outbox new records are appended behind it too, so
+ * per topic order is kept. Replay starts at idaas.outboxReplayRate records per second after a
+ * failure and doubles the rate with every acknowledged batch up to idaas.outboxReplayMaxRate, so
+ * a broker that just came back is not flooded with the whole backlog at once; the outbox drains
+ * as long as the maximum is above the ingest rate. Fully replayed segments are deleted; when
+ * idaas.outboxMaxBytes of segments exist new records are refused.
+ *
+ * A retriable replay error (broker down, not enough replicas, timeout) sends the rest of the
+ * batch again after a backoff. A record Kafka refuses for good is appended to outbox.dead in the
+ * same layout, with the error as an extra context entry, and replay goes on past it; the
+ * ReplayListener hears about it through failed().
+ *
+ * Record layout: length (int, written last), CRC32 of the rest, topic length (short), topic,
+ * key length (int, -1 for none), key, value length (int), value, context entry count (short)
+ * and the entries as name and value lengths (short) and bytes. A zero length ends a segment's
+ * data, a bad CRC marks a torn write and is treated the same. The replay position is kept in
+ * outbox.cursor, so after a restart replay resumes where it stopped (at least once delivery).
+ *
+ * The context carries the exchange properties the reference audit and the asynchronous ingest
+ * receipt need (CONTEXT_PROPERTIES): an outboxed record has no partition and offset yet, so it
+ * is audited and its receipt marked sent once replay has sent it, by the ReplayListener.
+ *
+ * idaas.outboxFsync: always forces every append to disk, interval forces every
+ * idaas.outboxFsyncInterval ms, never leaves it to the OS.
+ */
+@Component
+public class KafkaOutbox {
+    private static final Logger log = LoggerFactory.getLogger(KafkaOutbox.class);
+
+    public enum FsyncPolicy { ALWAYS, INTERVAL, NEVER }
+
+    public static final String QUEUED_PROPERTY = "outboxqueued";
+
+    // set by asynchronous ingest: the record is always appended, never sent on the request thread
+    public static final String DEFERRED_PROPERTY = "outboxdeferred";
+
+    /*
+     * Exchange properties kept with an outboxed record and handed to the ReplayListener
+     */
+    public static final List<String> CONTEXT_PROPERTIES = Collections.unmodifiableList(Arrays.asList(
+        FhirResourceProcessor.RESOURCE_PROPERTY, "exchangeID", "internalMsgID", ReceiptRegistry.RECEIPT_PROPERTY));
+
+    /*
+     * Called on the replay thread for every record once Kafka acknowledged it, or refused it for
+     * good and it was moved to the dead letter file
+     */
+    public interface ReplayListener {
+        void replayed(ProducerRecord<byte[], byte[]> record, Map<String, String> context, RecordMetadata metadata);
+
+        default void failed(ProducerRecord<byte[], byte[]> record, Map<String, String> context, Throwable cause) {
+        }
+    }
+
+    private static final String SEGMENT_PREFIX = "outbox-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String DEAD_LETTERS = "outbox.dead";
+    private static final int REPLAY_BATCH = 500;
+
+    private final ConfigProperties config;
+    private final boolean enabled;
+    private final File directory;
+    private final int segmentSize;
+    private final long maxBytes;
+    private final long sendTimeout;
+    private final long replayRate;
+    private final long replayMaxRate;
+    private final FsyncPolicy fsync;
+
+    private final Object lock = new Object();
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final Map<String, KafkaProducer<byte[], byte[]>> producers = new ConcurrentHashMap<>();
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong replayed = new AtomicLong();
+    private final AtomicLong refused = new AtomicLong();
+    private final AtomicLong deadLettered = new AtomicLong();
+    private long nextBase;
+    private FileChannel cursor;
+    private FileChannel deadLetters;
+    private long cursorBase;
+    private int cursorPosition;
+
+    private volatile ReplayListener listener;
+    private volatile boolean running;
+    private Thread replayer;
+    private Thread flusher;
+
+    @Autowired
+    public KafkaOutbox(ConfigProperties config) throws IOException {
+        this(config, true);
+    }
+
+    // replay false only recovers the segments, for tests that drive nextBatch/acknowledge themselves
+    KafkaOutbox(ConfigProperties config, boolean replay) throws IOException {
+        this.config = config;
+        this.enabled = config.isOutboxEnabled();
+        this.directory = new File(config.getOutboxDirectory());
+        this.segmentSize = config.getOutboxSegmentSize();
+        this.maxBytes = config.getOutboxMaxBytes();
+        this.sendTimeout = config.getOutboxSendTimeout();
+        this.replayRate = Math.max(1, config.getOutboxReplayRate());
+        this.replayMaxRate = config.getOutboxReplayMaxRate();
+        this.fsync = FsyncPolicy.valueOf(config.getOutboxFsync().trim().toUpperCase());
+        if (enabled) {
+            // a send may block for metadata and then wait for delivery, both bounded by sendTimeout
+            if (2 * sendTimeout >= config.getServletAsyncTimeout()) {
+                throw new IllegalArgumentException("idaas.outboxSendTimeout=" + sendTimeout
+                    + " has to be below half of idaas.servletAsyncTimeout=" + config.getServletAsyncTimeout()
+                    + ", or requests time out before their record reaches the outbox");
+            }
+            if (replayMaxRate < replayRate) {
+                throw new IllegalArgumentException("idaas.outboxReplayMaxRate=" + replayMaxRate
+                    + " has to be at least idaas.outboxReplayRate=" + replayRate);
+            }
+            recover();
+            if (replay) {
+                start();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setReplayListener(ReplayListener listener) {
+        this.listener = listener;
+    }
+
+    /*
+     * Sends the exchange's data record, or appends it to the outbox (202) when records are
+     * waiting there already, the exchange is DEFERRED_PROPERTY, or Kafka does not acknowledge
+     * it within idaas.outboxSendTimeout.
+     * A sent record's metadata is set as KafkaConstants.KAFKA_RECORDMETA like the Kafka
+     * endpoint does, for the reference audit.
+     */
+    public Processor send() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                if (pending.get() > 0 || exchange.getProperty(DEFERRED_PROPERTY, false, Boolean.class)) {
+                    store(exchange);
+                    return;
+                }
+                Message in = exchange.getIn();
+                String topic = exchange.getProperty(FhirResourceProcessor.TOPIC_PROPERTY, String.class);
+                try {
+                    String lane = exchange.getProperty(PriorityLanes.LANE_PROPERTY, String.class);
+                    Future<RecordMetadata> sent = producer(topic, lane).send(new ProducerRecord<>(topic, key(in), in.getBody(byte[].class)));
+                    // delivery.timeout.ms fails the future first, this only guards against a stuck client
+                    RecordMetadata metadata = sent.get(2 * sendTimeout, TimeUnit.MILLISECONDS);
+                    in.setHeader(KafkaConstants.KAFKA_RECORDMETA, Collections.singletonList(metadata));
+                } catch (ExecutionException e) {
+                    if (!(e.getCause() instanceof RetriableException)) {
+                        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                    log.debug("Kafka did not take the record for {}, appending it to the outbox", topic, e.getCause());
+                    store(exchange);
+                } catch (TimeoutException | RetriableException e) {
+                    log.debug("Kafka did not take the record for {}, appending it to the outbox", topic, e);
+                    store(exchange);
+                }
+            }
+        };
+    }
+
+    /*
+     * Appends the exchange's data record and answers 202, the record reaches Kafka on replay
+     */
+    public Processor store() {
+        return this::store;
+    }
+
+    private void store(Exchange exchange) throws IOException {
+        Message in = exchange.getIn();
+        Map<String, String> context = new LinkedHashMap<>();
+        for (String name : CONTEXT_PROPERTIES) {
+            Object value = exchange.getProperty(name);
+            if (value != null) {
+                context.put(name, value instanceof Enum ? ((Enum<?>) value).name() : value.toString());
+            }
+        }
+        append(exchange.getProperty(FhirResourceProcessor.TOPIC_PROPERTY, String.class),
+            key(in), in.getBody(byte[].class), context);
+        exchange.setProperty(QUEUED_PROPERTY, Boolean.TRUE);
+        in.setHeader(Exchange.HTTP_RESPONSE_CODE, 202);
+        in.setHeader("X-iDAAS-Outbox", "queued");
+    }
+
+    private static byte[] key(Message in) {
+        String key = in.getHeader(KafkaConstants.KEY, String.class);
+        return key == null ? null : key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    public void append(String topic, byte[] key, byte[] value) throws IOException {
+        append(topic, key, value, Collections.emptyMap());
+    }
+
+    public void append(String topic, byte[] key, byte[] value, Map<String, String> context) throws IOException {
+        ByteBuffer record = encode(topic, key, value, context);
+        int payload = record.remaining() - 4;
+        if (payload + 8 > segmentSize) {
+            throw new IllegalStateException("Record of " + value.length + " bytes does not fit an outbox segment");
+        }
+        synchronized (lock) {
+            Segment segment = segments.peekLast();
+            if (segment == null || segment.written + 4 + payload + 4 > segmentSize) {
+                segment = rotate();
+            }
+            ByteBuffer buffer = segment.buffer.duplicate();
+            int start = segment.written;
+            buffer.position(start + 4);
+            record.position(4);
+            buffer.put(record);
+            // terminate the data after this record, stale bytes past a torn write are never read back
+            buffer.putInt(start + 4 + payload, 0);
+            // the length goes in last, a record is only complete once it is there
+            buffer.putInt(start, payload);
+            if (fsync == FsyncPolicy.ALWAYS) {
+                segment.buffer.force();
+            }
+            segment.written = start + 4 + payload;
+            pending.incrementAndGet();
+            lock.notifyAll();
+        }
+    }
+
+    // the whole record in the segment layout, length and CRC included
+    private static ByteBuffer encode(String topic, byte[] key, byte[] value, Map<String, String> context) {
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        List<byte[]> entries = new ArrayList<>(context.size() * 2);
+        int contextLength = 2;
+        for (Map.Entry<String, String> entry : context.entrySet()) {
+            byte[] name = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            byte[] text = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            entries.add(name);
+            entries.add(text);
+            contextLength += 2 + name.length + 2 + text.length;
+        }
+        int payload = 4 + 2 + topicBytes.length + 4 + (key == null ? 0 : key.length) + 4 + value.length + contextLength;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + payload);
+        buffer.putInt(payload).putInt(0);
+        buffer.putShort((short) topicBytes.length).put(topicBytes);
+        if (key == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(key.length).put(key);
+        }
+        buffer.putInt(value.length).put(value);
+        buffer.putShort((short) context.size());
+        for (byte[] bytes : entries) {
+            buffer.putShort((short) bytes.length).put(bytes);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 8, payload - 4);
+        buffer.putInt(4, (int) crc.getValue());
+        buffer.flip();
+        return buffer;
+    }
+
+    private Segment rotate() throws IOException {
+        Segment active = segments.peekLast();
+        if (active != null) {
+            active.buffer.force();
+            active.sealed = true;
+        }
+        if ((long) (segments.size() + 1) * segmentSize > maxBytes) {
+            refused.incrementAndGet();
+            throw new IllegalStateException("Outbox is full (" + segments.size() + " segments)");
+        }
+        Segment segment = Segment.open(new File(directory, segmentName(nextBase++)), segmentSize);
+        segments.addLast(segment);
+        return segment;
+    }
+
+    private void recover() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create outbox directory " + directory);
+        }
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+        Arrays.sort(files == null ? new File[0] : files);
+        for (File file : files == null ? new File[0] : files) {
+            Segment segment = Segment.open(file, segmentSize);
+            segment.written = segment.buffer.capacity();
+            segment.written = segment.scan(0, Integer.MAX_VALUE).end;
+            segments.addLast(segment);
+            nextBase = Math.max(nextBase, segment.base + 1);
+        }
+        for (Segment segment : segments) {
+            if (segment != segments.peekLast()) {
+                segment.sealed = true;
+            }
+        }
+        cursor = FileChannel.open(new File(directory, "outbox.cursor").toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        deadLetters = FileChannel.open(new File(directory, DEAD_LETTERS).toPath(),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        ByteBuffer saved = ByteBuffer.allocate(12);
+        if (cursor.read(saved, 0) == 12) {
+            saved.flip();
+            cursorBase = saved.getLong();
+            cursorPosition = saved.getInt();
+        }
+        // drop segments replayed before the restart
+        while (!segments.isEmpty() && segments.peekFirst().base < cursorBase) {
+            delete(segments.pollFirst());
+        }
+        if (segments.isEmpty() || segments.peekFirst().base != cursorBase) {
+            cursorBase = segments.isEmpty() ? nextBase : segments.peekFirst().base;
+            cursorPosition = 0;
+        }
+        long count = 0;
+        for (Segment segment : segments) {
+            count += segment.scan(segment.base == cursorBase ? cursorPosition : 0, Integer.MAX_VALUE).records;
+        }
+        pending.set(count);
+        if (count > 0) {
+            log.info("Outbox holds {} records to replay in {} segments", count, segments.size());
+        }
+    }
+
+    private void start() {
+        running = true;
+        replayer = new Thread(this::replay, "iDAAS-Outbox-Replay");
+        replayer.setDaemon(true);
+        replayer.start();
+        if (fsync == FsyncPolicy.INTERVAL) {
+            flusher = new Thread(this::flush, "iDAAS-Outbox-Fsync");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+
+    // lane null for replay, which has producers of its own
+    private KafkaProducer<byte[], byte[]> producer(String topic, String lane) {
+        String tuned = config.getKafka().hasOverride(topic) ? topic : null;
+        return producers.computeIfAbsent((lane == null ? "" : lane) + "/" + (tuned == null ? "" : tuned),
+            key -> createProducer(tuned, lane));
+    }
+
+    private KafkaProducer<byte[], byte[]> createProducer(String topic, String lane) {
+        KafkaProducerProperties settings = config.getKafka().resolve(topic);
+        Properties properties = settings.toProducerProperties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+        properties.put(ProducerConfig.CLIENT_ID_CONFIG, "idaas-" + (lane == null ? "outbox-replay" : "lane-" + lane)
+            + (topic == null ? "" : "-" + topic));
+        properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        properties.put(ProducerConfig.ACKS_CONFIG, "all");
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        // bound the whole send, metadata wait included, so the request can still be answered with 202
+        long maxBlock = settings.getMaxBlockMs() == null ? sendTimeout : Math.min(settings.getMaxBlockMs(), sendTimeout);
+        long linger = settings.getLingerMs() == null ? 0 : settings.getLingerMs();
+        properties.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, Long.toString(maxBlock));
+        properties.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, Long.toString(sendTimeout));
+        properties.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, Long.toString(Math.max(1, sendTimeout - linger)));
+        return new KafkaProducer<>(properties);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        synchronized (lock) {
+            lock.notifyAll();
+        }
+        if (replayer != null) {
+            replayer.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        if (flusher != null) {
+            flusher.interrupt();
+        }
+        for (KafkaProducer<byte[], byte[]> producer : producers.values()) {
+            producer.close(30, TimeUnit.SECONDS);
+        }
+        synchronized (lock) {
+            for (Segment segment : segments) {
+                segment.buffer.force();
+                segment.channel.close();
+            }
+            cursor.close();
+            deadLetters.close();
+        }
+    }
+
+    private void flush() {
+        while (running) {
+            try {
+                Thread.sleep(config.getOutboxFsyncInterval());
+            } catch (InterruptedException e) {
+                return;
+            }
+            synchronized (lock) {
+                Segment active = segments.peekLast();
+                if (active != null) {
+                    active.buffer.force();
+                }
+            }
+        }
+    }
+
+    private void replay() {
+        long backoff = 100;
+        long rate = replayRate;
+        try {
+            while (running) {
+                Batch batch;
+                synchronized (lock) {
+                    while (running && pending.get() == 0) {
+                        lock.wait(1000);
+                    }
+                    if (!running) {
+                        return;
+                    }
+                    batch = nextBatch(REPLAY_BATCH);
+                    if (batch == null) {
+                        lock.wait(100);
+                        continue;
+                    }
+                }
+                long started = System.nanoTime();
+                Throwable failure;
+                try {
+                    List<Future<RecordMetadata>> sent = new ArrayList<>(batch.entries.size());
+                    for (Entry entry : batch.entries) {
+                        sent.add(send(producer(entry.record.topic(), null), entry.record));
+                    }
+                    failure = settle(batch, sent);
+                } catch (KafkaException e) {
+                    // the producer could not be created or was interrupted
+                    failure = e;
+                }
+                if (failure == null) {
+                    backoff = 100;
+                    // stay under the current rate, which doubles with every acknowledged batch up to outboxReplayMaxRate
+                    long minimum = TimeUnit.SECONDS.toNanos(batch.entries.size()) / rate;
+                    rate = Math.min(rate * 2, replayMaxRate);
+                    long elapsed = System.nanoTime() - started;
+                    if (elapsed < minimum) {
+                        TimeUnit.NANOSECONDS.sleep(minimum - elapsed);
+                    }
+                } else {
+                    log.warn("Outbox replay failed, retrying in {} ms", backoff, failure);
+                    rate = replayRate;
+                    Thread.sleep(backoff);
+                    backoff = Math.min(backoff * 2, 30000);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            log.error("Outbox replay stopped", e);
+        }
+    }
+
+    private static Future<RecordMetadata> send(KafkaProducer<byte[], byte[]> producer, ProducerRecord<byte[], byte[]> record) {
+        try {
+            return producer.send(record);
+        } catch (InterruptException e) {
+            throw e;
+        } catch (KafkaException e) {
+            // serialization and similar errors are thrown instead of failing the future, settle them alike
+            CompletableFuture<RecordMetadata> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+
+    /*
+     * Waits for the batch's sends in order. A record Kafka refused with a non-retriable error
+     * (record too large, invalid topic, authorization) would be refused on every retry, it goes
+     * to the dead letter file instead and replay moves on. The first retriable error stops there:
+     * the records before it are acknowledged, it is returned and the rest is sent again.
+     */
+    Throwable settle(Batch batch, List<Future<RecordMetadata>> sent) throws IOException, InterruptedException {
+        List<Object> outcomes = new ArrayList<>(sent.size());
+        Throwable retry = null;
+        for (int i = 0; i < sent.size() && retry == null; i++) {
+            try {
+                outcomes.add(sent.get(i).get());
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause() == null ? e : e.getCause();
+                if (cause instanceof RetriableException) {
+                    retry = cause;
+                } else {
+                    deadLetter(batch.entries.get(i), cause);
+                    outcomes.add(cause);
+                }
+            }
+        }
+        if (!outcomes.isEmpty()) {
+            acknowledge(batch, outcomes.size());
+        }
+        ReplayListener current = listener;
+        for (int i = 0; current != null && i < outcomes.size(); i++) {
+            Entry entry = batch.entries.get(i);
+            Object outcome = outcomes.get(i);
+            try {
+                if (outcome instanceof Throwable) {
+                    current.failed(entry.record, entry.context, (Throwable) outcome);
+                } else {
+                    current.replayed(entry.record, entry.context, (RecordMetadata) outcome);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Outbox replay listener failed for a record of {}", entry.record.topic(), e);
+            }
+        }
+        return retry;
+    }
+
+    private void deadLetter(Entry entry, Throwable cause) throws IOException {
+        log.error("Kafka refused an outbox record for {}, moving it to {}", entry.record.topic(), DEAD_LETTERS, cause);
+        Map<String, String> context = new LinkedHashMap<>(entry.context);
+        context.put("error", String.valueOf(cause));
+        ByteBuffer record = encode(entry.record.topic(), entry.record.key(), entry.record.value(), context);
+        synchronized (lock) {
+            while (record.hasRemaining()) {
+                deadLetters.write(record);
+            }
+            if (fsync != FsyncPolicy.NEVER) {
+                deadLetters.force(false);
+            }
+        }
+        deadLettered.incrementAndGet();
+    }
+
+    /*
+     * Up to max records from the replay position, or null when nothing complete is there yet.
+     * Fully replayed segments met on the way are deleted.
+     */
+    Batch nextBatch(int max) throws IOException {
+        synchronized (lock) {
+            while (!segments.isEmpty()) {
+                Segment segment = segments.peekFirst();
+                List<Entry> entries = new ArrayList<>();
+                segment.read(cursorPosition, max, entries);
+                if (!entries.isEmpty()) {
+                    return new Batch(entries);
+                }
+                if (!segment.sealed) {
+                    return null;
+                }
+                segments.pollFirst();
+                delete(segment);
+                cursorBase = segments.isEmpty() ? nextBase : segments.peekFirst().base;
+                cursorPosition = 0;
+                saveCursor();
+            }
+            return null;
+        }
+    }
+
+    /*
+     * Moves the replay position past a batch Kafka acknowledged
+     */
+    void acknowledge(Batch batch) throws IOException {
+        acknowledge(batch, batch.entries.size());
+    }
+
+    // the first count records of the batch only
+    private void acknowledge(Batch batch, int count) throws IOException {
+        synchronized (lock) {
+            cursorPosition = batch.entries.get(count - 1).end;
+            saveCursor();
+        }
+        pending.addAndGet(-count);
+        replayed.addAndGet(count);
+    }
+
+    private void saveCursor() throws IOException {
+        ByteBuffer saved = ByteBuffer.allocate(12);
+        saved.putLong(cursorBase).putInt(cursorPosition).flip();
+        cursor.write(saved, 0);
+        if (fsync == FsyncPolicy.ALWAYS) {
+            cursor.force(false);
+        }
+    }
+
+    private static void delete(Segment segment) throws IOException {
+        segment.channel.close();
+        if (!segment.file.delete()) {
+            log.warn("Unable to delete replayed outbox segment {}", segment.file);
+        }
+    }
+
+    private static String segmentName(long base) {
+        return SEGMENT_PREFIX + String.format("%020d", base) + SEGMENT_SUFFIX;
+    }
+
+    public long getPendingCount() {
+        return pending.get();
+    }
+
+    public long getReplayedCount() {
+        return replayed.get();
+    }
+
+    public long getDeadLetteredCount() {
+        return deadLettered.get();
+    }
+
+    public long getRefusedCount() {
+        return refused.get();
+    }
+
+    public int getSegmentCount() {
+        synchronized (lock) {
+            return segments.size();
+        }
+    }
+
+    static final class Entry {
+        final ProducerRecord<byte[], byte[]> record;
+        final Map<String, String> context;
+        // position right after the record in its segment
+        final int end;
+
+        Entry(ProducerRecord<byte[], byte[]> record, Map<String, String> context, int end) {
+            this.record = record;
+            this.context = context;
+            this.end = end;
+        }
+    }
+
+    static final class Batch {
+        final List<Entry> entries;
+
+        Batch(List<Entry> entries) {
+            this.entries = entries;
+        }
+    }
+
+    private static final class Scan {
+        private final int end;
+        private final long records;
+
+        Scan(int end, long records) {
+            this.end = end;
+            this.records = records;
+        }
+    }
+
+    private static final class Segment {
+        private final long base;
+        private final File file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private volatile int written;
+        private volatile boolean sealed;
+
+        private Segment(long base, File file, FileChannel channel, MappedByteBuffer buffer) {
+            this.base = base;
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+
+        static Segment open(File file, int size) throws IOException {
+            String name = file.getName();
+            long base = Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+            FileChannel channel = new RandomAccessFile(file, "rw").getChannel();
+            return new Segment(base, file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+        }
+
+        // walks complete records from position, stopping at a zero length, a bad CRC or the write position
+        Scan scan(int position, int max) {
+            return read(position, max, null);
+        }
+
+        Scan read(int position, int max, List<Entry> entries) {
+            ByteBuffer view = buffer.duplicate();
+            int limit = written;
+            long count = 0;
+            while (count < max && position + 8 <= limit) {
+                int length = view.getInt(position);
+                if (length <= 0 || position + 4 + length > view.capacity()) {
+                    break;
+                }
+                ByteBuffer checked = buffer.duplicate();
+                checked.position(position + 8).limit(position + 4 + length);
+                CRC32 crc = new CRC32();
+                crc.update(checked);
+                if ((int) crc.getValue() != view.getInt(position + 4)) {
+                    break;
+                }
+                if (entries != null) {
+                    view.position(position + 8);
+                    byte[] topic = new byte[view.getShort()];
+                    view.get(topic);
+                    int keyLength = view.getInt();
+                    byte[] key = null;
+                    if (keyLength >= 0) {
+                        key = new byte[keyLength];
+                        view.get(key);
+                    }
+                    byte[] value = new byte[view.getInt()];
+                    view.get(value);
+                    Map<String, String> context = new LinkedHashMap<>();
+                    // records written before the context was added end right after the value
+                    int contextEntries = view.position() < position + 4 + length ? view.getShort() : 0;
+                    for (int i = 0; i < contextEntries; i++) {
+                        context.put(string(view), string(view));
+                    }
+                    entries.add(new Entry(new ProducerRecord<>(new String(topic, StandardCharsets.UTF_8), key, value), context,
+                        position + 4 + length));
+                }
+                position += 4 + length;
+                count++;
+            }
+            return new Scan(position, count);
+        }
+
+        private static String string(ByteBuffer view) {
+            byte[] bytes = new byte[view.getShort()];
+            view.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+}
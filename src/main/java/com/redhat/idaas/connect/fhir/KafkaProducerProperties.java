@@ -0,0 +1,266 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import org.apache.kafka.clients.producer.ProducerConfig;
+
+/*
+ * Kafka producer tunables bound from idaas.kafka.*
+ *
+ * A named profile (throughput, latency, durable) supplies the starting values, any
+ * setting given explicitly replaces the profile value, and idaas.kafka.topics.<topic>.*
+ * overrides a setting for one topic only. Settings left unset fall back to the
+ * Kafka client defaults.
+ */
+public class KafkaProducerProperties {
+
+    private String profile;
+
+    private Integer lingerMs;
+    private Integer batchSize;
+    private String compressionType;
+    private String acks;
+    private Integer maxInFlight;
+    private Boolean enableIdempotence;
+    private Long bufferMemory;
+    private Integer retries;
+    private Long maxBlockMs;
+    private Integer maxRequestSize;
+
+    private Map<String, KafkaProducerProperties> topics = new HashMap<>();
+
+    /*
+     * Effective settings for a topic: profile, then the idaas.kafka.* values, then the
+     * idaas.kafka.topics.<topic>.* values.
+     */
+    public KafkaProducerProperties resolve(String topic) {
+        KafkaProducerProperties effective = forProfile(profile);
+        effective.merge(this);
+        KafkaProducerProperties override = topics.get(topic);
+        if (override != null) {
+            if (override.profile != null) {
+                effective.merge(forProfile(override.profile));
+            }
+            effective.merge(override);
+        }
+        return effective;
+    }
+
+    /*
+     * Whether topic gets its own producer instead of sharing the default one
+     */
+    public boolean hasOverride(String topic) {
+        return topics.containsKey(topic);
+    }
+
+    /*
+     * Camel kafka endpoint options for these settings, each prefixed with '&'
+     */
+    public String toUriOptions() {
+        StringBuilder options = new StringBuilder();
+        append(options, "lingerMs", lingerMs);
+        append(options, "producerBatchSize", batchSize);
+        append(options, "compressionCodec", compressionType);
+        append(options, "requestRequiredAcks", acks);
+        append(options, "maxInFlightRequest", maxInFlight);
+        append(options, "enableIdempotence", enableIdempotence);
+        append(options, "bufferMemorySize", bufferMemory);
+        append(options, "retries", retries);
+        append(options, "maxBlockMs", maxBlockMs);
+        append(options, "maxRequestSize", maxRequestSize);
+        return options.toString();
+    }
+
+    /*
+     * The same settings as native producer properties, for producers created outside Camel
+     */
+    public Properties toProducerProperties() {
+        Properties properties = new Properties();
+        put(properties, ProducerConfig.LINGER_MS_CONFIG, lingerMs);
+        put(properties, ProducerConfig.BATCH_SIZE_CONFIG, batchSize);
+        put(properties, ProducerConfig.COMPRESSION_TYPE_CONFIG, compressionType);
+        put(properties, ProducerConfig.ACKS_CONFIG, acks);
+        put(properties, ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, maxInFlight);
+        put(properties, ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, enableIdempotence);
+        put(properties, ProducerConfig.BUFFER_MEMORY_CONFIG, bufferMemory);
+        put(properties, ProducerConfig.RETRIES_CONFIG, retries);
+        put(properties, ProducerConfig.MAX_BLOCK_MS_CONFIG, maxBlockMs);
+        put(properties, ProducerConfig.MAX_REQUEST_SIZE_CONFIG, maxRequestSize);
+        return properties;
+    }
+
+    private static void put(Properties properties, String name, Object value) {
+        if (value != null) {
+            properties.put(name, value.toString());
+        }
+    }
+
+    private static void append(StringBuilder options, String name, Object value) {
+        if (value != null) {
+            options.append('&').append(name).append('=').append(value);
+        }
+    }
+
+    private static KafkaProducerProperties forProfile(String profile) {
+        KafkaProducerProperties settings = new KafkaProducerProperties();
+        if (profile == null || profile.trim().isEmpty()) {
+            return settings;
+        }
+        switch (profile.trim().toLowerCase()) {
+            case "throughput":
+                settings.lingerMs = 20;
+                settings.batchSize = 262144;
+                settings.compressionType = "lz4";
+                settings.acks = "1";
+                settings.maxInFlight = 5;
+                break;
+            case "latency":
+                settings.lingerMs = 0;
+                settings.batchSize = 16384;
+                settings.compressionType = "none";
+                settings.acks = "1";
+                settings.maxInFlight = 5;
+                break;
+            case "durable":
+                settings.lingerMs = 5;
+                settings.batchSize = 65536;
+                settings.compressionType = "lz4";
+                settings.acks = "all";
+                settings.maxInFlight = 5;
+                settings.enableIdempotence = true;
+                settings.retries = Integer.MAX_VALUE;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown idaas.kafka profile: " + profile
+                    + " (expected throughput, latency or durable)");
+        }
+        return settings;
+    }
+
+    private void merge(KafkaProducerProperties other) {
+        if (other.lingerMs != null) lingerMs = other.lingerMs;
+        if (other.batchSize != null) batchSize = other.batchSize;
+        if (other.compressionType != null) compressionType = other.compressionType;
+        if (other.acks != null) acks = other.acks;
+        if (other.maxInFlight != null) maxInFlight = other.maxInFlight;
+        if (other.enableIdempotence != null) enableIdempotence = other.enableIdempotence;
+        if (other.bufferMemory != null) bufferMemory = other.bufferMemory;
+        if (other.retries != null) retries = other.retries;
+        if (other.maxBlockMs != null) maxBlockMs = other.maxBlockMs;
+        if (other.maxRequestSize != null) maxRequestSize = other.maxRequestSize;
+    }
+
+    public String getProfile() {
+        return profile;
+    }
+
+    public void setProfile(String profile) {
+        this.profile = profile;
+    }
+
+    public Integer getLingerMs() {
+        return lingerMs;
+    }
+
+    public void setLingerMs(Integer lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(Integer batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public String getCompressionType() {
+        return compressionType;
+    }
+
+    public void setCompressionType(String compressionType) {
+        this.compressionType = compressionType;
+    }
+
+    public String getAcks() {
+        return acks;
+    }
+
+    public void setAcks(String acks) {
+        this.acks = acks;
+    }
+
+    public Integer getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(Integer maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public Boolean getEnableIdempotence() {
+        return enableIdempotence;
+    }
+
+    public void setEnableIdempotence(Boolean enableIdempotence) {
+        this.enableIdempotence = enableIdempotence;
+    }
+
+    public Long getBufferMemory() {
+        return bufferMemory;
+    }
+
+    public void setBufferMemory(Long bufferMemory) {
+        this.bufferMemory = bufferMemory;
+    }
+
+    public Integer getRetries() {
+        return retries;
+    }
+
+    public void setRetries(Integer retries) {
+        this.retries = retries;
+    }
+
+    public Long getMaxBlockMs() {
+        return maxBlockMs;
+    }
+
+    public void setMaxBlockMs(Long maxBlockMs) {
+        this.maxBlockMs = maxBlockMs;
+    }
+
+    public Integer getMaxRequestSize() {
+        return maxRequestSize;
+    }
+
+    public void setMaxRequestSize(Integer maxRequestSize) {
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    public Map<String, KafkaProducerProperties> getTopics() {
+        return topics;
+    }
+
+    public void setTopics(Map<String, KafkaProducerProperties> topics) {
+        this.topics = topics;
+    }
+}
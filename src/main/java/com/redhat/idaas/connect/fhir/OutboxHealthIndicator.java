@@ -0,0 +1,46 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/*
+ * Publishes the outbox backlog through the actuator health endpoint. Reports OUT_OF_SERVICE
+ * once the outbox refused records for lack of space, a backlog alone is still UP.
+ */
+@Component
+public class OutboxHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private KafkaOutbox kafkaOutbox;
+
+    @Override
+    public Health health() {
+        Health.Builder builder = kafkaOutbox.getRefusedCount() > 0 ? Health.outOfService() : Health.up();
+        return builder
+            .withDetail("enabled", kafkaOutbox.isEnabled())
+            .withDetail("pending", kafkaOutbox.getPendingCount())
+            .withDetail("replayed", kafkaOutbox.getReplayedCount())
+            .withDetail("refused", kafkaOutbox.getRefusedCount())
+            .withDetail("deadLettered", kafkaOutbox.getDeadLetteredCount())
+            .withDetail("segments", kafkaOutbox.getSegmentCount())
+            .build();
+    }
+}
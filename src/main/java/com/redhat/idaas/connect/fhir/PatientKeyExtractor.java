@@ -0,0 +1,294 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/*
+ * Pulls the Kafka message key for a FHIR resource straight out of its JSON, without
+ * building a parse tree. Only the top level of the resource is walked and scanning
+ * stops as soon as the key is known, so most resources are scanned only up to their
+ * subject/patient element.
+ *
+ *   PATIENT     - the patient id: the resource id for a Patient, otherwise the
+ *                 patient, subject or beneficiary reference ("Patient/123" -> "123")
+ *   RESOURCE_ID - the resource's own id
+ *   NONE        - no key
+ */
+public final class PatientKeyExtractor {
+
+    public enum KeyStrategy { NONE, PATIENT, RESOURCE_ID }
+
+    private static final String[] PATIENT_REFERENCES = { "patient", "subject", "beneficiary" };
+
+    private PatientKeyExtractor() {
+    }
+
+    public static String extract(Object body, KeyStrategy strategy) {
+        if (strategy == KeyStrategy.NONE || body == null) {
+            return null;
+        }
+        CharSequence json;
+        if (body instanceof byte[]) {
+            json = new Utf8Sequence(ByteBuffer.wrap((byte[]) body));
+        } else if (body instanceof SpooledBody) {
+            json = new Utf8Sequence(((SpooledBody) body).buffer());
+        } else {
+            json = body.toString();
+        }
+        return new Scanner(json, strategy).scan();
+    }
+
+    private static String patientId(String reference) {
+        if (reference == null) {
+            return null;
+        }
+        int history = reference.indexOf("/_history/");
+        if (history > 0) {
+            reference = reference.substring(0, history);
+        }
+        int patient = reference.lastIndexOf("Patient/");
+        return patient >= 0 ? reference.substring(patient + "Patient/".length()) : reference;
+    }
+
+    private static final class Scanner {
+        private final CharSequence json;
+        private final KeyStrategy strategy;
+        private int pos;
+
+        private String resourceType;
+        private String id;
+        private final String[] references = new String[PATIENT_REFERENCES.length];
+
+        Scanner(CharSequence json, KeyStrategy strategy) {
+            this.json = json;
+            this.strategy = strategy;
+        }
+
+        String scan() {
+            skipWhitespace();
+            if (pos >= json.length() || json.charAt(pos) != '{') {
+                return null;
+            }
+            pos++;
+            while (pos < json.length()) {
+                skipWhitespace();
+                if (pos >= json.length() || json.charAt(pos) == '}') {
+                    break;
+                }
+                if (json.charAt(pos) == ',') {
+                    pos++;
+                    continue;
+                }
+                String name = readString();
+                skipWhitespace();
+                if (name == null || pos >= json.length() || json.charAt(pos) != ':') {
+                    return null;
+                }
+                pos++;
+                skipWhitespace();
+                field(name);
+                String key = key(false);
+                if (key != null) {
+                    return key;
+                }
+            }
+            return key(true);
+        }
+
+        private void field(String name) {
+            if ("resourceType".equals(name)) {
+                resourceType = readStringValue();
+            } else if ("id".equals(name)) {
+                id = readStringValue();
+            } else {
+                for (int i = 0; i < PATIENT_REFERENCES.length; i++) {
+                    if (PATIENT_REFERENCES[i].equals(name)) {
+                        references[i] = readReference();
+                        return;
+                    }
+                }
+                skipValue();
+            }
+        }
+
+        /*
+         * The key once it is certain; at the end of the resource the best candidate is returned.
+         */
+        private String key(boolean complete) {
+            if (strategy == KeyStrategy.RESOURCE_ID) {
+                return id;
+            }
+            if ("Patient".equals(resourceType)) {
+                return id;
+            }
+            if (references[0] != null || (complete || resourceType != null) && firstReference() != null) {
+                return patientId(firstReference());
+            }
+            return null;
+        }
+
+        private String firstReference() {
+            for (String reference : references) {
+                if (reference != null) {
+                    return reference;
+                }
+            }
+            return null;
+        }
+
+        private String readStringValue() {
+            if (pos < json.length() && json.charAt(pos) == '"') {
+                return readString();
+            }
+            skipValue();
+            return null;
+        }
+
+        // {"reference": "Patient/123", ...} -> Patient/123
+        private String readReference() {
+            if (pos >= json.length() || json.charAt(pos) != '{') {
+                skipValue();
+                return null;
+            }
+            pos++;
+            String reference = null;
+            while (pos < json.length()) {
+                skipWhitespace();
+                if (pos >= json.length()) {
+                    break;
+                }
+                char c = json.charAt(pos);
+                if (c == '}') {
+                    pos++;
+                    break;
+                }
+                if (c == ',') {
+                    pos++;
+                    continue;
+                }
+                String name = readString();
+                skipWhitespace();
+                if (name == null || pos >= json.length() || json.charAt(pos) != ':') {
+                    return reference;
+                }
+                pos++;
+                skipWhitespace();
+                if ("reference".equals(name)) {
+                    reference = readStringValue();
+                } else {
+                    skipValue();
+                }
+            }
+            return reference;
+        }
+
+        private String readString() {
+            if (pos >= json.length() || json.charAt(pos) != '"') {
+                return null;
+            }
+            int start = ++pos;
+            boolean escaped = false;
+            while (pos < json.length()) {
+                char c = json.charAt(pos);
+                if (c == '\\') {
+                    escaped = true;
+                    // a truncated body may end right after the backslash
+                    pos = Math.min(pos + 2, json.length());
+                    continue;
+                }
+                if (c == '"') {
+                    String value = json.subSequence(start, pos).toString();
+                    pos++;
+                    return escaped ? value.replace("\\/", "/").replace("\\\"", "\"") : value;
+                }
+                pos++;
+            }
+            return null;
+        }
+
+        private void skipValue() {
+            int depth = 0;
+            while (pos < json.length()) {
+                char c = json.charAt(pos);
+                if (c == '"') {
+                    readString();
+                    if (depth == 0) {
+                        return;
+                    }
+                    continue;
+                }
+                if (c == '{' || c == '[') {
+                    depth++;
+                } else if (c == '}' || c == ']') {
+                    if (depth == 0) {
+                        return;
+                    }
+                    depth--;
+                    if (depth == 0) {
+                        pos++;
+                        return;
+                    }
+                } else if (c == ',' && depth == 0) {
+                    return;
+                }
+                pos++;
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < json.length() && Character.isWhitespace(json.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+
+    /*
+     * Read only view of UTF-8 bytes, on the heap or memory mapped. JSON structure is ASCII, so
+     * bytes can be walked as chars; only the extracted values are decoded.
+     */
+    private static final class Utf8Sequence implements CharSequence {
+        private final ByteBuffer bytes;
+
+        Utf8Sequence(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public int length() {
+            return bytes.limit();
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(index) & 0xff);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            ByteBuffer slice = bytes.duplicate();
+            slice.position(start).limit(end);
+            return StandardCharsets.UTF_8.decode(slice).toString();
+        }
+
+        @Override
+        public String toString() {
+            return StandardCharsets.UTF_8.decode(bytes.duplicate()).toString();
+        }
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.Map;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Processor;
+import org.apache.camel.component.kafka.KafkaConstants;
+
+import com.redhat.idaas.connect.fhir.PatientKeyExtractor.KeyStrategy;
+
+/*
+ * Sets the Kafka message key for the resource resolved by FhirResourceProcessor, using
+ * the key strategy configured for that resource. Records without a key are left unkeyed.
+ */
+public class PatientKeyProcessor implements Processor {
+
+    private final Map<FhirResource, KeyStrategy> strategies;
+
+    public PatientKeyProcessor(Map<FhirResource, KeyStrategy> strategies) {
+        this.strategies = strategies;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        FhirResource resource = exchange.getProperty(FhirResourceProcessor.RESOURCE_PROPERTY, FhirResource.class);
+        KeyStrategy strategy = resource == null ? KeyStrategy.NONE : strategies.get(resource);
+        String key = PatientKeyExtractor.extract(exchange.getIn().getBody(), strategy);
+        if (key != null) {
+            exchange.getIn().setHeader(KafkaConstants.KEY, key);
+        }
+    }
+}
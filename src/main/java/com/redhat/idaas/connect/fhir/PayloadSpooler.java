@@ -0,0 +1,56 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+
+/*
+ * Converts the request body once, to the String or byte[] the producers expect. A body larger
+ * than the threshold is spooled to disk instead (see SpooledBody), so large Binary carrying
+ * resources such as DocumentReference or Media are not copied onto the heap by the ingress.
+ */
+public class PayloadSpooler implements Processor {
+
+    private final Class<?> bodyType;
+    private final int threshold;
+    private final File directory;
+
+    public PayloadSpooler(Class<?> bodyType, int threshold, File directory) {
+        this.bodyType = bodyType;
+        this.threshold = threshold;
+        this.directory = directory;
+    }
+
+    @Override
+    public void process(Exchange exchange) throws Exception {
+        Message in = exchange.getIn();
+        Object body = in.getBody();
+        Long length = in.getHeader(Exchange.CONTENT_LENGTH, Long.class);
+        if (threshold <= 0 || !(body instanceof InputStream) || (length != null && length >= 0 && length <= threshold)) {
+            in.setBody(in.getBody(bodyType));
+            return;
+        }
+        try (InputStream stream = (InputStream) body) {
+            in.setBody(SpooledBody.read(stream, threshold, bodyType, directory));
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+ * One priority lane bound from idaas.lanes.<name>.*
+ *
+ * A lane serves the resources listed by path or resourceType and every resource of the
+ * listed categories (clinical, financial, evidence, quality), with at most maxInFlight
+ * publishes at once and its own Kafka producer.
+ */
+public class PriorityLaneProperties {
+
+    private int maxInFlight = 8;
+    private List<String> resources = new ArrayList<>();
+    private List<String> categories = new ArrayList<>();
+
+    public PriorityLaneProperties() {
+    }
+
+    PriorityLaneProperties(int maxInFlight, String category) {
+        this.maxInFlight = maxInFlight;
+        this.categories.add(category);
+    }
+
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    public void setMaxInFlight(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+    }
+
+    public List<String> getResources() {
+        return resources;
+    }
+
+    public void setResources(List<String> resources) {
+        this.resources = resources;
+    }
+
+    public List<String> getCategories() {
+        return categories;
+    }
+
+    public void setCategories(List<String> categories) {
+        this.categories = categories;
+    }
+}
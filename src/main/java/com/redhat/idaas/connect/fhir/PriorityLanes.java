@@ -0,0 +1,146 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+
+import org.apache.camel.Processor;
+
+/*
+ * Assigns every FhirResource to a priority lane. An explicitly listed resource wins over a
+ * category; resources no lane claims go to the "default" lane, which always exists.
+ *
+ * Without any idaas.lanes.* configuration there are three lanes: clinical (16 in flight),
+ * financial (4 in flight) and default (8 in flight).
+ *
+ * A lane is a bulkhead, not a queue: the exchange is published on the thread it arrived on,
+ * holding one of the lane's maxInFlight permits until leave() runs after the publish, not at
+ * the end of the exchange, so Bundle entries and import lines (split exchanges, whose
+ * completions Camel may hand over to the whole request) give their permit back one by one.
+ *
+ * With the outbox every lane also has Kafka producers of its own (KafkaOutbox keys them by
+ * LANE_PROPERTY), so a burst of claims cannot fill the buffer.memory clinical resources are
+ * sent through. Transactional publishing has a single producer and cannot be combined with
+ * lanes, CamelConfiguration refuses to start with both. A request finding its lane
+ * full is rejected with LaneFullException straight away, so a burst of claims can hold at most
+ * the financial lane's permits worth of servlet threads and never waits for, or takes, the
+ * capacity clinical resources are published with. Asynchronous ingest takes its permit the
+ * same way, only for the append to the outbox.
+ */
+public class PriorityLanes {
+
+    public static final String LANE_PROPERTY = "fhirlane";
+    public static final String DEFAULT_LANE = "default";
+
+    // set while the exchange holds its lane's permit
+    private static final String HELD_PROPERTY = "fhirlaneheld";
+
+    private final Map<String, PriorityLaneProperties> lanes = new LinkedHashMap<>();
+    private final Map<FhirResource, String> laneOf = new EnumMap<>(FhirResource.class);
+    private final Map<String, Semaphore> permits = new LinkedHashMap<>();
+
+    public PriorityLanes(Map<String, PriorityLaneProperties> configured) {
+        if (configured.isEmpty()) {
+            lanes.put("clinical", new PriorityLaneProperties(16, "clinical"));
+            lanes.put("financial", new PriorityLaneProperties(4, "financial"));
+        } else {
+            lanes.putAll(configured);
+        }
+        lanes.putIfAbsent(DEFAULT_LANE, new PriorityLaneProperties());
+        for (Map.Entry<String, PriorityLaneProperties> lane : lanes.entrySet()) {
+            permits.put(lane.getKey(), new Semaphore(lane.getValue().getMaxInFlight()));
+        }
+
+        for (Map.Entry<String, PriorityLaneProperties> lane : lanes.entrySet()) {
+            for (String category : lane.getValue().getCategories()) {
+                FhirResource.Category wanted = FhirResource.Category.valueOf(category.trim().toUpperCase());
+                for (FhirResource resource : FhirResource.values()) {
+                    if (resource.getCategory() == wanted) {
+                        laneOf.putIfAbsent(resource, lane.getKey());
+                    }
+                }
+            }
+        }
+        for (Map.Entry<String, PriorityLaneProperties> lane : lanes.entrySet()) {
+            for (String name : lane.getValue().getResources()) {
+                FhirResource resource = FhirResource.fromPath(name);
+                if (resource == null) {
+                    resource = FhirResource.fromResourceType(name.trim());
+                }
+                if (resource == null) {
+                    throw new IllegalArgumentException("Unknown FHIR resource in idaas.lanes." + lane.getKey() + ": " + name);
+                }
+                laneOf.put(resource, lane.getKey());
+            }
+        }
+        for (FhirResource resource : FhirResource.values()) {
+            laneOf.putIfAbsent(resource, DEFAULT_LANE);
+        }
+    }
+
+    public Map<String, PriorityLaneProperties> getLanes() {
+        return lanes;
+    }
+
+    public String laneOf(FhirResource resource) {
+        return laneOf.get(resource);
+    }
+
+    // permits of the lane currently in use
+    public int getInFlight(String lane) {
+        return lanes.get(lane).getMaxInFlight() - permits.get(lane).availablePermits();
+    }
+
+    /*
+     * Takes a permit of the exchange's lane or fails with LaneFullException, never waits
+     */
+    public Processor enter() {
+        return exchange -> {
+            String lane = laneOf(exchange.getProperty(FhirResourceProcessor.RESOURCE_PROPERTY, FhirResource.class));
+            if (!permits.get(lane).tryAcquire()) {
+                throw new LaneFullException(lane);
+            }
+            exchange.setProperty(LANE_PROPERTY, lane);
+            exchange.setProperty(HELD_PROPERTY, Boolean.TRUE);
+        };
+    }
+
+    /*
+     * Gives the permit enter() took back, once; run it in a doFinally after the publish
+     */
+    public Processor leave() {
+        return exchange -> {
+            if (exchange.removeProperty(HELD_PROPERTY) != null) {
+                permits.get(exchange.getProperty(LANE_PROPERTY, String.class)).release();
+            }
+        };
+    }
+
+    /*
+     * The exchange's lane has no permit left; answered with 503
+     */
+    public static class LaneFullException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public LaneFullException(String lane) {
+            super("Priority lane " + lane + " is full");
+        }
+    }
+}
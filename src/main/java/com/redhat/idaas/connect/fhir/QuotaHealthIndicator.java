@@ -0,0 +1,42 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/*
+ * Publishes the quota counters through the actuator health endpoint. Always reports UP,
+ * throttling a client is the quotas working, not the connector failing.
+ */
+@Component
+public class QuotaHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private QuotaManager quotaManager;
+
+    @Override
+    public Health health() {
+        return Health.up()
+            .withDetail("allowed", quotaManager.getAllowedCount())
+            .withDetail("throttled", quotaManager.getThrottledCount())
+            .withDetail("buckets", quotaManager.getBucketCount())
+            .build();
+    }
+}
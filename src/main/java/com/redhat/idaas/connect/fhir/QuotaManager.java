@@ -0,0 +1,234 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Token bucket quotas per client and per client/resource pair.
+ *
+ * The client is identified by its remote address. idaas.quotaClientHeader names a request header
+ * to use instead, only for deployments where a trusted gateway sets it: clients could otherwise
+ * dodge their quota by sending a new value with every request. Each client gets one bucket over
+ * all its requests (idaas.quotaClientRate) and one per resource it posts to (idaas.quotaRate and
+ * idaas.quotaBurst, overridden per path or resourceType by idaas.quotaRates and
+ * idaas.quotaBursts). Rates are requests per second, burst is the bucket size; 0 means no limit.
+ *
+ * A bucket is a single AtomicLong holding the time it will be full again (GCRA), so a check
+ * is one CAS. Over quota requests get a 429 with Retry-After and the route is stopped. Once
+ * there are MAX_BUCKETS buckets, idle ones are swept at most once per second, not per new key.
+ */
+@Component
+public class QuotaManager {
+
+    private static final String CLIENT_ONLY = "*";
+    private static final int MAX_BUCKETS = 100000;
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final String clientHeader;
+    private final Limit clientLimit;
+    private final Limit defaultLimit;
+    private final Map<String, Limit> resourceLimits = new HashMap<>();
+    private final Map<String, Bucket> buckets = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong(System.nanoTime());
+
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+
+    @Autowired
+    public QuotaManager(ConfigProperties config) {
+        this.enabled = config.isQuotaEnabled();
+        this.clientHeader = config.getQuotaClientHeader();
+        this.clientLimit = Limit.of(config.getQuotaClientRate(), config.getQuotaClientBurst());
+        this.defaultLimit = Limit.of(config.getQuotaRate(), config.getQuotaBurst());
+        Map<String, Double> rates = new HashMap<>();
+        Map<String, Integer> bursts = new HashMap<>();
+        config.getQuotaRates().forEach((name, rate) -> rates.put(target(name), rate));
+        config.getQuotaBursts().forEach((name, burst) -> bursts.put(target(name), burst));
+        Map<String, Object> targets = new HashMap<>(rates);
+        targets.putAll(bursts);
+        for (String target : targets.keySet()) {
+            resourceLimits.put(target, Limit.of(rates.getOrDefault(target, config.getQuotaRate()),
+                bursts.getOrDefault(target, config.getQuotaBurst())));
+        }
+    }
+
+    // idaas.quotaRates/quotaBursts keys are paths or resourceTypes, buckets are keyed by path
+    private static String target(String name) {
+        FhirResource resource = FhirResource.fromPath(name);
+        if (resource == null) {
+            resource = FhirResource.fromResourceType(name);
+        }
+        return resource != null ? resource.getPath() : name;
+    }
+
+    public Processor enforce() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                if (!enabled) {
+                    return;
+                }
+                Message in = exchange.getIn();
+                String path = in.getHeader(Exchange.HTTP_PATH, String.class);
+                FhirResource resource = FhirResource.fromPath(path);
+                String target = resource != null ? resource.getPath() : FhirResource.firstSegment(path);
+                String client = clientId(in);
+
+                long now = System.nanoTime();
+                long wait = acquire(client + '|' + CLIENT_ONLY, clientLimit, now);
+                if (wait == 0) {
+                    Limit limit = resourceLimits.getOrDefault(target, defaultLimit);
+                    wait = acquire(client + '|' + target, limit, now);
+                    if (wait > 0) {
+                        // the request is refused, give the client token back
+                        release(client + '|' + CLIENT_ONLY, clientLimit);
+                    }
+                }
+                if (wait == 0) {
+                    allowed.increment();
+                    return;
+                }
+                throttled.increment();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 429);
+                in.setHeader("Retry-After", Math.max(1, TimeUnit.NANOSECONDS.toSeconds(wait + 999999999L)));
+                in.setHeader(Exchange.CONTENT_TYPE, "text/plain");
+                in.setBody("Quota exceeded for " + target);
+                exchange.setProperty(Exchange.ROUTE_STOP, Boolean.TRUE);
+            }
+        };
+    }
+
+    public long getAllowedCount() {
+        return allowed.sum();
+    }
+
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    // 0 when a token was taken, otherwise the nanoseconds until one is available
+    private long acquire(String key, Limit limit, long now) {
+        if (limit == null) {
+            return 0;
+        }
+        Bucket bucket = buckets.get(key);
+        if (bucket == null) {
+            long sweep = nextSweep.get();
+            if (buckets.size() >= MAX_BUCKETS && now - sweep >= 0 && nextSweep.compareAndSet(sweep, now + SWEEP_INTERVAL)) {
+                evictIdle(now);
+            }
+            bucket = buckets.computeIfAbsent(key, k -> new Bucket(now));
+        }
+        return bucket.acquire(limit, now);
+    }
+
+    private void release(String key, Limit limit) {
+        Bucket bucket = limit == null ? null : buckets.get(key);
+        if (bucket != null) {
+            bucket.full.addAndGet(-limit.interval);
+        }
+    }
+
+    // a bucket that has been full for a while holds no state worth keeping
+    private void evictIdle(long now) {
+        Iterator<Bucket> iterator = buckets.values().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().full.get() < now) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private String clientId(Message in) {
+        String client = clientHeader == null ? null : in.getHeader(clientHeader, String.class);
+        if (client != null && !client.isEmpty()) {
+            return client;
+        }
+        HttpServletRequest request = in.getHeader(Exchange.HTTP_SERVLET_REQUEST, HttpServletRequest.class);
+        if (request != null) {
+            return request.getRemoteAddr();
+        }
+        SocketAddress address = in.getHeader("CamelNettyRemoteAddress", SocketAddress.class);
+        if (address instanceof InetSocketAddress) {
+            return ((InetSocketAddress) address).getAddress().getHostAddress();
+        }
+        return "unknown";
+    }
+
+    private static final class Limit {
+        // nanoseconds per token and the time a full bucket covers
+        private final long interval;
+        private final long capacity;
+
+        private Limit(long interval, long capacity) {
+            this.interval = interval;
+            this.capacity = capacity;
+        }
+
+        static Limit of(double rate, int burst) {
+            if (rate <= 0) {
+                return null;
+            }
+            long interval = Math.max(1L, (long) (TimeUnit.SECONDS.toNanos(1) / rate));
+            return new Limit(interval, interval * Math.max(1, burst));
+        }
+    }
+
+    private static final class Bucket {
+        private final AtomicLong full;
+
+        Bucket(long now) {
+            this.full = new AtomicLong(now);
+        }
+
+        long acquire(Limit limit, long now) {
+            while (true) {
+                long current = full.get();
+                long start = Math.max(current, now);
+                long next = start + limit.interval;
+                long excess = next - now - limit.capacity;
+                if (excess > 0) {
+                    return excess;
+                }
+                if (full.compareAndSet(current, next)) {
+                    return 0;
+                }
+            }
+        }
+    }
+}
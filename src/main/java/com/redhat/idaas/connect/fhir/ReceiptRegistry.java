@@ -0,0 +1,278 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Lifecycle of requests taken in by the asynchronous (202 Accepted) ingest mode.
+ *
+ * The record is durable once 202 is answered, it sits in the KafkaOutbox; the receipt is
+ * not, receipts of records replayed after a restart stay UNKNOWN. The outbox reports back
+ * through outboxListener(): SENT once Kafka acknowledged the record, FAILED once Kafka
+ * refused it for good and it went to the outbox's dead letter file.
+ *
+ * Receipts live in a fixed size ring buffer (idaas.receiptBufferSize): the receipt id
+ * carries its sequence number, which is also its slot, so lookups and updates are
+ * lock free and old receipts are simply overwritten once the buffer wraps.
+ */
+@Component
+public class ReceiptRegistry {
+
+    public static final String RECEIPT_PROPERTY = "receiptid";
+
+    // the Receipt itself, the ring buffer may have wrapped past it by the time the response is written
+    private static final String RECEIPT_OBJECT_PROPERTY = "receipt";
+
+    public enum State { ACCEPTED, SENT, FAILED }
+
+    private final String instance = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicReferenceArray<Receipt> receipts;
+
+    @Autowired
+    public ReceiptRegistry(ConfigProperties config) {
+        this.receipts = new AtomicReferenceArray<>(config.getReceiptBufferSize());
+    }
+
+    public Receipt accept(String resourceType) {
+        long seq = sequence.incrementAndGet();
+        Receipt receipt = new Receipt(instance + "-" + seq, seq, resourceType);
+        receipts.set(slot(seq), receipt);
+        return receipt;
+    }
+
+    public Receipt find(String id) {
+        if (id == null) {
+            return null;
+        }
+        int dash = id.lastIndexOf('-');
+        if (dash < 0 || !id.startsWith(instance)) {
+            return null;
+        }
+        long seq;
+        try {
+            seq = Long.parseLong(id.substring(dash + 1));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (seq <= 0) {
+            return null;
+        }
+        Receipt receipt = receipts.get(slot(seq));
+        return receipt != null && receipt.sequence == seq ? receipt : null;
+    }
+
+    private int slot(long seq) {
+        return (int) (seq % receipts.length());
+    }
+
+    /*
+     * Issues a receipt for the exchange before its record is appended to the outbox
+     */
+    public Processor accepted() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                FhirResource resource = exchange.getProperty(FhirResourceProcessor.RESOURCE_PROPERTY, FhirResource.class);
+                Receipt receipt = accept(resource.getResourceType());
+                exchange.setProperty(RECEIPT_PROPERTY, receipt.getId());
+                exchange.setProperty(RECEIPT_OBJECT_PROPERTY, receipt);
+            }
+        };
+    }
+
+    /*
+     * Turns the response into 202 Accepted pointing at the receipt
+     */
+    public Processor acceptedResponse() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Receipt receipt = exchange.getProperty(RECEIPT_OBJECT_PROPERTY, Receipt.class);
+                Message out = exchange.getIn();
+                out.setHeader(Exchange.HTTP_RESPONSE_CODE, 202);
+                out.setHeader(Exchange.CONTENT_TYPE, "application/json");
+                out.setHeader("Location", "/camel/receipts/" + receipt.getId());
+                out.setBody(receipt.toJson());
+            }
+        };
+    }
+
+    /*
+     * Marks a receipt sent once the outbox replayed its record; unknown after a restart or
+     * once the ring buffer wrapped, then there is nothing to update
+     */
+    public void sent(String id, RecordMetadata metadata) {
+        Receipt receipt = find(id);
+        if (receipt != null) {
+            receipt.sent(metadata.topic(), metadata.partition(), metadata.offset());
+        }
+    }
+
+    /*
+     * Marks a receipt failed once the outbox gave up on its record
+     */
+    public void failed(String id, Throwable cause) {
+        Receipt receipt = find(id);
+        if (receipt != null) {
+            receipt.failed(cause == null ? "unknown error" : cause.getMessage());
+        }
+    }
+
+    /*
+     * Keeps the receipts of replayed records up to date, see KafkaOutbox.setReplayListener
+     */
+    public KafkaOutbox.ReplayListener outboxListener() {
+        return new KafkaOutbox.ReplayListener() {
+            @Override
+            public void replayed(ProducerRecord<byte[], byte[]> record, Map<String, String> context, RecordMetadata metadata) {
+                sent(context.get(RECEIPT_PROPERTY), metadata);
+            }
+
+            @Override
+            public void failed(ProducerRecord<byte[], byte[]> record, Map<String, String> context, Throwable cause) {
+                ReceiptRegistry.this.failed(context.get(RECEIPT_PROPERTY), cause);
+            }
+        };
+    }
+
+    public Processor failed() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Receipt receipt = exchange.getProperty(RECEIPT_OBJECT_PROPERTY, Receipt.class);
+                Exception cause = exchange.getProperty(Exchange.EXCEPTION_CAUGHT, Exception.class);
+                if (receipt != null) {
+                    receipt.failed(cause == null ? "unknown error" : cause.getMessage());
+                }
+            }
+        };
+    }
+
+    /*
+     * GET /camel/receipts/{id}
+     */
+    public Processor lookup() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                Message in = exchange.getIn();
+                String path = in.getHeader(Exchange.HTTP_PATH, String.class);
+                String id = path == null ? null : path.substring(path.lastIndexOf('/') + 1);
+                Receipt receipt = find(id);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/json");
+                if (receipt == null) {
+                    in.setHeader(Exchange.HTTP_RESPONSE_CODE, 404);
+                    in.setBody("{\"receipt\":\"" + Receipt.escape(id) + "\",\"state\":\"UNKNOWN\"}");
+                } else {
+                    in.setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+                    in.setBody(receipt.toJson());
+                }
+            }
+        };
+    }
+
+    public static final class Receipt {
+        private final String id;
+        private final long sequence;
+        private final String resourceType;
+        private final long acceptedAt = System.currentTimeMillis();
+
+        private volatile State state = State.ACCEPTED;
+        private volatile long updatedAt = acceptedAt;
+        private volatile String topic;
+        private volatile int partition = -1;
+        private volatile long offset = -1;
+        private volatile String error;
+
+        Receipt(String id, long sequence, String resourceType) {
+            this.id = id;
+            this.sequence = sequence;
+            this.resourceType = resourceType;
+        }
+
+        void sent(String topic, int partition, long offset) {
+            this.topic = topic;
+            this.partition = partition;
+            this.offset = offset;
+            this.updatedAt = System.currentTimeMillis();
+            this.state = State.SENT;
+        }
+
+        void failed(String error) {
+            this.error = error;
+            this.updatedAt = System.currentTimeMillis();
+            this.state = State.FAILED;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        String toJson() {
+            StringBuilder json = new StringBuilder(192);
+            json.append("{\"receipt\":\"").append(id)
+                .append("\",\"resourceType\":\"").append(resourceType)
+                .append("\",\"state\":\"").append(state)
+                .append("\",\"acceptedAt\":").append(acceptedAt)
+                .append(",\"updatedAt\":").append(updatedAt);
+            if (topic != null) {
+                json.append(",\"topic\":\"").append(topic)
+                    .append("\",\"partition\":").append(partition)
+                    .append(",\"offset\":").append(offset);
+            }
+            if (error != null) {
+                json.append(",\"error\":\"").append(escape(error)).append('"');
+            }
+            return json.append('}').toString();
+        }
+
+        static String escape(String value) {
+            if (value == null) {
+                return "";
+            }
+            StringBuilder escaped = new StringBuilder(value.length());
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    escaped.append('\\').append(c);
+                } else if (c < 0x20) {
+                    escaped.append(' ');
+                } else {
+                    escaped.append(c);
+                }
+            }
+            return escaped.toString();
+        }
+    }
+}
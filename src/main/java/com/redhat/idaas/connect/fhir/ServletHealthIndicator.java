@@ -0,0 +1,49 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/*
+ * Publishes the servlet ingress state, including the in-flight gauge, through the
+ * actuator health endpoint. Always reports UP, rejections and timeouts are answered
+ * with 503 per request and are only shown in the details.
+ */
+@Component
+public class ServletHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private AsyncCamelServlet asyncCamelServlet;
+
+    @Override
+    public Health health() {
+        return Health.up()
+            .withDetail("async", asyncCamelServlet.isAsyncEnabled())
+            .withDetail("asyncTimeout", asyncCamelServlet.getAsyncTimeout())
+            .withDetail("inFlight", asyncCamelServlet.getInFlight())
+            .withDetail("poolSize", asyncCamelServlet.getPoolSize())
+            .withDetail("activeThreads", asyncCamelServlet.getActiveCount())
+            .withDetail("queueDepth", asyncCamelServlet.getQueueDepth())
+            .withDetail("completed", asyncCamelServlet.getCompletedCount())
+            .withDetail("rejected", asyncCamelServlet.getRejectedCount())
+            .withDetail("timedOut", asyncCamelServlet.getTimedOutCount())
+            .build();
+    }
+}
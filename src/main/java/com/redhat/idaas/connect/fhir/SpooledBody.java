@@ -0,0 +1,173 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.camel.Converter;
+import org.apache.camel.TypeConverters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * A request body that was larger than idaas.spoolThreshold, written to a temp file under
+ * idaas.spoolDirectory and memory mapped read only. The file is deleted as soon as it is
+ * mapped, the mapping stays valid until the body is no longer referenced, so nothing has to
+ * clean up after the exchange and its wire tapped copies.
+ *
+ * Every reader gets its own view of the mapping; the pages live in the OS page cache, not on
+ * the heap. Converters registers the String, byte[] and InputStream conversions the Kafka
+ * producers and the rest of the routes use.
+ */
+public final class SpooledBody {
+    private static final Logger log = LoggerFactory.getLogger(SpooledBody.class);
+
+    private static final int BUFFER_SIZE = 65536;
+
+    private final ByteBuffer buffer;
+
+    private SpooledBody(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /*
+     * Spools head (already read from the request) followed by the rest of the stream
+     */
+    static SpooledBody spool(byte[] head, int headLength, InputStream rest, File directory) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create spool directory " + directory);
+        }
+        File file = File.createTempFile("idaas-body-", ".spool", directory);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+            raf.write(head, 0, headLength);
+            byte[] chunk = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = rest.read(chunk)) != -1) {
+                raf.write(chunk, 0, read);
+            }
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Request body of " + size + " bytes is too large");
+            }
+            return new SpooledBody(channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer());
+        } finally {
+            if (!file.delete()) {
+                log.debug("Unable to delete spool file {}, deleting it on exit", file);
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    public int length() {
+        return buffer.capacity();
+    }
+
+    // independent read only view of the whole body
+    public ByteBuffer buffer() {
+        return buffer.duplicate();
+    }
+
+    public InputStream openStream() {
+        final ByteBuffer view = buffer();
+        return new InputStream() {
+            @Override
+            public int read() {
+                return view.hasRemaining() ? view.get() & 0xff : -1;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (!view.hasRemaining()) {
+                    return -1;
+                }
+                int n = Math.min(len, view.remaining());
+                view.get(b, off, n);
+                return n;
+            }
+
+            @Override
+            public int available() {
+                return view.remaining();
+            }
+        };
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        ByteBuffer view = buffer();
+        byte[] chunk = new byte[Math.min(BUFFER_SIZE, view.remaining())];
+        while (view.hasRemaining()) {
+            int n = Math.min(chunk.length, view.remaining());
+            view.get(chunk, 0, n);
+            out.write(chunk, 0, n);
+        }
+    }
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[length()];
+        buffer().get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return StandardCharsets.UTF_8.decode(buffer()).toString();
+    }
+
+    /*
+     * Reads the request stream; bodies up to threshold bytes come back as a String or byte[]
+     * of bodyType, larger ones are spooled
+     */
+    static Object read(InputStream in, int threshold, Class<?> bodyType, File directory) throws IOException {
+        ByteArrayOutputStream head = new ByteArrayOutputStream(Math.min(threshold, BUFFER_SIZE));
+        byte[] chunk = new byte[BUFFER_SIZE];
+        int read;
+        while (head.size() <= threshold && (read = in.read(chunk)) != -1) {
+            head.write(chunk, 0, read);
+        }
+        if (head.size() <= threshold) {
+            return bodyType == byte[].class ? head.toByteArray() : new String(head.toByteArray(), StandardCharsets.UTF_8);
+        }
+        byte[] bytes = head.toByteArray();
+        return spool(bytes, bytes.length, in, directory);
+    }
+
+    public static final class Converters implements TypeConverters {
+
+        @Converter
+        public String toString(SpooledBody body) {
+            return body.toString();
+        }
+
+        @Converter
+        public byte[] toByteArray(SpooledBody body) {
+            return body.toByteArray();
+        }
+
+        @Converter
+        public InputStream toInputStream(SpooledBody body) {
+            return body.openStream();
+        }
+    }
+}
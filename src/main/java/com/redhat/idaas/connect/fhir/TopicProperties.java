@@ -0,0 +1,111 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+ * Layout of a topic the connector provisions, bound from idaas.topicDefaults.* and
+ * idaas.topics.<resource>.*, where <resource> is a resource path or resourceType
+ * (e.g. imagingstudy or ImagingStudy) or a topic name such as opsmgmt_platformtransactions.
+ * Unset values fall back to idaas.topicDefaults.
+ */
+public class TopicProperties {
+
+    private Integer partitions;
+    private Short replicationFactor;
+    private String compressionType;
+    private Long retentionMs;
+    private Map<String, String> configs = new HashMap<>();
+
+    public TopicProperties() {
+    }
+
+    TopicProperties(int partitions, short replicationFactor) {
+        this.partitions = partitions;
+        this.replicationFactor = replicationFactor;
+    }
+
+    /*
+     * These settings with the unset ones taken from defaults
+     */
+    TopicProperties withDefaults(TopicProperties defaults) {
+        TopicProperties effective = new TopicProperties();
+        effective.partitions = partitions != null ? partitions : defaults.partitions;
+        effective.replicationFactor = replicationFactor != null ? replicationFactor : defaults.replicationFactor;
+        effective.compressionType = compressionType != null ? compressionType : defaults.compressionType;
+        effective.retentionMs = retentionMs != null ? retentionMs : defaults.retentionMs;
+        effective.configs.putAll(defaults.configs);
+        effective.configs.putAll(configs);
+        return effective;
+    }
+
+    /*
+     * Topic configs for AdminClient: configs plus compression.type and retention.ms when set
+     */
+    Map<String, String> toTopicConfigs() {
+        Map<String, String> topicConfigs = new HashMap<>(configs);
+        if (compressionType != null) {
+            topicConfigs.put("compression.type", compressionType);
+        }
+        if (retentionMs != null) {
+            topicConfigs.put("retention.ms", retentionMs.toString());
+        }
+        return topicConfigs;
+    }
+
+    public Integer getPartitions() {
+        return partitions;
+    }
+
+    public void setPartitions(Integer partitions) {
+        this.partitions = partitions;
+    }
+
+    public Short getReplicationFactor() {
+        return replicationFactor;
+    }
+
+    public void setReplicationFactor(Short replicationFactor) {
+        this.replicationFactor = replicationFactor;
+    }
+
+    public String getCompressionType() {
+        return compressionType;
+    }
+
+    public void setCompressionType(String compressionType) {
+        this.compressionType = compressionType;
+    }
+
+    public Long getRetentionMs() {
+        return retentionMs;
+    }
+
+    public void setRetentionMs(Long retentionMs) {
+        this.retentionMs = retentionMs;
+    }
+
+    public Map<String, String> getConfigs() {
+        return configs;
+    }
+
+    public void setConfigs(Map<String, String> configs) {
+        this.configs = configs;
+    }
+}
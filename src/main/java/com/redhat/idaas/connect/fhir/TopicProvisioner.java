@@ -0,0 +1,354 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PreDestroy;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.kafka.clients.admin.AdminClient;
+import org.apache.kafka.clients.admin.AdminClientConfig;
+import org.apache.kafka.clients.admin.Config;
+import org.apache.kafka.clients.admin.ConfigEntry;
+import org.apache.kafka.clients.admin.NewPartitions;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.clients.admin.TopicDescription;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.common.KafkaFuture;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.TopicPartitionInfo;
+import org.apache.kafka.common.config.ConfigResource;
+import org.apache.kafka.common.errors.UnknownTopicOrPartitionException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Checks the connector's topics at startup (idaas.topicProvisioning) and reports hot topics.
+ *
+ * Every fhirsvr_* topic of FhirResource and opsmgmt_platformtransactions is compared with its
+ * TopicProperties. With check, missing topics, fewer partitions than configured, a different
+ * replication factor and topic configs (compression.type, retention.ms, idaas.topics.*.configs)
+ * that differ from the configured ones are logged. With create, missing topics are created and
+ * partitions are added up to the configured count; the replication factor and configs of
+ * existing topics are never changed, differences are only logged.
+ *
+ * Every idaas.topicReportInterval seconds the end offsets of the topics are sampled. The
+ * partitions are looked up with AdminClient.describeTopics, so sampling never creates a topic
+ * on a broker with auto.create.topics.enable, and topics that don't exist are left out. A topic
+ * taking more than idaas.topicPartitionCapacity records per second per partition is flagged
+ * as under-partitioned, with the partition count that would bring it under the capacity.
+ * The last report is served from GET /camel/topics.
+ */
+@Component
+public class TopicProvisioner {
+    private static final Logger log = LoggerFactory.getLogger(TopicProvisioner.class);
+
+    private static final String AUDIT_TOPIC = "opsmgmt_platformtransactions";
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ConfigProperties config;
+    private final Map<String, TopicProperties> topics;
+    private final long timeout;
+
+    private ScheduledExecutorService reporter;
+    private AdminClient admin;
+    private KafkaConsumer<byte[], byte[]> offsets;
+    private Map<TopicPartition, Long> lastOffsets = Collections.emptyMap();
+    private long lastSampled;
+    private volatile List<TopicRate> report = Collections.emptyList();
+
+    @Autowired
+    public TopicProvisioner(ConfigProperties config) {
+        this.config = config;
+        this.topics = desiredTopics(config);
+        this.timeout = config.getTopicProvisioningTimeout();
+        String mode = config.getTopicProvisioning().trim().toLowerCase();
+        if (!"off".equals(mode)) {
+            provision("create".equals(mode));
+        }
+        if (config.getTopicReportInterval() > 0) {
+            startReport();
+        }
+    }
+
+    /*
+     * Topic name -> effective layout, for every topic the connector produces to
+     */
+    private static Map<String, TopicProperties> desiredTopics(ConfigProperties config) {
+        TopicProperties defaults = config.getTopicDefaults();
+        Map<String, TopicProperties> overrides = config.getTopics();
+        Map<String, TopicProperties> desired = new LinkedHashMap<>();
+        TopicProperties audit = overrides.get(AUDIT_TOPIC);
+        desired.put(AUDIT_TOPIC, audit == null ? defaults : audit.withDefaults(defaults));
+        for (FhirResource resource : FhirResource.values()) {
+            TopicProperties override = overrides.get(resource.getResourceType());
+            if (override == null) {
+                override = overrides.get(resource.getPath());
+            }
+            if (override == null) {
+                override = overrides.get(resource.getTopic());
+            }
+            desired.put(resource.getTopic(), override == null ? defaults : override.withDefaults(defaults));
+        }
+        return desired;
+    }
+
+    private void provision(boolean create) {
+        Properties properties = new Properties();
+        properties.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+        properties.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) timeout);
+        try (AdminClient admin = AdminClient.create(properties)) {
+            Set<String> existing = admin.listTopics().names().get(timeout, TimeUnit.MILLISECONDS);
+            List<NewTopic> missing = new ArrayList<>();
+            List<String> present = new ArrayList<>();
+            for (Map.Entry<String, TopicProperties> topic : topics.entrySet()) {
+                if (existing.contains(topic.getKey())) {
+                    present.add(topic.getKey());
+                } else if (create) {
+                    TopicProperties layout = topic.getValue();
+                    missing.add(new NewTopic(topic.getKey(), layout.getPartitions(), layout.getReplicationFactor())
+                        .configs(layout.toTopicConfigs()));
+                } else {
+                    log.warn("Topic {} does not exist", topic.getKey());
+                }
+            }
+            if (!missing.isEmpty()) {
+                admin.createTopics(missing).all().get(timeout, TimeUnit.MILLISECONDS);
+                log.info("Created {} topics", missing.size());
+            }
+            checkExisting(admin, present, create);
+        } catch (Exception e) {
+            // Kafka may be down at startup, the outbox and producer retries cover that
+            log.error("Topic provisioning failed", e);
+        }
+    }
+
+    private void checkExisting(AdminClient admin, List<String> present, boolean create) throws Exception {
+        if (present.isEmpty()) {
+            return;
+        }
+        Map<String, TopicDescription> descriptions = admin.describeTopics(present).all().get(timeout, TimeUnit.MILLISECONDS);
+        Map<String, NewPartitions> grow = new HashMap<>();
+        List<ConfigResource> resources = new ArrayList<>();
+        for (TopicDescription description : descriptions.values()) {
+            TopicProperties layout = topics.get(description.name());
+            int wanted = layout.getPartitions();
+            int actual = description.partitions().size();
+            if (actual < wanted) {
+                if (create) {
+                    grow.put(description.name(), NewPartitions.increaseTo(wanted));
+                } else {
+                    log.warn("Topic {} has {} partitions, {} configured", description.name(), actual, wanted);
+                }
+            }
+            // changing it takes a partition reassignment, which is left to the operator
+            int replicas = Integer.MAX_VALUE;
+            for (TopicPartitionInfo partition : description.partitions()) {
+                replicas = Math.min(replicas, partition.replicas().size());
+            }
+            if (layout.getReplicationFactor() != null && !description.partitions().isEmpty()
+                    && replicas != layout.getReplicationFactor()) {
+                log.warn("Topic {} has replication factor {}, {} configured", description.name(), replicas, layout.getReplicationFactor());
+            }
+            resources.add(new ConfigResource(ConfigResource.Type.TOPIC, description.name()));
+        }
+        if (!grow.isEmpty()) {
+            // adding partitions moves keys to other partitions, per key order only holds from here on
+            admin.createPartitions(grow).all().get(timeout, TimeUnit.MILLISECONDS);
+            log.info("Added partitions to {}", grow.keySet());
+        }
+        Map<ConfigResource, Config> configs = admin.describeConfigs(resources).all().get(timeout, TimeUnit.MILLISECONDS);
+        for (Map.Entry<ConfigResource, Config> topicConfig : configs.entrySet()) {
+            String topic = topicConfig.getKey().name();
+            for (Map.Entry<String, String> wanted : topics.get(topic).toTopicConfigs().entrySet()) {
+                ConfigEntry actual = topicConfig.getValue().get(wanted.getKey());
+                String value = actual == null ? null : actual.value();
+                if (!wanted.getValue().equals(value)) {
+                    log.warn("Topic {} has {} {}, {} configured", topic, wanted.getKey(), value, wanted.getValue());
+                }
+            }
+        }
+    }
+
+    private void startReport() {
+        Properties adminProperties = new Properties();
+        adminProperties.put(AdminClientConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+        adminProperties.put(AdminClientConfig.CLIENT_ID_CONFIG, "idaas-topic-report");
+        adminProperties.put(AdminClientConfig.REQUEST_TIMEOUT_MS_CONFIG, (int) timeout);
+        admin = AdminClient.create(adminProperties);
+        Properties properties = new Properties();
+        properties.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+        properties.put(ConsumerConfig.CLIENT_ID_CONFIG, "idaas-topic-report");
+        properties.put(ConsumerConfig.KEY_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        properties.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        offsets = new KafkaConsumer<>(properties);
+        reporter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "iDAAS-TopicReport");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = config.getTopicReportInterval();
+        reporter.scheduleWithFixedDelay(this::sample, 0, interval, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter.awaitTermination(10, TimeUnit.SECONDS);
+            offsets.close();
+            admin.close();
+        }
+    }
+
+    private void sample() {
+        try {
+            List<TopicPartition> partitions = new ArrayList<>();
+            Map<String, Integer> partitionCounts = new HashMap<>();
+            // describeTopics, unlike the consumer's partitionsFor, never auto-creates a topic
+            Map<String, KafkaFuture<TopicDescription>> descriptions = admin.describeTopics(topics.keySet()).values();
+            for (Map.Entry<String, KafkaFuture<TopicDescription>> topic : descriptions.entrySet()) {
+                TopicDescription description;
+                try {
+                    description = topic.getValue().get(timeout, TimeUnit.MILLISECONDS);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof UnknownTopicOrPartitionException) {
+                        continue;
+                    }
+                    throw e;
+                }
+                partitionCounts.put(topic.getKey(), description.partitions().size());
+                for (TopicPartitionInfo info : description.partitions()) {
+                    partitions.add(new TopicPartition(topic.getKey(), info.partition()));
+                }
+            }
+            Map<TopicPartition, Long> endOffsets = offsets.endOffsets(partitions);
+            long now = System.currentTimeMillis();
+            if (!lastOffsets.isEmpty()) {
+                report = rates(endOffsets, partitionCounts, (now - lastSampled) / 1000.0);
+            }
+            lastOffsets = endOffsets;
+            lastSampled = now;
+        } catch (Exception e) {
+            log.warn("Topic throughput sample failed", e);
+        }
+    }
+
+    private List<TopicRate> rates(Map<TopicPartition, Long> endOffsets, Map<String, Integer> partitionCounts, double seconds) {
+        Map<String, Long> records = new HashMap<>();
+        for (Map.Entry<TopicPartition, Long> end : endOffsets.entrySet()) {
+            Long last = lastOffsets.get(end.getKey());
+            if (last != null && end.getValue() > last) {
+                records.merge(end.getKey().topic(), end.getValue() - last, Long::sum);
+            }
+        }
+        double capacity = config.getTopicPartitionCapacity();
+        List<TopicRate> rates = new ArrayList<>();
+        for (Map.Entry<String, Integer> topic : partitionCounts.entrySet()) {
+            double rate = records.getOrDefault(topic.getKey(), 0L) / seconds;
+            TopicRate topicRate = new TopicRate(topic.getKey(), topic.getValue(), rate, (int) Math.ceil(rate / capacity));
+            if (topicRate.isUnderPartitioned()) {
+                log.warn("Topic {} is under-partitioned: {} records/s on {} partitions, {} suggested",
+                    topicRate.topic, Math.round(rate), topicRate.partitions, topicRate.suggestedPartitions);
+            }
+            rates.add(topicRate);
+        }
+        rates.sort((a, b) -> Double.compare(b.recordsPerSecond, a.recordsPerSecond));
+        return rates;
+    }
+
+    public Collection<TopicRate> getReport() {
+        return report;
+    }
+
+    /*
+     * GET /camel/topics
+     */
+    public Processor report() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                ArrayNode body = MAPPER.createArrayNode();
+                for (TopicRate rate : report) {
+                    ObjectNode topic = body.addObject()
+                        .put("topic", rate.topic)
+                        .put("partitions", rate.partitions)
+                        .put("recordsPerSecond", Math.round(rate.recordsPerSecond * 10) / 10.0)
+                        .put("underPartitioned", rate.isUnderPartitioned());
+                    if (rate.isUnderPartitioned()) {
+                        topic.put("suggestedPartitions", rate.suggestedPartitions);
+                    }
+                }
+                Message in = exchange.getIn();
+                in.setHeader(Exchange.HTTP_RESPONSE_CODE, 200);
+                in.setHeader(Exchange.CONTENT_TYPE, "application/json");
+                in.setBody(body.toString());
+            }
+        };
+    }
+
+    public static final class TopicRate {
+        private final String topic;
+        private final int partitions;
+        private final double recordsPerSecond;
+        private final int suggestedPartitions;
+
+        TopicRate(String topic, int partitions, double recordsPerSecond, int suggestedPartitions) {
+            this.topic = topic;
+            this.partitions = partitions;
+            this.recordsPerSecond = recordsPerSecond;
+            this.suggestedPartitions = suggestedPartitions;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public int getPartitions() {
+            return partitions;
+        }
+
+        public double getRecordsPerSecond() {
+            return recordsPerSecond;
+        }
+
+        public boolean isUnderPartitioned() {
+            return suggestedPartitions > partitions;
+        }
+    }
+}
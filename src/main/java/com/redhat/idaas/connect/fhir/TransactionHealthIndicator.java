@@ -0,0 +1,53 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/*
+ * Publishes the transactional producer's state through the actuator health endpoint. Reports
+ * DOWN while the producer can't commit: for good once it was fenced by another producer with
+ * the same transactional id, otherwise until it is reinitialized.
+ */
+@Component
+public class TransactionHealthIndicator implements HealthIndicator {
+
+    @Autowired
+    private TransactionalPublisher transactionalPublisher;
+
+    @Override
+    public Health health() {
+        if (!transactionalPublisher.isEnabled()) {
+            return Health.up().withDetail("enabled", false).build();
+        }
+        String unavailable = transactionalPublisher.getUnavailable();
+        Health.Builder builder = unavailable == null ? Health.up() : Health.down().withDetail("error", unavailable);
+        return builder
+            .withDetail("enabled", true)
+            .withDetail("transactionalId", transactionalPublisher.getTransactionalId())
+            .withDetail("fenced", transactionalPublisher.isFenced())
+            .withDetail("queued", transactionalPublisher.getQueueDepth())
+            .withDetail("committed", transactionalPublisher.getCommittedCount())
+            .withDetail("aborted", transactionalPublisher.getAbortedCount())
+            .withDetail("withdrawn", transactionalPublisher.getWithdrawnCount())
+            .withDetail("reinitialized", transactionalPublisher.getReinitializedCount())
+            .build();
+    }
+}
@@ -0,0 +1,408 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import javax.annotation.PreDestroy;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.Message;
+import org.apache.camel.Processor;
+import org.apache.camel.component.kafka.KafkaConstants;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.errors.AuthorizationException;
+import org.apache.kafka.common.errors.OutOfOrderSequenceException;
+import org.apache.kafka.common.errors.ProducerFencedException;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/*
+ * Transactional publishing of the data record and its audit record (idaas.kafkaTransactional).
+ *
+ * Exchanges hand their records to a single committing thread and wait for the outcome. The
+ * thread takes up to idaas.transactionBatchSize exchanges, waiting at most
+ * idaas.transactionBatchWindow ms for more, sends all data records in one transaction, builds
+ * the audit records once the data records' offsets are known, sends those and commits. Either
+ * both records of every exchange in the batch are visible to read_committed consumers, or none.
+ *
+ * An exchange still queued after idaas.transactionSendTimeout ms is withdrawn and never sent;
+ * one the committing thread already took into a transaction waits for that transaction's
+ * outcome instead, so the caller never fails an exchange that is committed after all.
+ *
+ * The transactional id, idaas.kafkaTransactionalId, is required: it has to be distinct per
+ * instance and the same across its restarts, so a restarted instance fences its previous
+ * incarnation and aborts the transaction it left open. Host names of Deployment pods change
+ * with every restart, StatefulSet pod names (idaas-connect-fhir-0, -1, ...) don't.
+ *
+ * A producer fenced by a newer producer with the same id stops for good and the health
+ * indicator reports DOWN: the other instance owns the id now. Other fatal producer errors
+ * (out of order sequence, authorization) close the producer and a new one is initialised,
+ * retrying with backoff; meanwhile publishing fails with the producer's error.
+ */
+@Component
+public class TransactionalPublisher {
+    private static final Logger log = LoggerFactory.getLogger(TransactionalPublisher.class);
+
+    private static final String AUDIT_TOPIC = "opsmgmt_platformtransactions";
+    private static final long MAX_REINIT_BACKOFF = 30000;
+
+    private final ConfigProperties config;
+    private final boolean enabled;
+    private final boolean binaryAudit;
+    private final BlockingQueue<Pending> queue;
+    private final String transactionalId;
+    private volatile boolean running;
+    // why publishing is not possible right now, null while the producer can commit
+    private volatile String unavailable;
+    private volatile boolean fenced;
+    private Thread committer;
+    private KafkaProducer<byte[], byte[]> producer;
+
+    private final LongAdder committed = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder withdrawn = new LongAdder();
+    private final LongAdder reinitialized = new LongAdder();
+
+    @Autowired
+    public TransactionalPublisher(ConfigProperties config) {
+        this.config = config;
+        this.enabled = config.isKafkaTransactional();
+        this.binaryAudit = "binary".equalsIgnoreCase(config.getAuditFormat());
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getTransactionQueueSize()));
+        this.transactionalId = config.getKafkaTransactionalId();
+        if (enabled) {
+            if (transactionalId == null || transactionalId.trim().isEmpty()) {
+                throw new IllegalArgumentException("idaas.kafkaTransactional needs idaas.kafkaTransactionalId, distinct per instance"
+                    + " and stable across restarts, e.g. idaas-connect-fhir-${HOSTNAME} in a StatefulSet");
+            }
+            start();
+        }
+    }
+
+    private void start() {
+        producer = createProducer();
+        running = true;
+        committer = new Thread(this::run, "iDAAS-Transactions");
+        committer.setDaemon(true);
+        committer.start();
+        log.info("Transactional publishing enabled with transactional.id {}", transactionalId);
+    }
+
+    private KafkaProducer<byte[], byte[]> createProducer() {
+        Properties properties = config.getKafka().resolve(AUDIT_TOPIC).toProducerProperties();
+        properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getKafkaBrokers());
+        properties.put(ProducerConfig.TRANSACTIONAL_ID_CONFIG, transactionalId);
+        properties.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        properties.put(ProducerConfig.ACKS_CONFIG, "all");
+        properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteArraySerializer.class.getName());
+        KafkaProducer<byte[], byte[]> created = new KafkaProducer<>(properties);
+        try {
+            created.initTransactions();
+        } catch (RuntimeException e) {
+            created.close(0, TimeUnit.MILLISECONDS);
+            throw e;
+        }
+        return created;
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        committer.join(TimeUnit.SECONDS.toMillis(30));
+        if (producer != null) {
+            producer.close(30, TimeUnit.SECONDS);
+        }
+    }
+
+    /*
+     * Publishes the exchange's data record and audit record in one transaction, replacing the
+     * Kafka endpoint and the audit wire taps of FHIRPublish
+     */
+    public Processor publish() {
+        return new Processor() {
+            @Override
+            public void process(Exchange exchange) throws Exception {
+                String reason = unavailable;
+                if (reason != null || !running) {
+                    throw new IllegalStateException("Transactional producer " + transactionalId + " is unavailable: "
+                        + (reason != null ? reason : "stopped"));
+                }
+                Pending pending = new Pending(exchange);
+                if (!queue.offer(pending)) {
+                    throw new IllegalStateException("Transaction queue is full");
+                }
+                RecordMetadata metadata;
+                try {
+                    try {
+                        metadata = pending.done.get(config.getTransactionSendTimeout(), TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        if (pending.claim()) {
+                            // still queued, the committing thread will skip it
+                            withdrawn.increment();
+                            throw new IllegalStateException("Transaction not started within " + config.getTransactionSendTimeout() + " ms", e);
+                        }
+                        // already part of a transaction, its outcome is this exchange's outcome
+                        metadata = pending.done.get();
+                    }
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                }
+                exchange.getIn().setHeader(KafkaConstants.KAFKA_RECORDMETA, Collections.singletonList(metadata));
+            }
+        };
+    }
+
+    private void run() {
+        List<Pending> batch = new ArrayList<>(config.getTransactionBatchSize());
+        long backoff = 1000;
+        while (running || !queue.isEmpty()) {
+            try {
+                if (producer == null) {
+                    failQueued();
+                    if (fenced || !running) {
+                        Thread.sleep(100);
+                        continue;
+                    }
+                    if (!reinitialize()) {
+                        Thread.sleep(backoff);
+                        backoff = Math.min(backoff * 2, MAX_REINIT_BACKOFF);
+                        continue;
+                    }
+                    backoff = 1000;
+                }
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null || !first.claim()) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getTransactionBatchWindow());
+                while (batch.size() < config.getTransactionBatchSize()) {
+                    Pending next = queue.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    if (next.claim()) {
+                        batch.add(next);
+                    }
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending> batch) {
+        try {
+            producer.beginTransaction();
+            List<Future<RecordMetadata>> sent = new ArrayList<>(batch.size());
+            for (Pending pending : batch) {
+                sent.add(producer.send(dataRecord(pending.exchange)));
+            }
+            producer.flush();
+            List<RecordMetadata> metadata = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                RecordMetadata record = sent.get(i).get();
+                metadata.add(record);
+                producer.send(auditRecord(batch.get(i).exchange, record));
+            }
+            producer.commitTransaction();
+            committed.add(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).done.complete(metadata.get(i));
+            }
+        } catch (Exception e) {
+            // fatal errors also arrive wrapped, in the ExecutionException of a send or a KafkaException
+            Throwable fatal = fatalCause(e);
+            if (fatal != null) {
+                fenced = fatal instanceof ProducerFencedException;
+                unavailable = fatal.getClass().getSimpleName() + ": " + fatal.getMessage();
+                log.error(fenced
+                    ? "Transactional producer {} was fenced by another producer with the same transactional.id, publishing stops"
+                    : "Transactional producer {} can no longer commit, reinitializing", transactionalId, e);
+                producer.close(0, TimeUnit.MILLISECONDS);
+                producer = null;
+                aborted.add(batch.size());
+                fail(batch, e);
+                return;
+            }
+            log.warn("Transaction of {} exchanges aborted", batch.size(), e);
+            try {
+                producer.abortTransaction();
+            } catch (KafkaException abort) {
+                log.warn("Abort failed", abort);
+            }
+            aborted.add(batch.size());
+            fail(batch, e);
+        }
+    }
+
+    private static Throwable fatalCause(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ProducerFencedException || cause instanceof OutOfOrderSequenceException
+                || cause instanceof AuthorizationException) {
+                return cause;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private boolean reinitialize() {
+        try {
+            producer = createProducer();
+            unavailable = null;
+            reinitialized.increment();
+            log.info("Transactional producer {} reinitialized", transactionalId);
+            return true;
+        } catch (Exception e) {
+            unavailable = e.getClass().getSimpleName() + ": " + e.getMessage();
+            log.warn("Reinitializing transactional producer {} failed", transactionalId, e);
+            return false;
+        }
+    }
+
+    // exchanges queued while there is no producer fail now instead of at their timeout
+    private void failQueued() {
+        Pending pending;
+        IllegalStateException e = new IllegalStateException("Transactional producer " + transactionalId + " is unavailable: " + unavailable);
+        while ((pending = queue.poll()) != null) {
+            if (pending.claim()) {
+                pending.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    private static void fail(List<Pending> batch, Exception e) {
+        for (Pending pending : batch) {
+            pending.done.completeExceptionally(e);
+        }
+    }
+
+    private ProducerRecord<byte[], byte[]> dataRecord(Exchange exchange) {
+        Message in = exchange.getIn();
+        String key = in.getHeader(KafkaConstants.KEY, String.class);
+        return new ProducerRecord<>(
+            exchange.getProperty(FhirResourceProcessor.TOPIC_PROPERTY, String.class),
+            key == null ? null : key.getBytes(StandardCharsets.UTF_8),
+            in.getBody(byte[].class));
+    }
+
+    /*
+     * Audit record as direct:auditing would build it, from a copy of the exchange
+     */
+    private ProducerRecord<byte[], byte[]> auditRecord(Exchange exchange, RecordMetadata metadata) throws Exception {
+        Exchange audit = exchange.copy();
+        audit.getIn().setHeader(KafkaConstants.KAFKA_RECORDMETA, Collections.singletonList(metadata));
+        if (!exchange.getProperty(FhirResourceProcessor.FULL_BODY_AUDIT_PROPERTY, false, Boolean.class)) {
+            new AuditReferenceProcessor().process(audit);
+        }
+        if (binaryAudit) {
+            new BinaryAuditProcessor().process(audit);
+            return new ProducerRecord<>(AUDIT_TOPIC, audit.getIn().getBody(byte[].class));
+        }
+        new AuditStampProcessor().process(audit);
+        ProducerRecord<byte[], byte[]> record = new ProducerRecord<>(AUDIT_TOPIC, audit.getIn().getBody(byte[].class));
+        for (String name : AuditStampProcessor.headerNames()) {
+            Object value = audit.getIn().getHeader(name);
+            if (value != null) {
+                record.headers().add(name, value.toString().getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        return record;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public String getTransactionalId() {
+        return transactionalId;
+    }
+
+    public String getUnavailable() {
+        return unavailable;
+    }
+
+    public boolean isFenced() {
+        return fenced;
+    }
+
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    public long getCommittedCount() {
+        return committed.sum();
+    }
+
+    public long getAbortedCount() {
+        return aborted.sum();
+    }
+
+    public long getWithdrawnCount() {
+        return withdrawn.sum();
+    }
+
+    public long getReinitializedCount() {
+        return reinitialized.sum();
+    }
+
+    private static final class Pending {
+        private final Exchange exchange;
+        private final CompletableFuture<RecordMetadata> done = new CompletableFuture<>();
+        // taken by the committing thread, or by the caller withdrawing it on timeout
+        private final AtomicBoolean claimed = new AtomicBoolean();
+
+        Pending(Exchange exchange) {
+            this.exchange = exchange;
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+}
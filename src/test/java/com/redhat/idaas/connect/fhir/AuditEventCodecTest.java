@@ -0,0 +1,171 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class AuditEventCodecTest {
+
+    @Test
+    public void fullBodyEventRoundTrips() {
+        AuditEvent event = event(FhirResource.OBSERVATION);
+        event.setBody("{\"resourceType\":\"Observation\"}".getBytes(StandardCharsets.UTF_8));
+
+        AuditEvent decoded = AuditEventCodec.decode(AuditEventCodec.encode(event));
+
+        assertEquals(AuditEventCodec.VERSION, decoded.getVersion());
+        assertEquals(event.getProcessedAt(), decoded.getProcessedAt());
+        assertEquals(FhirResource.OBSERVATION, decoded.getResource());
+        assertEquals("FHIRObservation", decoded.getComponent());
+        assertEquals("data", decoded.getProcessingType());
+        assertEquals("FHIR", decoded.getIndustryStd());
+        assertEquals("Input", decoded.getProcessName());
+        assertEquals("camel-1", decoded.getCamelId());
+        assertEquals("ID-exchange-1", decoded.getExchangeId());
+        assertNull(decoded.getInternalMsgId());
+        assertArrayEquals(event.getBody(), decoded.getBody());
+        assertFalse(decoded.isReference());
+    }
+
+    @Test
+    public void referenceEventRoundTrips() {
+        AuditEvent event = event(FhirResource.CLAIM);
+        event.setProcessingType("replay");
+        event.setReference(true);
+        event.setContentHash(new byte[] { 1, 2, 3, (byte) 0xff });
+        event.setContentLength(123456789L);
+        event.setRecordTopic(FhirResource.CLAIM.getTopic());
+        event.setRecordPartition(7);
+        event.setRecordOffset(Long.MAX_VALUE);
+
+        AuditEvent decoded = AuditEventCodec.decode(AuditEventCodec.encode(event));
+
+        assertEquals(FhirResource.CLAIM, decoded.getResource());
+        // not in the dictionary, written as a string
+        assertEquals("replay", decoded.getProcessingType());
+        assertTrue(decoded.isReference());
+        assertArrayEquals(event.getContentHash(), decoded.getContentHash());
+        assertEquals(123456789L, decoded.getContentLength());
+        assertEquals("fhirsvr_claim", decoded.getRecordTopic());
+        assertEquals(7, decoded.getRecordPartition());
+        assertEquals(Long.MAX_VALUE, decoded.getRecordOffset());
+        assertNull(decoded.getBody());
+    }
+
+    @Test
+    public void batchRoundTrips() {
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        AuditEventCodec.writeBatchHeader(batch);
+        AuditEventCodec.writeBatchEntry(batch, AuditEventCodec.encode(event(FhirResource.PATIENT)));
+        AuditEventCodec.writeBatchEntry(batch, AuditEventCodec.encode(event(null)));
+
+        List<AuditEvent> events = AuditEventCodec.decodeBatch(batch.toByteArray());
+
+        assertEquals(2, events.size());
+        assertEquals(FhirResource.PATIENT, events.get(0).getResource());
+        assertNull(events.get(1).getResource());
+        assertEquals(0, events.get(1).getResourceCode());
+    }
+
+    @Test
+    public void laterVersionDecodesTheKnownPrefix() {
+        AuditEvent event = event(FhirResource.PATIENT);
+        event.setBody(new byte[] { 42 });
+        byte[] v1 = AuditEventCodec.encode(event);
+        // version 2 appends a field after the body
+        byte[] v2 = Arrays.copyOf(v1, v1.length + 3);
+        v2[1] = 2;
+        v2[v1.length] = 2;
+        v2[v1.length + 1] = 'x';
+        v2[v1.length + 2] = 'y';
+
+        AuditEvent decoded = AuditEventCodec.decode(v2);
+
+        assertEquals(2, decoded.getVersion());
+        assertEquals(FhirResource.PATIENT, decoded.getResource());
+        assertArrayEquals(new byte[] { 42 }, decoded.getBody());
+
+        ByteArrayOutputStream batch = new ByteArrayOutputStream();
+        AuditEventCodec.writeBatchHeader(batch);
+        AuditEventCodec.writeBatchEntry(batch, v2);
+        AuditEventCodec.writeBatchEntry(batch, v1);
+        List<AuditEvent> events = AuditEventCodec.decodeBatch(batch.toByteArray());
+        assertEquals(2, events.size());
+        assertEquals(FhirResource.PATIENT, events.get(1).getResource());
+    }
+
+    @Test
+    public void unknownResourceAndDictionaryValuesDecodeAsNull() {
+        AuditEvent event = event(null);
+        event.setProcessedAt(0);
+        // a resource added after this decoder was built
+        event.setResourceCode(9999);
+        byte[] record = AuditEventCodec.encode(event);
+        // magic, version, flags, processedAt, resource (2 bytes), then processingType "data" as index 1
+        assertEquals(1, record[6]);
+        record[6] = 5;
+
+        AuditEvent decoded = AuditEventCodec.decode(record);
+
+        assertEquals(9999, decoded.getResourceCode());
+        assertNull(decoded.getResource());
+        assertNull(decoded.getProcessingType());
+        assertEquals("FHIR", decoded.getIndustryStd());
+        assertEquals("camel-1", decoded.getCamelId());
+    }
+
+    @Test
+    public void auditCodesAreFixed() {
+        // records already written carry these codes, they must never change
+        assertEquals(1, FhirResource.ADVERSE_EVENT.getAuditCode());
+        assertEquals(34, FhirResource.PATIENT.getAuditCode());
+        assertEquals(53, FhirResource.CLAIM.getAuditCode());
+        assertEquals(75, FhirResource.TEST_SCRIPT.getAuditCode());
+        for (FhirResource resource : FhirResource.values()) {
+            assertEquals(resource, FhirResource.fromAuditCode(resource.getAuditCode()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedRecordIsRejected() {
+        byte[] record = AuditEventCodec.encode(event(FhirResource.PATIENT));
+        AuditEventCodec.decode(Arrays.copyOf(record, record.length - 2));
+    }
+
+    private static AuditEvent event(FhirResource resource) {
+        AuditEvent event = new AuditEvent();
+        event.setProcessedAt(1600000000123L);
+        event.setResource(resource);
+        event.setProcessingType("data");
+        event.setIndustryStd("FHIR");
+        event.setProcessName("Input");
+        event.setCamelId("camel-1");
+        event.setExchangeId("ID-exchange-1");
+        return event;
+    }
+}
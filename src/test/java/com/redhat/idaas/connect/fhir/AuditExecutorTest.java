@@ -0,0 +1,163 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * The spill policy writes rejected audit records to disk and replays them once the queue has
+ * drained. Replay is driven by hand through replaySpill, the scheduled pass is far out.
+ */
+public class AuditExecutorTest {
+
+    private File directory;
+    private AuditExecutor executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("idaas-audit-test").toFile();
+        ConfigProperties config = new ConfigProperties();
+        config.setAuditPoolSize(1);
+        config.setAuditQueueSize(1);
+        config.setAuditRejectionPolicy("spill");
+        config.setAuditSpillDirectory(directory.getPath());
+        config.setAuditSpillReplayInterval(3600);
+        executor = new AuditExecutor(config);
+    }
+
+    @After
+    public void deleteDirectory() throws Exception {
+        release.countDown();
+        executor.drain();
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void spilledRecordIsReplayedAndItsFileDeleted() throws Exception {
+        List<Map<String, String>> properties = new ArrayList<>();
+        List<byte[]> bodies = new ArrayList<>();
+        executor.setSpillReplayer((recordProperties, body) -> {
+            properties.add(recordProperties);
+            bodies.add(body);
+        });
+
+        // one task running, one queued, the third is spilled
+        submit(audit("first"));
+        submit(audit("second"));
+        Exchange spilled = audit("third|with\nseparators");
+        spilled.setProperty(FhirResourceProcessor.RESOURCE_PROPERTY, FhirResource.PATIENT);
+        submit(spilled);
+        assertEquals(1, executor.getSpilledCount());
+        assertEquals(1, executor.getSpillFileCount());
+
+        // nothing is replayed while the queue is backed up
+        executor.replaySpill();
+        assertEquals(0, bodies.size());
+
+        awaitDrained();
+        executor.replaySpill();
+        assertEquals(1, bodies.size());
+        assertEquals("third|with\nseparators", properties.get(0).get("exchangeID"));
+        assertEquals("PATIENT", properties.get(0).get(FhirResourceProcessor.RESOURCE_PROPERTY));
+        assertArrayEquals(body("third|with\nseparators"), bodies.get(0));
+        assertEquals(1, executor.getReplayedCount());
+        assertEquals(0, executor.getSpillFileCount());
+    }
+
+    @Test
+    public void failedReplayResumesAtTheFailedRecord() throws Exception {
+        List<String> sent = new ArrayList<>();
+        boolean[] failing = { true };
+        executor.setSpillReplayer((recordProperties, body) -> {
+            if (failing[0] && sent.size() == 1) {
+                throw new IllegalStateException("audit topic unavailable");
+            }
+            sent.add(recordProperties.get("exchangeID"));
+        });
+
+        submit(audit("first"));
+        submit(audit("second"));
+        submit(audit("third"));
+        submit(audit("fourth"));
+        awaitDrained();
+        // the first pass after a rejection waits, the second stops at the failing record
+        executor.replaySpill();
+        executor.replaySpill();
+        assertEquals(1, sent.size());
+        assertEquals(1, executor.getSpillFileCount());
+
+        failing[0] = false;
+        executor.replaySpill();
+        assertEquals("third", sent.get(0));
+        assertEquals("fourth", sent.get(1));
+        assertEquals(2, sent.size());
+        assertEquals(0, executor.getSpillFileCount());
+    }
+
+    private Exchange audit(String exchangeId) {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.setProperty("exchangeID", exchangeId);
+        exchange.getIn().setBody(body(exchangeId));
+        return exchange;
+    }
+
+    private static byte[] body(String exchangeId) {
+        return ("audit of " + exchangeId).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private void awaitDrained() throws InterruptedException {
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 10000;
+        while (executor.getQueueDepth() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void submit(Exchange exchange) throws Exception {
+        executor.onPrepare(null).process(exchange);
+        executor.getExecutorService().execute(() -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+}
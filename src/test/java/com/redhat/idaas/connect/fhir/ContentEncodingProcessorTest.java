@@ -0,0 +1,96 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Test;
+
+/*
+ * Compressed request bodies are inflated up to idaas.maxInflatedSize, a decompression bomb fails
+ * as soon as it passes the limit instead of filling the heap or the spool directory.
+ */
+public class ContentEncodingProcessorTest {
+
+    private static final long LIMIT = 1024 * 1024;
+
+    @Test
+    public void bodyWithinTheLimitIsInflated() throws Exception {
+        byte[] json = "{\"resourceType\":\"Patient\",\"id\":\"p-1\"}".getBytes(StandardCharsets.UTF_8);
+
+        assertArrayEquals(json, readAll(decode("gzip", gzip(json))));
+        assertArrayEquals(json, readAll(decode("deflate", deflate(json))));
+    }
+
+    @Test(expected = ContentEncodingProcessor.InflatedSizeException.class)
+    public void gzipBombIsRefused() throws Exception {
+        byte[] bomb = gzip(new byte[16 * 1024 * 1024]);
+        assertTrue(bomb.length < 64 * 1024);
+
+        readAll(decode("gzip", bomb));
+    }
+
+    @Test(expected = ContentEncodingProcessor.InflatedSizeException.class)
+    public void deflateBombIsRefused() throws Exception {
+        readAll(decode("deflate", deflate(new byte[16 * 1024 * 1024])));
+    }
+
+    private static InputStream decode(String encoding, byte[] body) throws Exception {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        exchange.getIn().setHeader(Exchange.CONTENT_ENCODING, encoding);
+        exchange.getIn().setBody(body);
+        new ContentEncodingProcessor(LIMIT).process(exchange);
+        return exchange.getIn().getBody(InputStream.class);
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        for (int n; (n = in.read(buffer)) >= 0; ) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] gzip(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new DeflaterOutputStream(bytes)) {
+            out.write(data);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.camel.Exchange;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.apache.camel.impl.DefaultExchange;
+import org.junit.Test;
+
+/*
+ * An import ends as complete once its upload was read to the end, or as failed when reading it
+ * broke off; either way GET /camel/$import stops reporting it as running.
+ */
+public class ImportRegistryTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final ImportRegistry registry = new ImportRegistry(new ConfigProperties());
+
+    @Test
+    public void readUploadCompletesTheJob() throws Exception {
+        Exchange upload = start();
+        publishLine(upload, "Patient");
+
+        registry.finish().process(upload);
+
+        assertEquals(200, upload.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class).intValue());
+        JsonNode job = status().get(0);
+        assertEquals("complete", job.path("state").asText());
+        assertEquals(1, job.path("published").asLong());
+    }
+
+    @Test
+    public void brokenUploadFailsTheJob() throws Exception {
+        Exchange upload = start();
+        publishLine(upload, "Patient");
+        publishLine(upload, "Observation");
+
+        upload.setProperty(Exchange.EXCEPTION_CAUGHT, new IOException("Connection reset by peer"));
+        registry.aborted().process(upload);
+
+        assertEquals(500, upload.getIn().getHeader(Exchange.HTTP_RESPONSE_CODE, Integer.class).intValue());
+        JsonNode job = status().get(0);
+        assertEquals("failed", job.path("state").asText());
+        assertEquals("Connection reset by peer", job.path("error").asText());
+        assertEquals(2, job.path("published").asLong());
+    }
+
+    private Exchange start() throws Exception {
+        Exchange upload = new DefaultExchange(new DefaultCamelContext());
+        registry.start().process(upload);
+        return upload;
+    }
+
+    private void publishLine(Exchange upload, String resourceType) throws Exception {
+        Exchange line = new DefaultExchange(new DefaultCamelContext());
+        line.setProperty(ImportRegistry.JOB_PROPERTY, upload.getProperty(ImportRegistry.JOB_PROPERTY));
+        line.setProperty(ImportLineProcessor.RESOURCE_TYPE_PROPERTY, resourceType);
+        registry.lineDone().process(line);
+    }
+
+    private JsonNode status() throws Exception {
+        Exchange exchange = new DefaultExchange(new DefaultCamelContext());
+        registry.status().process(exchange);
+        return MAPPER.readTree(exchange.getIn().getBody(String.class));
+    }
+}
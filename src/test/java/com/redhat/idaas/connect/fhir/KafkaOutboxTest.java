@@ -0,0 +1,248 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.NotEnoughReplicasException;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Recovery of the outbox segments after a restart, with and without a torn last write.
+ * Replay is driven by hand through nextBatch/acknowledge/settle, no Kafka is involved.
+ */
+public class KafkaOutboxTest {
+
+    private File directory;
+    private KafkaOutbox outbox;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("idaas-outbox-test").toFile();
+    }
+
+    @After
+    public void deleteDirectory() throws Exception {
+        if (outbox != null) {
+            outbox.stop();
+        }
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void recordsSurviveRestart() throws Exception {
+        outbox = open();
+        outbox.append("fhirsvr_patient", bytes("p1"), bytes("{\"id\":1}"),
+            Collections.singletonMap(FhirResourceProcessor.RESOURCE_PROPERTY, "PATIENT"));
+        outbox.append("fhirsvr_claim", null, bytes("{\"id\":2}"));
+
+        outbox = reopen();
+
+        assertEquals(2, outbox.getPendingCount());
+        List<KafkaOutbox.Entry> entries = outbox.nextBatch(10).entries;
+        assertEquals(2, entries.size());
+        assertEquals("fhirsvr_patient", entries.get(0).record.topic());
+        assertArrayEquals(bytes("p1"), entries.get(0).record.key());
+        assertArrayEquals(bytes("{\"id\":1}"), entries.get(0).record.value());
+        assertEquals("PATIENT", entries.get(0).context.get(FhirResourceProcessor.RESOURCE_PROPERTY));
+        assertEquals("fhirsvr_claim", entries.get(1).record.topic());
+        assertNull(entries.get(1).record.key());
+        assertEquals(0, entries.get(1).context.size());
+    }
+
+    @Test
+    public void tornWriteIsDroppedAndOverwritten() throws Exception {
+        outbox = open();
+        outbox.append("fhirsvr_patient", null, bytes("first"));
+        outbox.append("fhirsvr_patient", null, bytes("second"));
+        outbox.append("fhirsvr_patient", null, bytes("torn"));
+        outbox.stop();
+        outbox = null;
+        // the third record's value never fully reached the disk
+        try (RandomAccessFile segment = new RandomAccessFile(segment(), "rw")) {
+            int third = 0;
+            for (int i = 0; i < 2; i++) {
+                segment.seek(third);
+                third += 4 + segment.readInt();
+            }
+            segment.seek(third + 4 + 4 + 2 + "fhirsvr_patient".length() + 4 + 4);
+            segment.write(0);
+        }
+
+        outbox = open();
+        assertEquals(2, outbox.getPendingCount());
+        outbox.append("fhirsvr_patient", null, bytes("third"));
+        outbox = reopen();
+
+        assertEquals(3, outbox.getPendingCount());
+        List<KafkaOutbox.Entry> entries = outbox.nextBatch(10).entries;
+        assertArrayEquals(bytes("second"), entries.get(1).record.value());
+        assertArrayEquals(bytes("third"), entries.get(2).record.value());
+    }
+
+    @Test
+    public void replayResumesFromTheCursor() throws Exception {
+        outbox = open();
+        for (int i = 1; i <= 3; i++) {
+            outbox.append("fhirsvr_patient", null, bytes("record" + i));
+        }
+        outbox.acknowledge(outbox.nextBatch(2));
+        assertEquals(1, outbox.getPendingCount());
+
+        outbox = reopen();
+
+        assertEquals(1, outbox.getPendingCount());
+        List<KafkaOutbox.Entry> entries = outbox.nextBatch(10).entries;
+        assertEquals(1, entries.size());
+        assertArrayEquals(bytes("record3"), entries.get(0).record.value());
+    }
+
+    @Test
+    public void replayedSegmentsAreDeleted() throws Exception {
+        outbox = open();
+        // two records per segment
+        byte[] value = new byte[1500];
+        for (int i = 0; i < 5; i++) {
+            outbox.append("fhirsvr_patient", null, value);
+        }
+        assertEquals(3, outbox.getSegmentCount());
+        outbox.acknowledge(outbox.nextBatch(10));
+        outbox.acknowledge(outbox.nextBatch(10));
+
+        outbox = reopen();
+
+        assertEquals(1, outbox.getPendingCount());
+        assertEquals(1, outbox.nextBatch(10).entries.size());
+        // the fully replayed second segment goes once replay moves past it
+        assertEquals(1, outbox.getSegmentCount());
+    }
+
+    @Test
+    public void refusedRecordIsDeadLetteredAndReplayGoesOn() throws Exception {
+        outbox = open();
+        for (int i = 1; i <= 3; i++) {
+            outbox.append("fhirsvr_patient", null, bytes("record" + i),
+                Collections.singletonMap(ReceiptRegistry.RECEIPT_PROPERTY, "r" + i));
+        }
+        List<String> replayed = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        outbox.setReplayListener(new KafkaOutbox.ReplayListener() {
+            @Override
+            public void replayed(ProducerRecord<byte[], byte[]> record, Map<String, String> context, RecordMetadata metadata) {
+                replayed.add(context.get(ReceiptRegistry.RECEIPT_PROPERTY));
+            }
+
+            @Override
+            public void failed(ProducerRecord<byte[], byte[]> record, Map<String, String> context, Throwable cause) {
+                failed.add(context.get(ReceiptRegistry.RECEIPT_PROPERTY));
+            }
+        });
+
+        Throwable retry = outbox.settle(outbox.nextBatch(10),
+            Arrays.asList(sent(0), refused(new RecordTooLargeException("too large")), sent(1)));
+
+        assertNull(retry);
+        assertEquals(Arrays.asList("r1", "r3"), replayed);
+        assertEquals(Collections.singletonList("r2"), failed);
+        assertEquals(0, outbox.getPendingCount());
+        assertEquals(1, outbox.getDeadLetteredCount());
+        assertTrue(new File(directory, "outbox.dead").length() > 0);
+    }
+
+    @Test
+    public void retriableErrorResendsFromTheFailedRecord() throws Exception {
+        outbox = open();
+        for (int i = 1; i <= 3; i++) {
+            outbox.append("fhirsvr_patient", null, bytes("record" + i));
+        }
+        NotEnoughReplicasException error = new NotEnoughReplicasException("not enough replicas");
+
+        Throwable retry = outbox.settle(outbox.nextBatch(10), Arrays.asList(sent(0), refused(error), sent(1)));
+
+        assertSame(error, retry);
+        assertEquals(0, outbox.getDeadLetteredCount());
+        assertEquals(2, outbox.getPendingCount());
+        outbox = reopen();
+        List<KafkaOutbox.Entry> entries = outbox.nextBatch(10).entries;
+        assertEquals(2, entries.size());
+        assertArrayEquals(bytes("record2"), entries.get(0).record.value());
+    }
+
+    private static Future<RecordMetadata> sent(long offset) {
+        return CompletableFuture.completedFuture(
+            new RecordMetadata(new TopicPartition("fhirsvr_patient", 0), offset, 0, 0L, null, 0, 0));
+    }
+
+    private static Future<RecordMetadata> refused(Exception error) {
+        CompletableFuture<RecordMetadata> future = new CompletableFuture<>();
+        future.completeExceptionally(error);
+        return future;
+    }
+
+    private KafkaOutbox open() throws IOException {
+        ConfigProperties config = new ConfigProperties();
+        config.setOutboxEnabled(true);
+        config.setOutboxDirectory(directory.getPath());
+        config.setOutboxSegmentSize(4096);
+        config.setOutboxMaxBytes(1024 * 1024);
+        config.setOutboxFsync("always");
+        return new KafkaOutbox(config, false);
+    }
+
+    private KafkaOutbox reopen() throws Exception {
+        outbox.stop();
+        outbox = null;
+        return open();
+    }
+
+    private File segment() {
+        File[] segments = directory.listFiles((dir, name) -> name.endsWith(".seg"));
+        assertEquals(1, segments.length);
+        return segments[0];
+    }
+
+    private static byte[] bytes(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+}
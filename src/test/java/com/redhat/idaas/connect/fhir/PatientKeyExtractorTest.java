@@ -0,0 +1,66 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+
+import com.redhat.idaas.connect.fhir.PatientKeyExtractor.KeyStrategy;
+import org.junit.Test;
+
+public class PatientKeyExtractorTest {
+
+    @Test
+    public void patientIdFromReference() {
+        String json = "{\"resourceType\": \"Observation\", \"id\": \"obs-1\", \"subject\": {\"reference\": \"Patient/123\"}}";
+        assertEquals("123", PatientKeyExtractor.extract(json, KeyStrategy.PATIENT));
+        assertEquals("123", PatientKeyExtractor.extract(json.getBytes(StandardCharsets.UTF_8), KeyStrategy.PATIENT));
+        assertEquals("obs-1", PatientKeyExtractor.extract(json, KeyStrategy.RESOURCE_ID));
+    }
+
+    @Test
+    public void patientResourceIsKeyedByItsId() {
+        assertEquals("p-9", PatientKeyExtractor.extract("{\"resourceType\":\"Patient\",\"id\":\"p-9\"}", KeyStrategy.PATIENT));
+    }
+
+    @Test
+    public void truncatedBodiesHaveNoKey() {
+        String[] truncated = {
+            "{",
+            "{   ",
+            "{\"subject\"",
+            "{\"subject\":",
+            "{\"subject\": {   ",
+            "{\"subject\": {\"reference\"",
+            "{\"subject\": {\"reference\": \"Patient/1",
+            "{\"subject\": {\"reference\": \"Patient/1\\",
+            "{\"resourceType\": \"Observation\", \"code\": [{\"text\": \"a\\",
+            "{\"code\": {\"coding\": [",
+        };
+        for (String json : truncated) {
+            assertNull(json, PatientKeyExtractor.extract(json, KeyStrategy.PATIENT));
+            assertNull(json, PatientKeyExtractor.extract(json.getBytes(StandardCharsets.UTF_8), KeyStrategy.PATIENT));
+        }
+    }
+
+    @Test
+    public void noneHasNoKey() {
+        assertNull(PatientKeyExtractor.extract("{\"resourceType\":\"Patient\",\"id\":\"p-9\"}", KeyStrategy.NONE));
+    }
+}
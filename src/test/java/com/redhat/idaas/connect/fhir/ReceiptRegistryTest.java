@@ -0,0 +1,101 @@
+/*
+ * Copyright 2019 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ *
+ */
+package com.redhat.idaas.connect.fhir;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.RecordTooLargeException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/*
+ * Receipts of asynchronously ingested records follow their record through the outbox replay.
+ */
+public class ReceiptRegistryTest {
+
+    private File directory;
+    private KafkaOutbox outbox;
+    private ReceiptRegistry registry;
+
+    @Before
+    public void open() throws IOException {
+        directory = Files.createTempDirectory("idaas-receipt-test").toFile();
+        ConfigProperties config = new ConfigProperties();
+        config.setOutboxEnabled(true);
+        config.setOutboxDirectory(directory.getPath());
+        config.setOutboxSegmentSize(4096);
+        config.setOutboxMaxBytes(1024 * 1024);
+        config.setOutboxFsync("always");
+        outbox = new KafkaOutbox(config, false);
+        registry = new ReceiptRegistry(config);
+        outbox.setReplayListener(registry.outboxListener());
+    }
+
+    @After
+    public void close() throws Exception {
+        outbox.stop();
+        File[] files = directory.listFiles();
+        for (File file : files == null ? new File[0] : files) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void replayedRecordMarksItsReceiptSent() throws Exception {
+        ReceiptRegistry.Receipt receipt = accept();
+        CompletableFuture<RecordMetadata> sent = CompletableFuture.completedFuture(
+            new RecordMetadata(new TopicPartition("fhirsvr_patient", 3), 42, 0, 0L, null, 0, 0));
+
+        outbox.settle(outbox.nextBatch(10), Collections.<Future<RecordMetadata>>singletonList(sent));
+
+        assertEquals(ReceiptRegistry.State.SENT, receipt.getState());
+        assertTrue(receipt.toJson().contains("\"partition\":3,\"offset\":42"));
+    }
+
+    @Test
+    public void deadLetteredRecordFailsItsReceipt() throws Exception {
+        ReceiptRegistry.Receipt receipt = accept();
+        CompletableFuture<RecordMetadata> refused = new CompletableFuture<>();
+        refused.completeExceptionally(new RecordTooLargeException("The message is 2097152 bytes"));
+
+        outbox.settle(outbox.nextBatch(10), Collections.<Future<RecordMetadata>>singletonList(refused));
+
+        assertEquals(ReceiptRegistry.State.FAILED, receipt.getState());
+        assertTrue(receipt.toJson().contains("The message is 2097152 bytes"));
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    private ReceiptRegistry.Receipt accept() throws IOException {
+        ReceiptRegistry.Receipt receipt = registry.accept("Patient");
+        outbox.append("fhirsvr_patient", null, "{}".getBytes(StandardCharsets.UTF_8),
+            Collections.singletonMap(ReceiptRegistry.RECEIPT_PROPERTY, receipt.getId()));
+        return receipt;
+    }
+}